@@ -0,0 +1,157 @@
+package burp.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scannable-file checks over a generated corpus shaped like proxy traffic (static assets with
+ * cache busters, API calls, pages, mixed case, fragments): JsmonFileClassifier against the
+ * lowercase/substring/endsWith/indexOf checks JsmonUrlProcessor used before.
+ *
+ * Setup fails if the two disagree on any corpus entry. Run with "-prof gc" to see that the
+ * classifier allocates nothing per check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsmonFileClassifierBenchmark {
+
+    private static final int CORPUS_SIZE = 4096;
+
+    private static final String[] HOSTS = {
+        "https://www.example.com", "https://cdn.example-static.net", "https://api.example.com:8443",
+        "http://legacy.example.org", "https://WWW.Example.COM"
+    };
+    private static final String[] DIRECTORIES = {
+        "", "/static/js", "/assets", "/_next/static/chunks", "/api/v2/users", "/wp-content/themes/site",
+        "/images/products", "/fonts", "/app/build"
+    };
+    private static final String[] FILES = {
+        "main.js", "vendor.bundle.min.js", "app.mjs", "chunk-3f2a9c.js", "index.html", "page.aspx", "login.php",
+        "style.css", "logo.png", "hero.jpg", "icon.svg", "font.woff2", "config.json", "sitemap.xml",
+        "profile", "search", "12345", "Component.TSX", "data.JSON", "robots.txt", "favicon.ico"
+    };
+    private static final String[] QUERIES = {
+        "", "", "", "?v=1.2.3", "?_=1699999999999", "?id=42&format=json", "?callback=cb.js&x=1",
+        "#section", "?ts=1#top"
+    };
+    private static final String[] CONTENT_TYPES = {
+        "application/javascript; charset=utf-8", "text/javascript", "text/html; charset=UTF-8",
+        "application/json", "application/vnd.api+json", "image/png", "image/svg+xml", "font/woff2",
+        "text/css", "application/octet-stream", "TEXT/X-COMPONENT", "image/jpeg", "application/xml",
+        "video/mp4", "application/x-www-form-urlencoded", ";"
+    };
+
+    private final JsmonFileClassifier classifier =
+            new JsmonFileClassifier(JsmonUrlProcessor.SCANNABLE_EXTENSIONS, JsmonUrlProcessor.SCANNABLE_CONTENT_TYPES);
+
+    private String[] urls;
+    private String[] contentTypes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        urls = new String[CORPUS_SIZE];
+        contentTypes = new String[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            urls[i] = HOSTS[random.nextInt(HOSTS.length)] + DIRECTORIES[random.nextInt(DIRECTORIES.length)] + "/"
+                    + FILES[random.nextInt(FILES.length)] + QUERIES[random.nextInt(QUERIES.length)];
+            contentTypes[i] = CONTENT_TYPES[random.nextInt(CONTENT_TYPES.length)];
+            if (classifier.hasScannableExtension(urls[i]) != legacyHasScannableExtension(urls[i])) {
+                throw new IllegalStateException("Extension verdicts differ for " + urls[i]);
+            }
+            if (classifier.isScannableContentType(contentTypes[i]) != legacyIsScannableByContentType(contentTypes[i])) {
+                throw new IllegalStateException("Content-Type verdicts differ for " + contentTypes[i]);
+            }
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (CORPUS_SIZE - 1);
+        return next;
+    }
+
+    @Benchmark
+    public boolean extensionLegacy() {
+        return legacyHasScannableExtension(urls[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean extensionClassifier() {
+        return classifier.hasScannableExtension(urls[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean contentTypeLegacy() {
+        return legacyIsScannableByContentType(contentTypes[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean contentTypeClassifier() {
+        return classifier.isScannableContentType(contentTypes[nextIndex()]);
+    }
+
+    /**
+     * JsmonUrlProcessor.hasScannableExtension before the classifier
+     */
+    private static boolean legacyHasScannableExtension(String url) {
+        if (url == null || url.isEmpty()) {
+            return false;
+        }
+        url = url.toLowerCase();
+        String urlPath = url;
+        int queryIndex = url.indexOf('?');
+        int hashIndex = url.indexOf('#');
+        if (queryIndex != -1) {
+            urlPath = url.substring(0, queryIndex);
+        } else if (hashIndex != -1) {
+            urlPath = url.substring(0, hashIndex);
+        }
+        for (String ext : JsmonUrlProcessor.SCANNABLE_EXTENSIONS) {
+            if (urlPath.endsWith(ext)) {
+                return true;
+            }
+            int extIndex = url.indexOf(ext);
+            if (extIndex != -1) {
+                int afterExt = extIndex + ext.length();
+                if (afterExt >= url.length() || url.charAt(afterExt) == '?' || url.charAt(afterExt) == '#') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * JsmonUrlProcessor.isScannableByContentType before the classifier (without its trace logging).
+     * The old split(";")[0] threw on a Content-Type of only ";", which is treated as not scannable here.
+     */
+    private static boolean legacyIsScannableByContentType(String contentType) {
+        if (contentType != null && !contentType.isEmpty()) {
+            String[] parts = contentType.split(";");
+            String contentTypeBase = parts.length > 0 ? parts[0].trim().toLowerCase() : "";
+            String contentTypeLower = contentType.toLowerCase();
+            for (String scannableType : JsmonUrlProcessor.SCANNABLE_CONTENT_TYPES) {
+                if (contentTypeLower.contains(scannableType) || contentTypeBase.contains(scannableType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
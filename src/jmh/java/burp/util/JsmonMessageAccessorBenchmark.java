@@ -0,0 +1,185 @@
+package burp.util;
+
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.proxy.ProxyHttpRequestResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-entry cost of reading the Content-Type of live responses and proxy history entries:
+ * the reflective probing the handler and history scan used before, against JsmonMessageAccessor.
+ *
+ * Burp's message classes are not available outside Burp, so responses and history entries are
+ * java.lang.reflect.Proxy instances. Both paths pay the same proxy dispatch; the difference is
+ * the getMethod/invoke lookups (and, for history entries, the exceptions of the old fallbacks).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsmonMessageAccessorBenchmark {
+
+    private static final int ENTRIES = 1024;
+
+    private HttpResponse[] responses;
+    private ProxyHttpRequestResponse[] entries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] contentTypes = {"application/javascript; charset=utf-8", "text/html", "image/png", "application/json"};
+        responses = new HttpResponse[ENTRIES];
+        entries = new ProxyHttpRequestResponse[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            List<HttpHeader> headers = new ArrayList<>();
+            headers.add(header("Date", "Mon, 01 Jan 2024 00:00:00 GMT"));
+            headers.add(header("Server", "nginx"));
+            headers.add(header("Cache-Control", "max-age=3600"));
+            headers.add(header("Content-Type", contentTypes[i % contentTypes.length]));
+            headers.add(header("Content-Length", String.valueOf(1000 + i)));
+            HttpResponse response = response(headers);
+            responses[i] = response;
+            entries[i] = (ProxyHttpRequestResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {ProxyHttpRequestResponse.class},
+                    (proxy, method, args) -> "originalResponse".equals(method.getName()) ? response : null);
+        }
+    }
+
+    private static HttpHeader header(String name, String value) {
+        return (HttpHeader) Proxy.newProxyInstance(HttpHeader.class.getClassLoader(), new Class<?>[] {HttpHeader.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "name": return name;
+                        case "value": return value;
+                        default: return null;
+                    }
+                });
+    }
+
+    private static HttpResponse response(List<HttpHeader> headers) {
+        return (HttpResponse) Proxy.newProxyInstance(HttpResponse.class.getClassLoader(), new Class<?>[] {HttpResponse.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "headers":
+                            return headers;
+                        case "headerValue":
+                            for (HttpHeader header : headers) {
+                                if (((String) args[0]).equalsIgnoreCase(header.name())) {
+                                    return header.value();
+                                }
+                            }
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (ENTRIES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public String liveReflective() {
+        return reflectiveContentType(responses[nextIndex()]);
+    }
+
+    @Benchmark
+    public String liveAccessor() {
+        return JsmonMessageAccessor.contentType(responses[nextIndex()]);
+    }
+
+    @Benchmark
+    public String historyReflective() {
+        return reflectiveHistoryContentType(entries[nextIndex()]);
+    }
+
+    @Benchmark
+    public String historyAccessor() {
+        return JsmonMessageAccessor.contentType(entries[nextIndex()]);
+    }
+
+    /**
+     * The live handler's Content-Type lookup before JsmonMessageAccessor
+     */
+    private static String reflectiveContentType(Object response) {
+        String contentType = null;
+        try {
+            Method headerValueMethod = response.getClass().getMethod("headerValue", String.class);
+            contentType = (String) headerValueMethod.invoke(response, "Content-Type");
+        } catch (Exception e) {
+            try {
+                Method headersMethod = response.getClass().getMethod("headers");
+                Object headersObj = headersMethod.invoke(response);
+                if (headersObj instanceof Iterable) {
+                    for (Object header : (Iterable<?>) headersObj) {
+                        try {
+                            Method nameMethod = header.getClass().getMethod("name");
+                            Method valueMethod = header.getClass().getMethod("value");
+                            String headerName = (String) nameMethod.invoke(header);
+                            if ("Content-Type".equalsIgnoreCase(headerName)) {
+                                contentType = (String) valueMethod.invoke(header);
+                                break;
+                            }
+                        } catch (Exception e2) {
+                            // Continue to next header
+                        }
+                    }
+                }
+            } catch (Exception e2) {
+                // All methods failed
+            }
+        }
+        return contentType;
+    }
+
+    /**
+     * The history scan's Content-Type lookup before JsmonMessageAccessor. The ProxyHttpRequestResponse
+     * this builds against has neither "httpResponse" nor "response", so each entry pays for both
+     * failed lookups.
+     */
+    private static String reflectiveHistoryContentType(Object proxyEntry) {
+        String contentType = null;
+        try {
+            Method responseMethod = proxyEntry.getClass().getMethod("httpResponse");
+            Object responseObj = responseMethod.invoke(proxyEntry);
+            if (responseObj != null) {
+                contentType = reflectiveContentType(responseObj);
+            }
+        } catch (Exception e1) {
+            try {
+                Method responseMethod = proxyEntry.getClass().getMethod("response");
+                Object responseObj = responseMethod.invoke(proxyEntry);
+                if (responseObj != null) {
+                    try {
+                        Method headerValueMethod = responseObj.getClass().getMethod("headerValue", String.class);
+                        contentType = (String) headerValueMethod.invoke(responseObj, "Content-Type");
+                    } catch (Exception e2) {
+                        // Headers not available
+                    }
+                }
+            } catch (Exception e2) {
+                // Response not available, will check extension only
+            }
+        }
+        return contentType;
+    }
+}
@@ -1,20 +1,46 @@
 package burp;
 
 import burp.api.JsmonApiClient;
+import burp.api.JsmonCircuitBreaker;
+import burp.api.JsmonHttpClientFactory;
+import burp.api.JsmonRateLimiter;
+import burp.api.JsmonRetryScheduler;
+import burp.api.JsmonUploadBatcher;
 import burp.api.montoya.BurpExtension;
 import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.http.handler.*;
 import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.logging.Logging;
 import burp.model.JsUrlEntry;
+import burp.model.ScanSubmission;
 import burp.model.UserProfile;
 import burp.model.Workspace;
 import burp.ui.JsmonTab;
 import burp.util.JsmonConfig;
+import burp.util.JsmonContentIndex;
+import burp.util.JsmonDedupIndex;
+import burp.util.JsmonDiagnostics;
+import burp.util.JsmonLoadShedder;
+import burp.util.JsmonMessageAccessor;
+import burp.util.JsmonOutboundJournal;
+import burp.util.JsmonPrefilter;
+import burp.util.JsmonScanJob;
+import burp.util.JsmonSubmissionQueue;
+import burp.util.JsmonSubmissionTracker;
+import burp.util.JsmonUrlCanonicalizer;
 import burp.util.JsmonUrlProcessor;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 public class JsmonExtension implements BurpExtension, HttpHandler {
     
@@ -22,18 +48,120 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
     private Logging logging;
     private JsmonTab tab;
     private JsmonConfig config;
+    private JsmonHttpClientFactory httpClientFactory;
     private JsmonApiClient apiClient;
+    private JsmonRateLimiter rateLimiter;
+    private JsmonCircuitBreaker circuitBreaker;
+    private JsmonUploadBatcher uploadBatcher;
+    private JsmonRetryScheduler retryScheduler;
     private JsmonUrlProcessor urlProcessor;
-    private Set<String> processedUrls = ConcurrentHashMap.newKeySet();
+    private JsmonDiagnostics diagnostics;
+    private JsmonDedupIndex processedUrls;
+    private JsmonSubmissionTracker<JsmonApiClient.SendResult> submissionTracker;
+    private JsmonUrlCanonicalizer urlCanonicalizer;
+    private JsmonPrefilter prefilter;
+    private JsmonLoadShedder loadShedder;
+    /** Canonical keys seen while shedding load, drained by the next history scan */
+    private JsmonDedupIndex deferredBacklog;
+    private JsmonContentIndex contentIndex = new JsmonContentIndex(JsmonContentIndex.DEFAULT_MAX_ENTRIES);
+    private JsmonSubmissionQueue<ScanSubmission> submissionQueue;
     private volatile Thread currentScanThread = null;
+    private final Set<JsmonScanJob> activeScanJobs = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * How often a running history scan reports files/s, ETA and in-flight count
+     */
+    private static final long SCAN_PROGRESS_INTERVAL_MS = 5_000;
+    
+    /**
+     * How long the history scan waits for a live upload of the same file before moving on
+     */
+    private static final long COALESCED_WAIT_MS = 60_000;
+    
+    /**
+     * Memory budget for the deferred backlog (keys recorded while shedding load)
+     */
+    private static final long DEFERRED_BACKLOG_BUDGET_BYTES = 2L * 1024 * 1024;
+    
+    /**
+     * Journal of queued uploads, replayed on the next load (null if the file could not be opened)
+     */
+    private JsmonOutboundJournal journal;
+    
+    /**
+     * Single thread that performs every journal write in submission order, so Burp's handler
+     * threads and the upload workers never wait on the journal's lock, compaction or disk
+     */
+    private ExecutorService journalWriter;
+    
+    /**
+     * Journaled files that failed this many upload runs are not replayed again
+     */
+    private static final int MAX_JOURNAL_ATTEMPTS = 5;
     
     @Override
     public void initialize(MontoyaApi api) {
         this.api = api;
         this.logging = api.logging();
         this.config = new JsmonConfig(api);
-        this.apiClient = new JsmonApiClient(logging);
-        this.urlProcessor = new JsmonUrlProcessor(logging);
+        this.httpClientFactory = new JsmonHttpClientFactory();
+        // While JsScan credits are exhausted, waiting uploads re-check the profile now and then
+        this.rateLimiter = new JsmonRateLimiter(config.getUploadsPerSecond(), this::fetchUserProfile);
+        this.circuitBreaker = new JsmonCircuitBreaker(this::onCircuitStateChanged);
+        this.apiClient = new JsmonApiClient(logging, httpClientFactory, config.getMaxInFlightUploads(), rateLimiter, circuitBreaker);
+        try {
+            apiClient.setApiBaseUrl(config.getApiBaseUrl());
+        } catch (IllegalArgumentException e) {
+            logging.logToError("JSMon: Ignoring saved API base URL (" + e.getMessage() + ")");
+        }
+        if (!JsmonApiClient.DEFAULT_API_BASE_URL.equals(apiClient.getApiBaseUrl())) {
+            logging.logToOutput("JSMon: Using API base URL " + apiClient.getApiBaseUrl());
+        }
+        this.uploadBatcher = new JsmonUploadBatcher(apiClient, config.getUploadBatchSize(), config.getUploadBatchWindowMs(), logging);
+        this.retryScheduler = new JsmonRetryScheduler(config.getRetryMaxAttempts(), config.getRetryBudgetPerMinute(), logging);
+        this.diagnostics = new JsmonDiagnostics(logging);
+        this.diagnostics.setOutputLevel(JsmonDiagnostics.Level.fromString(config.getDiagnosticsLevel()));
+        this.urlProcessor = new JsmonUrlProcessor(diagnostics);
+        this.urlProcessor.setScopedDomains(config.getScopedDomain());
+        this.urlProcessor.setScopeSource(JsmonUrlProcessor.ScopeSource.fromString(config.getScopeSource()), api.scope());
+        this.urlCanonicalizer = new JsmonUrlCanonicalizer(config.getVolatileQueryParams());
+        this.prefilter = new JsmonPrefilter();
+        List<String> invalidPrefilterRules = prefilter.configure(config.getPrefilterSkippedTools(), config.getPrefilterStatusRange(),
+                config.getPrefilterBodySizeRange(), config.getPrefilterMethods());
+        if (!invalidPrefilterRules.isEmpty()) {
+            logging.logToError("JSMon: Ignoring invalid prefilter settings: " + String.join(", ", invalidPrefilterRules));
+        }
+        this.processedUrls = new JsmonDedupIndex(
+                config.getDedupMemoryBudgetMb() * 1024L * 1024L,
+                JsmonDedupIndex.EvictionPolicy.fromString(config.getDedupEvictionPolicy()),
+                config.getDedupTtlMinutes() * 60_000L);
+        this.submissionTracker = new JsmonSubmissionTracker<>(processedUrls,
+                JsmonSubmissionTracker.DEFAULT_PERMANENT_FAILURE_COOLDOWN_MS);
+        this.deferredBacklog = new JsmonDedupIndex(DEFERRED_BACKLOG_BUDGET_BYTES, JsmonDedupIndex.EvictionPolicy.LRU, 0);
+        this.loadShedder = new JsmonLoadShedder(config.getLoadShedThreshold(), this::onLoadModeChanged);
+        
+        // Uploads run on dedicated workers so the HTTP handler never waits on the JSMon API
+        this.submissionQueue = new JsmonSubmissionQueue<>(
+                "JSMon-Upload",
+                config.getQueueCapacity(),
+                config.getUploadWorkers(),
+                JsmonSubmissionQueue.OverflowPolicy.fromString(config.getQueueOverflowPolicy()),
+                this::processScannableFile,
+                this::onSubmissionDropped,
+                logging);
+        
+        // Uploads still pending when Burp last exited or the extension was reloaded
+        try {
+            this.journal = new JsmonOutboundJournal(JsmonOutboundJournal.defaultDirectory());
+            this.journalWriter = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "JSMon-Journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } catch (IOException | RuntimeException e) {
+            logging.logToError("JSMon: Upload journal unavailable, pending uploads will not survive a restart: " + e.getMessage());
+        }
+        replayJournal();
         
         // Set extension name
         api.extension().setName("JSMon Extension");
@@ -41,9 +169,27 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
         // Register HTTP handler
         api.http().registerHttpHandler(this);
         
+        // Cached scope decisions are stale once Burp's target scope is edited
+        api.scope().registerScopeChangeHandler(change -> urlProcessor.invalidateScopeCache());
+        
         // Register unloading handler
         api.extension().registerUnloadingHandler(() -> {
-            // Extension unloaded - configuration is already saved automatically
+            // Configuration is already saved automatically - just stop the upload workers and HTTP client.
+            // Queued uploads are left pending in the journal so the next session resumes them.
+            submissionQueue.shutdown();
+            uploadBatcher.shutdown();
+            retryScheduler.shutdown();
+            if (journal != null) {
+                // Let the writes already handed to the journal thread land before closing
+                journalWriter.shutdown();
+                try {
+                    journalWriter.awaitTermination(2, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                journal.close();
+            }
+            httpClientFactory.shutdown();
         });
         
         // Create UI tab
@@ -63,78 +209,80 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
             return ResponseReceivedAction.continueWith(response);
         }
         
-        HttpRequest httpRequest = response.initiatingRequest();
-        // Get full URL including path (not just endpoint) for extension matching
-        String url = httpRequest.url().toString();
+        // Time every response so the load shedder sees both arrival rate and handler cost
+        long start = System.nanoTime();
+        try {
+            handleAutoScanResponse(response, loadShedder.onArrival());
+        } finally {
+            loadShedder.onCompleted(System.nanoTime() - start);
+        }
+        return ResponseReceivedAction.continueWith(response);
+    }
+    
+    /**
+     * Live auto-scan pipeline for one response: prefilter, scope, classification, enqueue
+     * @param shedding Degraded mode - in-scope scannable files are only deferred for a later history scan
+     */
+    private void handleAutoScanResponse(HttpResponseReceived response, boolean shedding) {
+        // Prefilter: drop scanner/intruder traffic, error pages and empty bodies before any string work
+        burp.api.montoya.core.ByteArray body = response.body();
+        if (prefilter.checkResponse(response.toolSource().toolType(), response.statusCode(),
+                body != null ? body.length() : 0) != null) {
+            return;
+        }
         
-        // Check if URL matches scoped domain
-        String scopedDomain = config.getScopedDomain();
-        if (scopedDomain != null && !scopedDomain.isEmpty()) {
-            if (!urlProcessor.isUrlInScope(url, scopedDomain)) {
-                return ResponseReceivedAction.continueWith(response);
-            }
+        HttpRequest httpRequest = response.initiatingRequest();
+        if (prefilter.checkMethod(httpRequest.method()) != null) {
+            return;
         }
         
-        // Extract Content-Type header directly (avoid fetching full response object)
-        String contentType = null;
+        // Get full URL including path (not just endpoint) for extension matching
+        String url = httpRequest.url().toString();
         
-        // Try to get Content-Type header directly from HttpResponseReceived (no need for full response object)
-        try {
-            // Method 1: Try headerValue() method directly
-            java.lang.reflect.Method headerValueMethod = response.getClass().getMethod("headerValue", String.class);
-            contentType = (String) headerValueMethod.invoke(response, "Content-Type");
-        } catch (Exception e) {
-            // Method 2: Try headers() method and iterate
-            try {
-            java.lang.reflect.Method headersMethod = response.getClass().getMethod("headers");
-            Object headersObj = headersMethod.invoke(response);
-            if (headersObj != null && headersObj instanceof java.lang.Iterable) {
-                for (Object header : (java.lang.Iterable<?>) headersObj) {
-                    try {
-                        java.lang.reflect.Method nameMethod = header.getClass().getMethod("name");
-                        java.lang.reflect.Method valueMethod = header.getClass().getMethod("value");
-                        String headerName = (String) nameMethod.invoke(header);
-                        if ("Content-Type".equalsIgnoreCase(headerName)) {
-                            contentType = (String) valueMethod.invoke(header);
-                            break;
-                        }
-                        } catch (Exception e2) {
-                        // Continue to next header
-                        }
-                    }
-                }
-            } catch (Exception e2) {
-                // All methods failed
-            }
+        // Check if URL matches scoped domain (compiled index, empty scope matches everything)
+        if (!urlProcessor.isUrlInScope(url)) {
+            return;
         }
         
-        if (logging != null && contentType != null) {
-            logging.logToOutput("JSMon: Extracted Content-Type header for '" + url + "': " + contentType);
-        }
+        // Content-Type comes straight from the received response (no reflection, no full body access)
+        String contentType = JsmonMessageAccessor.contentType(response);
         
         // Check if it's a scannable file (check URL extension and Content-Type)
         // Use Content-Type string to avoid duplicate extraction (we already have it)
         boolean isScannable = urlProcessor.isScannableFile(url, contentType);
-        if (logging != null) {
-            logging.logToOutput("JSMon: Scannable check for '" + url + "' (Content-Type: " + (contentType != null ? contentType : "null") + "): " + isScannable);
-        }
+        diagnostics.trace("JSMon: Scannable check for '{}' (Content-Type: {}): {}", url, contentType, isScannable);
         
         if (isScannable) {
-            // Avoid processing the same URL multiple times
-            if (!processedUrls.contains(url)) {
-                processedUrls.add(url);
-                logging.logToOutput("JSMon: Detected scannable file: " + url + (contentType != null ? " (Content-Type: " + contentType + ")" : ""));
-                // Process new scannable files as they come in (only need request headers and URL)
-                processScannableFile(httpRequest);
+            // Avoid processing the same file multiple times (cache busters and host/port variants share a key)
+            String dedupKey = urlCanonicalizer.canonicalize(url);
+            if (shedding) {
+                // Degraded mode: remember the file for a later history scan instead of hashing and queueing it
+                if (!processedUrls.contains(dedupKey)) {
+                    deferredBacklog.add(dedupKey);
+                }
+                return;
+            }
+            // Atomic claim: parallel responses for the same file coalesce onto one upload
+            if (submissionTracker.claim(dedupKey).isOwner()) {
+                diagnostics.info(() -> "JSMon: Detected scannable file: " + url + (contentType != null ? " (Content-Type: " + contentType + ")" : ""));
+                // Hand off to the upload workers (only need request headers and URL)
+                // A dropped submission releases its claim so it can be picked up again
+                journalAppend(dedupKey, url, config.getWorkspaceId(), httpRequest);
+                // Only the body's hash is queued; holding full bodies would let a backlog pin megabytes per slot
+                submissionQueue.submit(new ScanSubmission(url, dedupKey, httpRequest, hashBody(body), body != null ? body.length() : 0));
             }
         }
-        
-        return ResponseReceivedAction.continueWith(response);
     }
     
-    private void processScannableFile(HttpRequest request) {
+    /**
+     * Upload a queued file to JSMon - runs on a submission queue worker thread
+     */
+    private void processScannableFile(ScanSubmission submission) {
+        String dedupKey = submission.getDedupKey();
+        
         // Check if automatic scanning is still enabled before processing
         if (!config.isAutomateScan()) {
+            submissionTracker.release(dedupKey);
             return;
         }
         
@@ -143,48 +291,330 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
         
         if (apiKey == null || apiKey.isEmpty() || workspaceId == null || workspaceId.isEmpty()) {
             logging.logToOutput("JSMon: Skipping file - API key or workspace ID not configured");
+            submissionTracker.release(dedupKey);
             return;
         }
         
-        // Get full URL including path (not just endpoint) for extension matching
-        String url = request.url().toString();
+        if (!submissionTracker.markInFlight(dedupKey)) {
+            // Claim was released or completed elsewhere while queued
+            return;
+        }
+        
+        String url = submission.getUrl();
         
         // Log to UI if tab is available
         if (tab != null) {
             tab.appendStatusMessage("🔄 Auto-scanning: " + url);
         }
         
-        // Execute JSMon API call with headers
-        burp.api.JsmonApiClient.SendResult result = apiClient.sendToJsmon(url, workspaceId, apiKey, request);
-        
-        // Log result to UI
-        if (tab != null) {
+        // The worker moves on once the upload is sent; only the in-flight limit makes it wait
+        uploadClaimedFile(dedupKey, url, workspaceId, apiKey, submission.getRequest(),
+                submission.getContentHash(), submission.getBodyLength(), NOT_CANCELLED)
+                .thenAccept(result -> {
+                    // Log result to UI
+                    if (tab == null) {
+                        return;
+                    }
+                    if (result == DUPLICATE_UPLOAD) {
+                        tab.appendStatusMessage("⏭ Skipped duplicate content: " + url);
+                    } else if (result.isCircuitOpen()) {
+                        tab.appendStatusMessage("⏸ Deferred until the JSMon API recovers: " + url);
+                    } else if (result.isSuccess()) {
+                        tab.appendStatusMessage("  ✓ Success: " + url);
+                        // Fetch secrets after successful scan
+                        tab.fetchAndDisplaySecrets();
+                        // Refresh user profile to update JSScan credits
+                        tab.fetchAndDisplayUserProfile();
+                    } else {
+                        String errorMsg = result.getErrorMessage();
+                        if (errorMsg != null && !errorMsg.isEmpty()) {
+                            tab.appendStatusMessage("  ✗ Failed: " + url + " - " + errorMsg);
+                        } else {
+                            tab.appendStatusMessage("  ✗ Failed: " + url);
+                        }
+                    }
+                });
+    }
+    
+    /**
+     * Marker result for uploads skipped because identical content was already submitted
+     */
+    private static final JsmonApiClient.SendResult DUPLICATE_UPLOAD = new JsmonApiClient.SendResult(true, null);
+    
+    /**
+     * Cancellation token for uploads outside a history scan (unloading interrupts their workers instead)
+     */
+    private static final BooleanSupplier NOT_CANCELLED = () -> false;
+    
+    /**
+     * Upload a file whose dedup key the caller has claimed and marked in flight.
+     * The tracker and content index are settled when the upload completes.
+     * @param cancelled Gives the upload (and its retries) up before sending once true
+     * @return Future that always completes normally, with DUPLICATE_UPLOAD if the body was already submitted
+     */
+    private CompletableFuture<JsmonApiClient.SendResult> uploadClaimedFile(String dedupKey, String url, String workspaceId,
+                                                                          String apiKey, HttpRequest request,
+                                                                          JsmonContentIndex.ContentHash bodyHash, long bodyLength,
+                                                                          BooleanSupplier cancelled) {
+        // Skip bodies already submitted to this workspace under another URL
+        CompletableFuture<JsmonContentIndex.ContentHash> claimed = claimContent(workspaceId, url, bodyHash, bodyLength);
+        // Once it has waited on another upload, the claim settles on that upload's HTTP completion thread
+        boolean waited = !claimed.isDone();
+        return claimed.thenCompose(contentHash -> {
+            if (contentHash == DUPLICATE_CONTENT) {
+                submissionTracker.succeed(dedupKey, new JsmonApiClient.SendResult(true, null));
+                journalComplete(dedupKey);
+                deferredBacklog.remove(dedupKey);
+                return CompletableFuture.completedFuture(DUPLICATE_UPLOAD);
+            }
+            return uploadClaimedContent(dedupKey, url, workspaceId, apiKey, request, contentHash, cancelled, waited);
+        });
+    }
+    
+    /**
+     * Send a file whose content (if any) the caller has claimed, and settle the tracker, journal and content index
+     * @param offThread Start the upload on a retry attempt thread, because the caller must not block
+     */
+    private CompletableFuture<JsmonApiClient.SendResult> uploadClaimedContent(String dedupKey, String url, String workspaceId,
+                                                                             String apiKey, HttpRequest request,
+                                                                             JsmonContentIndex.ContentHash contentHash,
+                                                                             BooleanSupplier cancelled, boolean offThread) {
+        CompletableFuture<JsmonApiClient.SendResult> upload;
+        try {
+            // Transient failures are retried before the tracker settles the key
+            Supplier<CompletableFuture<JsmonApiClient.SendResult>> attempt =
+                    () -> uploadBatcher.submit(url, workspaceId, apiKey, request, cancelled);
+            upload = offThread ? retryScheduler.executeAsync(url, attempt) : retryScheduler.execute(url, attempt);
+        } catch (RuntimeException e) {
+            JsmonApiClient.SendResult result = new JsmonApiClient.SendResult(false, e.getMessage());
+            submissionTracker.fail(dedupKey, result, true);
+            journalAttempt(dedupKey);
+            if (contentHash != null) {
+                contentIndex.release(workspaceId, contentHash);
+            }
+            return CompletableFuture.completedFuture(result);
+        }
+        return upload.thenApply(result -> {
+            if (result.isCancelled()) {
+                // Nothing was sent (scan cancelled or unloading): the file may be picked up again,
+                // and a journaled upload stays pending for the next session
+                submissionTracker.release(dedupKey);
+                if (contentHash != null) {
+                    contentIndex.release(workspaceId, contentHash);
+                }
+                return result;
+            }
+            if (result.isSuccess() || !(result.isRetryable() || result.isCircuitOpen())) {
+                // Settled for good: a deferred copy of the key has nothing left to catch up
+                journalComplete(dedupKey);
+                deferredBacklog.remove(dedupKey);
+            } else if (!result.isCircuitOpen()) {
+                journalAttempt(dedupKey);
+            }
             if (result.isSuccess()) {
-                tab.appendStatusMessage("  ✓ Success: " + url);
-                // Fetch secrets after successful scan
-                tab.fetchAndDisplaySecrets();
-                // Refresh user profile to update JSScan credits
-                tab.fetchAndDisplayUserProfile();
-            } else {
-                String errorMsg = result.getErrorMessage();
-                if (errorMsg != null && !errorMsg.isEmpty()) {
-                    tab.appendStatusMessage("  ✗ Failed: " + url + " - " + errorMsg);
+                submissionTracker.succeed(dedupKey, result);
+                if (contentHash != null) {
+                    contentIndex.succeed(workspaceId, contentHash);
+                }
+            } else if (result.isCircuitOpen()) {
+                // Nothing was sent; catch up from proxy history once the API answers again
+                deferredBacklog.add(dedupKey);
+                submissionTracker.fail(dedupKey, result, true);
+                if (contentHash != null) {
+                    contentIndex.release(workspaceId, contentHash);
+                }
             } else {
-                tab.appendStatusMessage("  ✗ Failed: " + url);
+                submissionTracker.fail(dedupKey, result, result.isRetryable());
+                if (contentHash != null) {
+                    contentIndex.release(workspaceId, contentHash);
                 }
             }
+            return result;
+        });
+    }
+    
+    private void onSubmissionDropped(ScanSubmission submission) {
+        submissionTracker.release(submission.getDedupKey());
+        // Dropped by the overflow policy: the user chose to lose it
+        journalComplete(submission.getDedupKey());
+    }
+    
+    private void journalAppend(String dedupKey, String url, String workspaceId, HttpRequest request) {
+        writeJournal(() -> journal.append(dedupKey, url, workspaceId, headerLines(request)));
+    }
+    
+    private void journalComplete(String dedupKey) {
+        writeJournal(() -> journal.complete(dedupKey));
+    }
+    
+    private void journalAttempt(String dedupKey) {
+        writeJournal(() -> journal.attempt(dedupKey));
+    }
+    
+    /**
+     * Hand a write to the journal thread (no-op without a journal)
+     */
+    private void writeJournal(Runnable write) {
+        if (journal == null) {
+            return;
         }
+        try {
+            journalWriter.execute(write);
+        } catch (RejectedExecutionException e) {
+            // Unloading: the entry keeps its last state and is replayed (or found done) next session
+        }
+    }
+    
+    /**
+     * Request headers as "Name: value" lines for the journal (which keeps only the replay headers)
+     */
+    private static String headerLines(HttpRequest request) {
+        StringBuilder lines = new StringBuilder();
+        try {
+            for (burp.api.montoya.http.message.HttpHeader header : request.headers()) {
+                lines.append(header.name()).append(": ")
+                        .append(header.value().replace('\r', ' ').replace('\n', ' ')).append('\n');
+            }
+        } catch (RuntimeException e) {
+            // Headers are optional for the upload
+        }
+        return lines.toString();
+    }
+    
+    /**
+     * Rebuild an upload request from a journal entry's URL and header lines
+     */
+    private static HttpRequest journaledRequest(JsmonOutboundJournal.Entry entry) {
+        HttpRequest request = HttpRequest.httpRequestFromUrl(entry.getUrl());
+        for (String line : entry.getHeaders().split("\n")) {
+            int colon = line.indexOf(": ");
+            if (colon > 0 && !line.regionMatches(true, 0, "Host", 0, colon)) {
+                request = request.withAddedHeader(line.substring(0, colon), line.substring(colon + 2));
+            }
+        }
+        return request;
+    }
+    
+    /**
+     * Queue the uploads left in the journal by the previous session, on a background thread
+     * so a large backlog neither delays loading nor overflows the queue
+     */
+    private void replayJournal() {
+        if (journal == null || journal.getPendingCount() == 0) {
+            return;
+        }
+        String workspaceId = config.getWorkspaceId();
+        if (!config.isAutomateScan() || config.getApiKey() == null || config.getApiKey().isEmpty()
+                || workspaceId == null || workspaceId.isEmpty()) {
+            logging.logToOutput("JSMon: " + journal.getPendingCount()
+                    + " pending upload(s) kept in the journal until automatic scanning is configured");
+            return;
+        }
+        Thread replayThread = new Thread(() -> {
+            int resumed = 0;
+            int discarded = 0;
+            for (JsmonOutboundJournal.Entry entry : journal.getPending()) {
+                if (!workspaceId.equals(entry.getWorkspaceId()) || entry.getAttempts() >= MAX_JOURNAL_ATTEMPTS) {
+                    journalComplete(entry.getKey());
+                    discarded++;
+                    continue;
+                }
+                JsmonSubmissionTracker.Claim<JsmonApiClient.SendResult> claim = submissionTracker.claim(entry.getKey());
+                if (claim.getKind() == JsmonSubmissionTracker.Claim.Kind.ALREADY_DONE) {
+                    journalComplete(entry.getKey());
+                    continue;
+                }
+                if (!claim.isOwner()) {
+                    continue;
+                }
+                while (submissionQueue.getPendingCount() >= submissionQueue.getCapacity()) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        submissionTracker.release(entry.getKey());
+                        return;
+                    }
+                }
+                if (submissionQueue.submit(new ScanSubmission(entry.getUrl(), entry.getKey(), journaledRequest(entry), null, 0))) {
+                    resumed++;
+                }
+            }
+            String message = "↻ Resumed " + resumed + " pending upload(s) from the previous session"
+                    + (discarded > 0 ? " (" + discarded + " for another workspace or failing repeatedly discarded)" : "");
+            logging.logToOutput("JSMon: " + message);
+            if (tab != null) {
+                tab.appendStatusMessage(message);
+            }
+        }, "JSMon-Journal-Replay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+    
+    /**
+     * Marker returned by claimContent when the body was already submitted
+     */
+    private static final JsmonContentIndex.ContentHash DUPLICATE_CONTENT = new JsmonContentIndex.ContentHash(0, 0);
+    
+    /**
+     * Hash a response body for content deduplication
+     * @return null if there is no body
+     */
+    private static JsmonContentIndex.ContentHash hashBody(burp.api.montoya.core.ByteArray body) {
+        return body != null && body.length() > 0 ? JsmonContentIndex.hash(body) : null;
+    }
+    
+    /**
+     * Claim a body hash for upload to a workspace. While an earlier upload of the same content is
+     * in flight this waits for it, and claims the content again if that upload fails.
+     * @return Future with the body hash if the caller should upload (null if there is no body),
+     *         or DUPLICATE_CONTENT once identical content was submitted successfully
+     */
+    private CompletableFuture<JsmonContentIndex.ContentHash> claimContent(String workspaceId, String url,
+                                                                          JsmonContentIndex.ContentHash contentHash,
+                                                                          long bodyLength) {
+        if (contentHash == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        JsmonContentIndex.Entry earlier = contentIndex.claim(workspaceId, contentHash, url, bodyLength);
+        if (earlier == null) {
+            return CompletableFuture.completedFuture(contentHash);
+        }
+        return earlier.getUpload().thenCompose(uploaded -> {
+            if (!uploaded) {
+                return claimContent(workspaceId, url, contentHash, bodyLength);
+            }
+            contentIndex.recordDuplicate(earlier, bodyLength);
+            diagnostics.info(() -> "JSMon: Skipping " + url + " - same content as " + earlier.getFirstUrl());
+            return CompletableFuture.completedFuture(DUPLICATE_CONTENT);
+        });
     }
     
     // Getters and setters for configuration
     public void setApiKey(String apiKey) {
         config.setApiKey(apiKey);
+        // The credit balance belonged to the previous key; the next profile fetch seeds it again
+        rateLimiter.setCredits(JsmonRateLimiter.UNKNOWN_CREDITS);
     }
     
     public String getApiKey() {
         return config.getApiKey();
     }
     
+    /**
+     * Send all API calls to another base URL (blank restores the JSMon API)
+     * @throws IllegalArgumentException if the URL is not absolute http(s)
+     */
+    public void setApiBaseUrl(String baseUrl) {
+        apiClient.setApiBaseUrl(baseUrl);
+        config.setApiBaseUrl(apiClient.getApiBaseUrl());
+        // The credit balance belonged to the previous server
+        rateLimiter.setCredits(JsmonRateLimiter.UNKNOWN_CREDITS);
+    }
+    
+    public String getApiBaseUrl() {
+        return apiClient.getApiBaseUrl();
+    }
+    
     public void setWorkspaceId(String workspaceId) {
         config.setWorkspaceId(workspaceId);
     }
@@ -195,20 +625,56 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
     
     public void setScopedDomain(String scopedDomain) {
         config.setScopedDomain(scopedDomain);
+        urlProcessor.setScopedDomains(scopedDomain);
     }
     
     public String getScopedDomain() {
         return config.getScopedDomain();
     }
     
+    /**
+     * Choose where scope decisions come from (scoped domain list or Burp's target scope)
+     */
+    public void setScopeSource(JsmonUrlProcessor.ScopeSource source) {
+        config.setScopeSource(source.name());
+        urlProcessor.setScopeSource(source, api.scope());
+    }
+    
+    public JsmonUrlProcessor.ScopeSource getScopeSource() {
+        return urlProcessor.getScopeSource();
+    }
+    
+    /**
+     * Set the query/path parameters ignored when deduplicating URLs
+     * @return Entries that are not valid regular expressions
+     */
+    public List<String> setVolatileQueryParams(String volatileQueryParams) {
+        config.setVolatileQueryParams(volatileQueryParams);
+        return urlCanonicalizer.setVolatileParams(config.getVolatileQueryParams());
+    }
+    
+    public String getVolatileQueryParams() {
+        return config.getVolatileQueryParams();
+    }
+    
     public void setAutomateScan(boolean automateScan) {
         boolean wasEnabled = config.isAutomateScan();
         config.setAutomateScan(automateScan);
         
-        // If disabling automatic scanning, interrupt any running scan thread
+        // If disabling automatic scanning, drop queued uploads and cancel any running automatic scan
         if (wasEnabled && !automateScan) {
-            if (currentScanThread != null && currentScanThread.isAlive()) {
-                currentScanThread.interrupt();
+            int discarded = submissionQueue.clear();
+            if (discarded > 0) {
+                logging.logToOutput("JSMon: Discarded " + discarded + " queued file(s)");
+            }
+            boolean stopped = false;
+            for (JsmonScanJob job : activeScanJobs) {
+                if (job.isAutomatic()) {
+                    job.cancel();
+                    stopped = true;
+                }
+            }
+            if (stopped) {
                 logging.logToOutput("JSMon: Automatic scanning disabled - stopping current scan");
             }
         }
@@ -226,6 +692,176 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
         return config.isAutomateScan();
     }
     
+    public JsmonDiagnostics.Level getDiagnosticsLevel() {
+        return diagnostics.getOutputLevel();
+    }
+    
+    public void setDiagnosticsLevel(JsmonDiagnostics.Level level) {
+        config.setDiagnosticsLevel(level.name());
+        diagnostics.setOutputLevel(level);
+    }
+    
+    /**
+     * Write the in-memory diagnostics trace to Burp's output pane
+     * @return Number of trace entries written
+     */
+    public int dumpDiagnostics() {
+        return diagnostics.dumpToOutput();
+    }
+    
+    public JsmonSubmissionQueue.OverflowPolicy getQueueOverflowPolicy() {
+        return submissionQueue.getOverflowPolicy();
+    }
+    
+    public void setQueueOverflowPolicy(JsmonSubmissionQueue.OverflowPolicy policy) {
+        config.setQueueOverflowPolicy(policy.name());
+        submissionQueue.setOverflowPolicy(policy);
+    }
+    
+    public int getLoadShedThreshold() {
+        return loadShedder.getThresholdPerSecond();
+    }
+    
+    /**
+     * Responses per second above which the live handler defers files (0 disables load shedding)
+     */
+    public void setLoadShedThreshold(int threshold) {
+        config.setLoadShedThreshold(threshold);
+        loadShedder.setThresholdPerSecond(threshold);
+    }
+    
+    public int getMaxInFlightUploads() {
+        return apiClient.getMaxInFlightUploads();
+    }
+    
+    /**
+     * Maximum uploads waiting for a JSMon response at once (live auto-scan and history scan combined)
+     */
+    public void setMaxInFlightUploads(int maxInFlightUploads) {
+        config.setMaxInFlightUploads(maxInFlightUploads);
+        apiClient.setMaxInFlightUploads(config.getMaxInFlightUploads());
+    }
+    
+    public int getUploadBatchSize() {
+        return uploadBatcher.getMaxItems();
+    }
+    
+    public int getUploadBatchWindowMs() {
+        return (int) uploadBatcher.getWindowMs();
+    }
+    
+    /**
+     * Batch up to batchSize files into one upload request, waiting at most windowMs for them (batch size 1 disables batching)
+     */
+    public void setUploadBatching(int batchSize, int windowMs) {
+        config.setUploadBatchSize(batchSize);
+        config.setUploadBatchWindowMs(windowMs);
+        uploadBatcher.configure(config.getUploadBatchSize(), config.getUploadBatchWindowMs());
+    }
+    
+    public int getRetryMaxAttempts() {
+        return retryScheduler.getMaxAttempts();
+    }
+    
+    public int getRetryBudgetPerMinute() {
+        return retryScheduler.getBudgetPerMinute();
+    }
+    
+    /**
+     * Attempts per upload (1 disables retries) and retries allowed per minute across all uploads
+     */
+    public void setRetryPolicy(int maxAttempts, int budgetPerMinute) {
+        config.setRetryMaxAttempts(maxAttempts);
+        config.setRetryBudgetPerMinute(budgetPerMinute);
+        retryScheduler.configure(config.getRetryMaxAttempts(), config.getRetryBudgetPerMinute());
+    }
+    
+    public int getUploadsPerSecond() {
+        return rateLimiter.getUploadsPerSecond();
+    }
+    
+    /**
+     * Upload rate limit shared by automatic and manual scans (0 for no limit)
+     */
+    public void setUploadsPerSecond(int uploadsPerSecond) {
+        config.setUploadsPerSecond(uploadsPerSecond);
+        rateLimiter.setUploadsPerSecond(config.getUploadsPerSecond());
+    }
+    
+    /**
+     * Called on a Burp handler thread when load shedding starts or stops - keep it cheap
+     */
+    private void onLoadModeChanged(boolean shedding) {
+        String message;
+        if (shedding) {
+            message = String.format("⚠ High proxy load (%.0f responses/s) - deferring files to a later history scan",
+                    loadShedder.getArrivalRate());
+        } else {
+            message = "✓ Proxy load back to normal - " + deferredBacklog.getStats().getSize() + " deferred URL(s) to catch up";
+        }
+        logging.logToOutput("JSMon: " + message);
+        if (tab != null) {
+            tab.appendStatusMessage(message);
+        }
+        if (!shedding) {
+            drainDeferredBacklog();
+        }
+    }
+    
+    /**
+     * Called on the thread that completed an upload when the circuit breaker changes state
+     */
+    private void onCircuitStateChanged(JsmonCircuitBreaker.State state) {
+        String message;
+        switch (state) {
+            case OPEN:
+                message = "⚠ JSMon API failing - pausing uploads for " + circuitBreaker.getRemainingCoolDownMs() / 1000
+                        + "s, files are deferred";
+                break;
+            case HALF_OPEN:
+                message = "ℹ Probing the JSMon API with one upload";
+                break;
+            default:
+                message = "✓ JSMon API reachable again - " + deferredBacklog.getStats().getSize() + " deferred URL(s) to catch up";
+                break;
+        }
+        logging.logToOutput("JSMon: " + message);
+        if (tab != null) {
+            tab.appendStatusMessage(message);
+        }
+        if (state == JsmonCircuitBreaker.State.CLOSED) {
+            drainDeferredBacklog();
+        }
+    }
+    
+    /**
+     * Scan the proxy history for files deferred while shedding load or while the API was down.
+     * Skipped if another history scan is running (it drains the backlog as well).
+     */
+    private void drainDeferredBacklog() {
+        if (!config.isAutomateScan() || deferredBacklog.getStats().getSize() == 0) {
+            return;
+        }
+        if (loadShedder.isShedding() || circuitBreaker.getState() != JsmonCircuitBreaker.State.CLOSED) {
+            // Drained when the other condition clears
+            return;
+        }
+        if (currentScanThread != null && currentScanThread.isAlive()) {
+            return;
+        }
+        Thread drainThread = new Thread(() -> {
+            int count = scanHttpHistory(statusMessage -> {
+                if (tab != null && config.isAutomateScan()) {
+                    tab.appendStatusMessage("  " + statusMessage);
+                }
+            }, true, true);
+            logging.logToOutput("JSMon: Deferred backlog scan finished - " + count + " file(s) processed");
+        }, "JSMon-Backlog-Drain");
+        drainThread.setDaemon(true);
+        currentScanThread = drainThread;
+        drainThread.start();
+    }
+    
     /**
      * Trigger initial scan of existing history when automatic scanning is enabled
      * Called after configuration is saved
@@ -256,20 +892,12 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
                 }
                 logging.logToOutput("JSMon: Automatic scanning enabled - scanning existing files in history...");
                 
-                // Pass callback to update UI in real-time
+                // Pass callback to update UI in real-time; turning automatic scanning off cancels the scan
                 int count = scanHttpHistory((statusMessage) -> {
-                    // Check if automatic scanning was disabled during scan
-                    if (!config.isAutomateScan()) {
-                        if (tab != null) {
-                            tab.appendStatusMessage("  ⚠ Scan stopped - automatic scanning was disabled");
-                        }
-                        logging.logToOutput("JSMon: Scan stopped - automatic scanning was disabled");
-                        return;
-                    }
                     if (tab != null) {
                         tab.appendStatusMessage("  " + statusMessage);
                     }
-                });
+                }, false, true);
                 
                 // Only show completion message if automatic scanning is still enabled
                 if (config.isAutomateScan()) {
@@ -287,6 +915,13 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
         }
     }
     
+    /**
+     * Shared HTTP client (timeouts, bounded executor) for all outbound calls
+     */
+    public JsmonHttpClientFactory getHttpClientFactory() {
+        return httpClientFactory;
+    }
+    
     public List<Workspace> fetchWorkspaces() {
         return apiClient.fetchWorkspaces(config.getApiKey());
     }
@@ -299,17 +934,190 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
      * Fetch the user's profile (name, email, remaining limits) via viewProfile API
      */
     public UserProfile fetchUserProfile() {
-        return apiClient.fetchUserProfile(config.getApiKey());
+        UserProfile profile = apiClient.fetchUserProfile(config.getApiKey());
+        if (profile != null) {
+            // Every profile refresh re-seeds the upload credit budget
+            rateLimiter.setCredits(parseCredits(profile.remaining));
+        }
+        return profile;
+    }
+    
+    private static long parseCredits(String remaining) {
+        try {
+            return remaining != null ? Long.parseLong(remaining.trim()) : JsmonRateLimiter.UNKNOWN_CREDITS;
+        } catch (NumberFormatException e) {
+            return JsmonRateLimiter.UNKNOWN_CREDITS;
+        }
     }
     
     public void clearProcessedUrls() {
         processedUrls.clear();
+        contentIndex.clear();
+    }
+    
+    /**
+     * Content-hash dedup index (skipped uploads, bytes saved, top duplicated bodies)
+     */
+    public JsmonContentIndex getContentIndex() {
+        return contentIndex;
+    }
+    
+    /**
+     * Hit rate, evictions and memory use of the processed-URL index
+     */
+    public JsmonDedupIndex.Stats getDedupStats() {
+        return processedUrls.getStats();
     }
     
+    /**
+     * Replace the live-response prefilter rules (empty values disable a rule)
+     * @return Values that could not be parsed (defaults are used for those)
+     */
+    public List<String> setPrefilterRules(String skippedTools, String statusRange, String bodySizeRange, String methods) {
+        config.setPrefilterRules(skippedTools, statusRange, bodySizeRange, methods);
+        return prefilter.configure(skippedTools, statusRange, bodySizeRange, methods);
+    }
+    
+    public String getPrefilterSkippedTools() {
+        return config.getPrefilterSkippedTools();
+    }
+    
+    public String getPrefilterStatusRange() {
+        return config.getPrefilterStatusRange();
+    }
+    
+    public String getPrefilterBodySizeRange() {
+        return config.getPrefilterBodySizeRange();
+    }
+    
+    public String getPrefilterMethods() {
+        return config.getPrefilterMethods();
+    }
+    
+    /**
+     * Summary of every auto-scan pipeline stage, one line each, for the stats panel
+     */
+    public String getPipelineStats() {
+        StringBuilder stats = new StringBuilder();
+        stats.append("Prefilter: ").append(prefilter.getSummary()).append('\n');
+        stats.append("Scope (").append(urlProcessor.getScopeSource()).append("): ")
+                .append(urlProcessor.getScopeCacheStats()).append('\n');
+        stats.append(String.format("Load: %s, %.0f/s, %d µs/response, threshold %d/s, %d deferred (backlog %d)%n",
+                loadShedder.isShedding() ? "SHEDDING" : "normal", loadShedder.getArrivalRate(),
+                loadShedder.getAverageNanos() / 1000, loadShedder.getThresholdPerSecond(),
+                loadShedder.getShedCount(), deferredBacklog.getStats().getSize()));
+        stats.append("Upload queue: ").append(submissionQueue.getPendingCount()).append('/')
+                .append(submissionQueue.getCapacity()).append(" pending, ")
+                .append(submissionQueue.getSubmittedCount()).append(" submitted, ")
+                .append(submissionQueue.getDroppedCount()).append(" dropped, ")
+                .append(submissionQueue.getProcessedCount()).append(" processed\n");
+        stats.append("Uploads: ").append(apiClient.getInFlightUploads()).append('/')
+                .append(apiClient.getMaxInFlightUploads()).append(" in flight\n");
+        stats.append("Circuit: ").append(describeCircuit()).append('\n');
+        stats.append("Rate limit: ").append(rateLimiter.getSummary()).append('\n');
+        stats.append("Batching: ").append(uploadBatcher.getSummary()).append('\n');
+        stats.append("Retries: ").append(retryScheduler.getSummary()).append('\n');
+        stats.append("Read requests: ").append(apiClient.getReadRequests().getExecutedCount()).append(" sent, ")
+                .append(apiClient.getReadRequests().getCoalescedCount()).append(" coalesced, ")
+                .append(apiClient.getReadRequests().getInFlightCount()).append(" in flight\n");
+        stats.append("Compression: ").append(httpClientFactory.getCompressionSummary())
+                .append(describeGzipSupport()).append('\n');
+        for (JsmonScanJob job : activeScanJobs) {
+            stats.append(job.isAutomatic() ? "Automatic history scan: " : "Manual history scan: ")
+                    .append(job.getSummary()).append('\n');
+        }
+        stats.append("In flight: ").append(submissionTracker.getActiveCount()).append(", ")
+                .append(submissionTracker.getCoalescedCount()).append(" coalesced, ")
+                .append(submissionTracker.getSucceededCount()).append(" succeeded, ")
+                .append(submissionTracker.getFailedCount()).append(" failed\n");
+        if (journal != null) {
+            stats.append("Journal: ").append(journal.getSummary()).append('\n');
+        }
+        stats.append("Processed URLs: ").append(processedUrls.getStats()).append('\n');
+        stats.append("Content dedup: ").append(contentIndex.size()).append(" bodies, ")
+                .append(contentIndex.getSkippedUploads()).append(" skipped, ")
+                .append(contentIndex.getBytesSaved() / 1024).append(" KB saved");
+        return stats.toString();
+    }
+    
+    /**
+     * " (server accepts gzip uploads)" suffix for the Compression stats line
+     */
+    private String describeGzipSupport() {
+        switch (apiClient.getGzipSupport()) {
+            case ACCEPTED:
+                return " (server accepts gzip uploads)";
+            case REFUSED:
+                return " (server refused gzip uploads)";
+            default:
+                return " (gzip uploads not probed yet)";
+        }
+    }
+    
+    /**
+     * "open since 12:03:04 (probe in 21s), 40 refused; earlier: closed 12:01:10, ..." for the stats panel
+     */
+    private String describeCircuit() {
+        java.text.SimpleDateFormat time = new java.text.SimpleDateFormat("HH:mm:ss");
+        StringBuilder description = new StringBuilder();
+        JsmonCircuitBreaker.State state = circuitBreaker.getState();
+        description.append(state).append(" since ").append(time.format(new Date(circuitBreaker.getStateSince())));
+        if (state == JsmonCircuitBreaker.State.OPEN) {
+            description.append(" (probe in ").append((circuitBreaker.getRemainingCoolDownMs() + 999) / 1000).append("s)");
+        }
+        description.append(", ").append(circuitBreaker.getRejectedCount()).append(" refused");
+        List<JsmonCircuitBreaker.Transition> transitions = circuitBreaker.getTransitions();
+        for (int i = 1; i < transitions.size(); i++) {
+            description.append(i == 1 ? "; earlier: " : ", ").append(transitions.get(i).getState()).append(' ')
+                    .append(time.format(new Date(transitions.get(i).getTimestamp())));
+        }
+        return description.toString();
+    }
+    
+    /**
+     * Manual scan of the proxy history; stopped by {@link #cancelHistoryScans()}
+     */
     public int scanHttpHistory(java.util.function.Consumer<String> statusCallback) {
+        return scanHttpHistory(statusCallback, false, false);
+    }
+    
+    /**
+     * Stop every running history scan. Files already being uploaded finish in the background.
+     * @return Number of scans stopped
+     */
+    public int cancelHistoryScans() {
+        int stopped = 0;
+        for (JsmonScanJob job : activeScanJobs) {
+            if (!job.isCancelled()) {
+                job.cancel();
+                stopped++;
+            }
+        }
+        return stopped;
+    }
+    
+    public boolean isHistoryScanRunning() {
+        return !activeScanJobs.isEmpty();
+    }
+    
+    public int getHistoryScanWorkers() {
+        return config.getHistoryScanWorkers();
+    }
+    
+    /**
+     * Files uploaded in parallel by history scans started from now on
+     */
+    public void setHistoryScanWorkers(int workers) {
+        config.setHistoryScanWorkers(workers);
+    }
+    
+    /**
+     * @param deferredOnly Only scan files whose canonical key is in the deferred backlog
+     * @param automatic    Started by automatic scanning (stopped when it is turned off)
+     */
+    private int scanHttpHistory(java.util.function.Consumer<String> statusCallback, boolean deferredOnly, boolean automatic) {
         String apiKey = config.getApiKey();
         String workspaceId = config.getWorkspaceId();
-        String scopedDomain = config.getScopedDomain();
         
         if (apiKey == null || apiKey.isEmpty() || workspaceId == null || workspaceId.isEmpty()) {
             logging.logToOutput("JSMon: Cannot scan - API key or workspace ID not configured");
@@ -334,86 +1142,44 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
                 statusCallback.accept("Found " + proxyHistory.size() + " entries in proxy history");
             }
             
+            boolean hasDeferred = deferredBacklog.getStats().getSize() > 0;
+            
             // First pass: collect all scannable files and store their requests
             for (burp.api.montoya.proxy.ProxyHttpRequestResponse proxyEntry : proxyHistory) {
                 try {
                     // Get the URL from the proxy entry
                     String url = proxyEntry.url().toString();
                     
+                    // Any history scan covers files deferred while the live handler was shedding load;
+                    // a deferred key leaves the backlog only once its upload settles
+                    boolean deferred = hasDeferred && deferredBacklog.contains(urlCanonicalizer.canonicalize(url));
+                    if (deferredOnly && !deferred) {
+                        continue;
+                    }
+                    
                     // Check if URL matches scoped domain
-                    if (scopedDomain != null && !scopedDomain.isEmpty()) {
-                        if (!urlProcessor.isUrlInScope(url, scopedDomain)) {
-                            continue;
+                    if (!urlProcessor.isUrlInScope(url)) {
+                        if (deferred) {
+                            // Scope changed since it was deferred: nothing left to upload
+                            deferredBacklog.remove(urlCanonicalizer.canonicalize(url));
                         }
+                        continue;
                     }
                     
                     // Check if it's a scannable file by URL extension OR Content-Type
-                    // Extract Content-Type header directly (avoid fetching full response object)
-                    String contentType = null;
-                    
-                    try {
-                        // Try to get response headers directly from proxy entry
-                        java.lang.reflect.Method responseMethod = proxyEntry.getClass().getMethod("httpResponse");
-                        Object responseObj = responseMethod.invoke(proxyEntry);
-                        if (responseObj != null) {
-                            // Try headerValue() method on response
-                            try {
-                                java.lang.reflect.Method headerValueMethod = responseObj.getClass().getMethod("headerValue", String.class);
-                                contentType = (String) headerValueMethod.invoke(responseObj, "Content-Type");
-                            } catch (Exception e2) {
-                                // Try headers() method
-                                try {
-                                    java.lang.reflect.Method headersMethod = responseObj.getClass().getMethod("headers");
-                                    Object headersObj = headersMethod.invoke(responseObj);
-                                    if (headersObj != null && headersObj instanceof java.lang.Iterable) {
-                                        for (Object header : (java.lang.Iterable<?>) headersObj) {
-                                            try {
-                                                java.lang.reflect.Method nameMethod = header.getClass().getMethod("name");
-                                                java.lang.reflect.Method valueMethod = header.getClass().getMethod("value");
-                                                String headerName = (String) nameMethod.invoke(header);
-                                                if ("Content-Type".equalsIgnoreCase(headerName)) {
-                                                    contentType = (String) valueMethod.invoke(header);
-                                                    break;
-                                                }
-                                            } catch (Exception e3) {
-                                                // Continue
-                                            }
-                                        }
-                                    }
-                                } catch (Exception e3) {
-                                    // Headers not available
-                                }
-                            }
-                        }
-                    } catch (Exception e1) {
-                        // Try alternative method names
-                        try {
-                            java.lang.reflect.Method responseMethod = proxyEntry.getClass().getMethod("response");
-                            Object responseObj = responseMethod.invoke(proxyEntry);
-                            if (responseObj != null) {
-                                try {
-                                    java.lang.reflect.Method headerValueMethod = responseObj.getClass().getMethod("headerValue", String.class);
-                                    contentType = (String) headerValueMethod.invoke(responseObj, "Content-Type");
-                                } catch (Exception e2) {
-                                    // Headers not available
-                                }
-                            }
-                        } catch (Exception e2) {
-                            // Response not available, will check extension only
-                        }
-                    }
+                    // Content-Type from the original response (null if no response was received)
+                    String contentType = JsmonMessageAccessor.contentType(proxyEntry);
                     
                     // Use urlProcessor to check BOTH extension AND Content-Type (OR logic)
                     // This ensures consistent matching with automatic scanning
                     // Use Content-Type string to avoid duplicate extraction (we already have it)
                     boolean isScannable = urlProcessor.isScannableFile(url, contentType);
                     
-                    if (logging != null && isScannable) {
-                        logging.logToOutput("JSMon: History scan - Detected scannable file: " + url + (contentType != null ? " (Content-Type: " + contentType + ")" : ""));
+                    if (isScannable) {
+                        diagnostics.debug(() -> "JSMon: History scan - Detected scannable file: " + url + (contentType != null ? " (Content-Type: " + contentType + ")" : ""));
                     }
                     
-                    if (isScannable && !scannedUrls.contains(url)) {
-                        scannedUrls.add(url);
+                    if (isScannable && scannedUrls.add(urlCanonicalizer.canonicalize(url))) {
                         scannableFiles.add(url);
                         
                         // Store the proxy entry for later use to extract headers if possible
@@ -438,78 +1204,103 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
             }
             logging.logToOutput("JSMon: Found " + scannableFiles.size() + " file(s) to scan");
             
-            // Second pass: scan each file sequentially with real-time updates
-            for (int i = 0; i < scannableFiles.size(); i++) {
-                // Check if automatic scanning was disabled (for automatic scans) or thread was interrupted
-                if (config.isAutomateScan() == false || Thread.currentThread().isInterrupted()) {
-                    if (statusCallback != null) {
-                        statusCallback.accept("⚠ Scan stopped by user");
+            // Second pass: upload on a bounded worker pool; the rate limiter and in-flight limit
+            // in the API client pace the workers
+            AtomicInteger succeeded = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            int total = scannableFiles.size();
+            JsmonScanJob job = new JsmonScanJob("JSMon-Scan", total, config.getHistoryScanWorkers(), automatic);
+            activeScanJobs.add(job);
+            if (statusCallback != null) {
+                statusCallback.accept("Uploading with " + job.getWorkers() + " worker(s)");
+            }
+            boolean finished;
+            try {
+                finished = job.run(i -> {
+                    String url = scannableFiles.get(i);
+                    String progress = "[" + (i + 1) + "/" + total + "] ";
+                    logging.logToOutput("JSMon: " + progress + "Scanning: " + url);
+                    
+                    // Get request headers from proxy entry (avoid fetching full request body)
+                    burp.api.montoya.proxy.ProxyHttpRequestResponse proxyEntry = urlToProxyEntryMap.get(url);
+                    HttpRequest request = JsmonMessageAccessor.request(proxyEntry);
+                    // Fallback: create minimal request from URL if proxy entry not found or request extraction failed
+                    if (request == null) {
+                        request = HttpRequest.httpRequestFromUrl(url);
                     }
-                    logging.logToOutput("JSMon: Scan stopped - automatic scanning disabled or interrupted");
-                    break;
-                }
-                
-                String url = scannableFiles.get(i);
-                int fileNum = i + 1;
-                
-                // Show scanning status
-                if (statusCallback != null) {
-                    statusCallback.accept("[" + fileNum + "/" + scannableFiles.size() + "] Scanning: " + url);
-                }
-                logging.logToOutput("JSMon: [" + fileNum + "/" + scannableFiles.size() + "] Scanning: " + url);
-                
-                // Get request headers from proxy entry (avoid fetching full request body)
-                burp.api.montoya.proxy.ProxyHttpRequestResponse proxyEntry = urlToProxyEntryMap.get(url);
-                HttpRequest request = null;
-                if (proxyEntry != null) {
-                    // Try to get request from proxy entry - only need headers, not full body
-                    try {
-                        request = (HttpRequest) proxyEntry.getClass().getMethod("httpRequest").invoke(proxyEntry);
-                    } catch (Exception e1) {
-                        try {
-                            request = (HttpRequest) proxyEntry.getClass().getMethod("request").invoke(proxyEntry);
-                        } catch (Exception e2) {
-                            try {
-                                request = (HttpRequest) proxyEntry.getClass().getMethod("finalRequest").invoke(proxyEntry);
-                            } catch (Exception e3) {
-                                // Will use URL fallback
+                    
+                    // Claim the file; if the live handler is already uploading it, share that upload's result
+                    String dedupKey = urlCanonicalizer.canonicalize(url);
+                    JsmonSubmissionTracker.Claim<JsmonApiClient.SendResult> claim = submissionTracker.claim(dedupKey, true);
+                    CompletableFuture<JsmonApiClient.SendResult> upload;
+                    if (claim.isOwner()) {
+                        submissionTracker.markInFlight(dedupKey);
+                        burp.api.montoya.http.message.responses.HttpResponse proxyResponse = JsmonMessageAccessor.response(proxyEntry);
+                        burp.api.montoya.core.ByteArray body = proxyResponse != null ? proxyResponse.body() : null;
+                        // Only headers are extracted from the request, not the full request body
+                        upload = uploadClaimedFile(dedupKey, url, workspaceId, apiKey, request,
+                                hashBody(body), body != null ? body.length() : 0, job::isCancelled);
+                    } else {
+                        upload = claim.awaitAsync(COALESCED_WAIT_MS);
+                    }
+                    
+                    return upload.thenAccept(result -> {
+                        if (result == null) {
+                            if (statusCallback != null) {
+                                statusCallback.accept(progress + "⏭ Skipped - already being uploaded: " + url);
+                            }
+                        } else if (result.isCancelled()) {
+                            // Scan stopped before this file was sent; nothing to report per file
+                            return;
+                        } else if (result == DUPLICATE_UPLOAD) {
+                            if (statusCallback != null) {
+                                statusCallback.accept(progress + "⏭ Skipped duplicate content: " + url);
+                            }
+                        } else if (result.isCircuitOpen()) {
+                            if (statusCallback != null) {
+                                statusCallback.accept(progress + "⏸ Deferred until the JSMon API recovers: " + url);
+                            }
+                        } else if (result.isSuccess()) {
+                            succeeded.incrementAndGet();
+                            if (statusCallback != null) {
+                                statusCallback.accept(progress + "✓ Success: " + url);
+                            }
+                            logging.logToOutput("JSMon: " + progress + "✓ Successfully scanned: " + url);
+                        } else {
+                            failed.incrementAndGet();
+                            String errorMsg = result.getErrorMessage();
+                            String failureMessage = progress + "✗ Failed: " + url;
+                            if (errorMsg != null && !errorMsg.isEmpty()) {
+                                failureMessage += " - " + errorMsg;
+                            }
+                            if (statusCallback != null) {
+                                statusCallback.accept(failureMessage);
                             }
+                            logging.logToError("JSMon: " + failureMessage);
                         }
-                    }
-                }
-                // Fallback: create minimal request from URL if proxy entry not found or request extraction failed
-                // This creates a request with just the URL (no headers, but that's okay - buildHeadersJson handles null)
-                if (request == null) {
-                    request = HttpRequest.httpRequestFromUrl(url);
-                }
-                            
-                // Send to JSMon API and capture result (only headers are extracted, not full request body)
-                processedUrls.add(url);
-                
-                burp.api.JsmonApiClient.SendResult result = apiClient.sendToJsmon(url, workspaceId, apiKey, request);
-                
-                if (result.isSuccess()) {
-                    scannedCount++;
-                    if (statusCallback != null) {
-                        statusCallback.accept("[" + fileNum + "/" + scannableFiles.size() + "] ✓ Success: " + url);
-                    }
-                    logging.logToOutput("JSMon: [" + fileNum + "/" + scannableFiles.size() + "] ✓ Successfully scanned: " + url);
-                    // Refresh user profile to update JSScan credits after each successful scan
-                    if (tab != null) {
-                        tab.fetchAndDisplayUserProfile();
-                    }
-                } else {
-                    failedCount++;
-                    String errorMsg = result.getErrorMessage();
-                    String failureMessage = "[" + fileNum + "/" + scannableFiles.size() + "] ✗ Failed: " + url;
-                    if (errorMsg != null && !errorMsg.isEmpty()) {
-                        failureMessage += " - " + errorMsg;
-                    }
+                    });
+                }, SCAN_PROGRESS_INTERVAL_MS, running -> {
                     if (statusCallback != null) {
-                        statusCallback.accept(failureMessage);
+                        statusCallback.accept("Progress: " + running.getSummary());
                     }
-                    logging.logToError("JSMon: " + failureMessage);
+                });
+            } finally {
+                activeScanJobs.remove(job);
+            }
+            scannedCount = succeeded.get();
+            failedCount = failed.get();
+            
+            if (!finished) {
+                String stopped = "Scan stopped after " + job.getCompleted() + "/" + total + " file(s): " + scannedCount
+                        + " succeeded, " + failedCount + " failed, " + job.getInFlight() + " still uploading in the background";
+                if (statusCallback != null) {
+                    statusCallback.accept("⚠ " + stopped);
                 }
+                logging.logToOutput("JSMon: " + stopped);
+                if (tab != null) {
+                    tab.fetchAndDisplayUserProfile();
+                }
+                return scannedCount;
             }
             
             // Final summary
@@ -522,6 +1313,8 @@ public class JsmonExtension implements BurpExtension, HttpHandler {
             // Fetch secrets after scan completes if at least one scan was attempted (success or failure)
             if ((scannedCount > 0 || failedCount > 0) && tab != null) {
                 tab.fetchAndDisplaySecrets();
+                // Refresh JSScan credits once for the whole scan
+                tab.fetchAndDisplayUserProfile();
             }
             
         } catch (Exception e) {
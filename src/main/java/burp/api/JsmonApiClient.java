@@ -5,28 +5,72 @@ import burp.model.JsUrlEntry;
 import burp.model.UserProfile;
 import burp.model.Workspace;
 import burp.util.JsmonJsonParser;
+import burp.util.JsmonJsonWriter;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
 public class JsmonApiClient {
-    private static final String API_BASE_URL = "https://api.jsmon.sh/api/v2";
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    /**
+     * Whether the server accepts gzipped upload bodies, as learned from the first large upload
+     */
+    public enum GzipSupport {
+        UNKNOWN, ACCEPTED, REFUSED
+    }
+    
+    public static final String DEFAULT_API_BASE_URL = "https://api.jsmon.sh/api/v2";
+    private volatile String apiBaseUrl = DEFAULT_API_BASE_URL;
+    private final JsmonHttpClientFactory http;
     private final Logging logging;
     private final JsmonJsonParser jsonParser;
+    private final UploadPermits uploadPermits;
+    private final JsmonRateLimiter rateLimiter;
+    private final JsmonCircuitBreaker circuitBreaker;
+    private int maxInFlightUploads;
+    private volatile GzipSupport gzipSupport = GzipSupport.UNKNOWN;
+    /** Set while the one upload that finds out whether gzip is accepted is in flight */
+    private final AtomicBoolean gzipProbeInFlight = new AtomicBoolean();
+    private final JsmonSingleFlight readRequests = new JsmonSingleFlight();
+
+    /** Hop-by-hop and framing headers that are not forwarded with an upload */
+    private static final Set<String> SKIP_HEADERS = Set.of(
+            "Host", "Connection", "Content-Length", "Transfer-Encoding",
+            "Upgrade", "TE", "Trailer", "Keep-Alive");
+
+    /** Bodies smaller than this are not worth compressing */
+    private static final int GZIP_MIN_BYTES = 1024;
     
-    public JsmonApiClient(Logging logging) {
+    /**
+     * @param maxInFlightUploads Upper bound on concurrent uploads (enforced by a semaphore)
+     * @param rateLimiter        Paces uploads and holds them while JsScan credits are exhausted
+     * @param circuitBreaker     Refuses uploads while the API keeps failing
+     */
+    public JsmonApiClient(Logging logging, JsmonHttpClientFactory http, int maxInFlightUploads,
+                          JsmonRateLimiter rateLimiter, JsmonCircuitBreaker circuitBreaker) {
         this.logging = logging;
+        this.http = http;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.maxInFlightUploads = Math.max(1, maxInFlightUploads);
+        this.uploadPermits = new UploadPermits(this.maxInFlightUploads);
         this.jsonParser = new JsmonJsonParser(logging);
     }
     
@@ -43,13 +87,12 @@ public class JsmonApiClient {
         }
         
         try {
-            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-                    .uri(URI.create(API_BASE_URL + "/getWorkspaces"))
+            java.net.http.HttpRequest request = http.newCompressedRequest(URI.create(apiBaseUrl + "/getWorkspaces"))
                     .header("X-Jsmon-Key", apiKey.trim())
                     .GET()
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = http.send(request, http.textBody());
             if (response.statusCode() != 200) {
                 if (logging != null) {
                     logging.logToError("JSMon: getWorkspaces failed (HTTP " + response.statusCode() + ")");
@@ -86,17 +129,16 @@ public class JsmonApiClient {
         }
         
         try {
-            String endpoint = API_BASE_URL + "/createWorkspace";
+            String endpoint = apiBaseUrl + "/createWorkspace";
             String payload = "{\"name\":\"" + jsonParser.jsonEscape(workspaceName) + "\"}";
 
-            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-                    .uri(URI.create(endpoint))
+            java.net.http.HttpRequest request = http.newCompressedRequest(URI.create(endpoint))
                     .header("Content-Type", "application/json")
                     .header("X-Jsmon-Key", apiKey.trim())
                     .POST(BodyPublishers.ofString(payload))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = http.send(request, http.textBody());
 
             int status = response.statusCode();
             String body = response.body() != null ? response.body() : "";
@@ -141,16 +183,19 @@ public class JsmonApiClient {
         if (apiKey == null || apiKey.isEmpty()) {
             return null;
         }
+        return readRequests.execute(apiBaseUrl + "/viewProfile|" + apiKey.trim(), () -> sendFetchUserProfile(apiKey), profile -> profile);
+    }
+
+    private UserProfile sendFetchUserProfile(String apiKey) {
 
         try {
-            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-                    .uri(URI.create(API_BASE_URL + "/viewProfile"))
+            java.net.http.HttpRequest request = http.newCompressedRequest(URI.create(apiBaseUrl + "/viewProfile"))
                     .header("Content-Type", "application/json")
                     .header("X-Jsmon-Key", apiKey.trim())
                     .GET()
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> response = http.send(request, http.textBody());
             int status = response.statusCode();
             String body = response.body() != null ? response.body() : "";
 
@@ -184,64 +229,454 @@ public class JsmonApiClient {
     }
     
     /**
-     * Send scannable file URL to JSMon for scanning
-     * @return Result object containing success status and error message if failed
+     * Send scannable file URL to JSMon without waiting for the response.
+     * Blocks only while the rate limiter or the in-flight limit holds it back, which throttles the caller.
+     * @param cancelled Checked while blocked; once true the upload is given up before it is sent
+     * @return Future that always completes normally with the upload result
      */
-    public SendResult sendToJsmon(String url, String workspaceId, String apiKey, burp.api.montoya.http.message.requests.HttpRequest request) {
+    public CompletableFuture<SendResult> sendToJsmonAsync(String url, String workspaceId, String apiKey,
+                                                          burp.api.montoya.http.message.requests.HttpRequest request,
+                                                          BooleanSupplier cancelled) {
+        byte[] payload;
         try {
-            String endpoint = API_BASE_URL + "/uploadUrl?source=burpsuiteExtensionScan&wkspId=" +
-                    URLEncoder.encode(workspaceId, StandardCharsets.UTF_8.toString());
-
-            String headersJson = buildHeadersJson(request);
-            StringBuilder payload = new StringBuilder();
-            payload.append("{\"url\":\"").append(jsonParser.jsonEscape(url)).append("\"");
-            if (headersJson != null && !headersJson.isEmpty()) {
-                payload.append(",\"headers\":").append(headersJson);
+            JsmonJsonWriter json = JsmonJsonWriter.reusable();
+            writeUpload(json, url, request);
+            payload = json.toByteArray();
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(uploadError(url, e));
+        }
+        return postUpload(url, 1, workspaceId, apiKey, payload, cancelled).thenApply(exchange -> exchange.result);
+    }
+    
+    /**
+     * Send several scannable file URLs in one request, as a JSON array of the single-upload objects.
+     * Counts as one upload against the in-flight limit and reserves a credit per file.
+     * @param urls     File URLs
+     * @param requests Original request for each URL (same order, entries may be null)
+     * @return Future that always completes normally. Its items are null unless the server answered
+     *         with one result per file; credits are then given back only for the files that failed,
+     *         otherwise for all of them (the caller is expected to send them again one by one).
+     */
+    public CompletableFuture<BatchResult> sendBatchToJsmonAsync(List<String> urls, String workspaceId, String apiKey,
+                                                                List<burp.api.montoya.http.message.requests.HttpRequest> requests,
+                                                                BooleanSupplier cancelled) {
+        String description = "batch of " + urls.size() + " files";
+        byte[] payload;
+        try {
+            JsmonJsonWriter json = JsmonJsonWriter.reusable().beginArray();
+            for (int i = 0; i < urls.size(); i++) {
+                writeUpload(json, urls.get(i), requests.get(i));
+            }
+            payload = json.endArray().toByteArray();
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(new BatchResult(uploadError(description, e), null));
+        }
+        return postUpload(description, urls.size(), workspaceId, apiKey, payload, cancelled).thenApply(exchange -> {
+            if (!exchange.result.isSuccess()) {
+                return new BatchResult(exchange.result, null);
+            }
+            List<SendResult> items = readUploadResults(description, exchange.body, urls.size());
+            int failed = 0;
+            if (items == null) {
+                failed = urls.size();
+            } else {
+                for (SendResult item : items) {
+                    if (!item.isSuccess()) {
+                        failed++;
+                    }
+                }
             }
-            payload.append("}");
+            rateLimiter.refund(failed);
+            return new BatchResult(exchange.result, items);
+        });
+    }
+    
+    /**
+     * Per-file results of a batched upload: an array with one object per file, in request order,
+     * each with a "success" flag or an HTTP-style "status" (plus "message" or "error" text)
+     * @return Results in request order, or null if the body is not in that shape
+     */
+    private List<SendResult> readUploadResults(String description, String body, int files) {
+        List<Map<String, String>> objects;
+        try {
+            objects = body == null ? null : jsonParser.readUploadResults(new java.io.StringReader(body));
+        } catch (java.io.IOException | RuntimeException e) {
+            objects = null;
+        }
+        if (objects == null || objects.size() != files) {
+            return null;
+        }
+        List<SendResult> results = new ArrayList<>(files);
+        for (Map<String, String> object : objects) {
+            String success = object.get("success");
+            int status;
+            try {
+                status = object.containsKey("status") ? Integer.parseInt(object.get("status")) : 0;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (success == null && status == 0) {
+                return null;
+            }
+            boolean ok = success != null ? "true".equals(success) : status >= 200 && status < 300;
+            if (ok) {
+                results.add(new SendResult(true, null, status));
+                continue;
+            }
+            String message = object.getOrDefault("message", object.get("error"));
+            String errorMessage = (status != 0 ? "HTTP " + status : "Refused") + (message != null ? " - " + message : "");
+            if (logging != null) {
+                logging.logToError("JSMon: ✗ Failed to send: " + object.getOrDefault("url", "file in " + description)
+                        + " (" + errorMessage + ")");
+            }
+            results.add(new SendResult(false, errorMessage, status));
+        }
+        return results;
+    }
+    
+    /**
+     * Upload object for one file: {"url": ..., "headers": {...}}
+     */
+    private void writeUpload(JsmonJsonWriter json, String url, burp.api.montoya.http.message.requests.HttpRequest request) {
+        json.beginObject().name("url").value(url);
+        writeHeaders(json, request);
+        json.endObject();
+    }
+    
+    /**
+     * POST an upload payload once the rate limiter and an in-flight permit allow it
+     * @param url       File URL or batch description, used in log messages
+     * @param files     Number of files in the payload (credits it costs)
+     * @param cancelled Gives the upload up while it waits for either
+     */
+    private CompletableFuture<Exchange> postUpload(String url, int files, String workspaceId, String apiKey, byte[] body,
+                                                   BooleanSupplier cancelled) {
+        URI endpoint;
+        try {
+            endpoint = URI.create(apiBaseUrl + "/uploadUrl?source=burpsuiteExtensionScan&wkspId=" +
+                    URLEncoder.encode(workspaceId, StandardCharsets.UTF_8.toString()));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(new Exchange(uploadError(url, e), null));
+        }
 
-            java.net.http.HttpRequest httpRequest = java.net.http.HttpRequest.newBuilder()
-                    .uri(URI.create(endpoint))
-                    .header("Content-Type", "application/json")
-                    .header("X-Jsmon-Key", apiKey.trim())
-                    .POST(BodyPublishers.ofString(payload.toString()))
-                    .build();
+        try {
+            if (!rateLimiter.acquire(files, cancelled)) {
+                return CompletableFuture.completedFuture(new Exchange(SendResult.cancelled(), null));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(new Exchange(SendResult.cancelled(), null));
+        }
+        // Refuse locally while the API is known to be down
+        long circuitTicket = circuitBreaker.tryAcquire();
+        if (circuitTicket == JsmonCircuitBreaker.REFUSED) {
+            rateLimiter.refund(files);
+            return CompletableFuture.completedFuture(new Exchange(SendResult.circuitOpen(circuitBreaker.getRemainingCoolDownMs()), null));
+        }
+        boolean permitted = false;
+        try {
+            // Timed waits, so a cancelled scan gives the upload up without being interrupted
+            while (!permitted && !cancelled.getAsBoolean()) {
+                permitted = uploadPermits.tryAcquire(JsmonRateLimiter.CANCEL_CHECK_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!permitted) {
+            circuitBreaker.release(circuitTicket);
+            rateLimiter.refund(files);
+            return CompletableFuture.completedFuture(new Exchange(SendResult.cancelled(), null));
+        }
 
-            HttpResponse<String> response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+        // Decided only now that the upload will be sent, so a refused upload never holds the gzip probe
+        boolean probe = false;
+        boolean compress = false;
+        if (body.length >= GZIP_MIN_BYTES) {
+            GzipSupport support = gzipSupport;
+            probe = support == GzipSupport.UNKNOWN && gzipProbeInFlight.compareAndSet(false, true);
+            compress = support == GzipSupport.ACCEPTED || probe;
+        }
+        CompletableFuture<HttpResponse<String>> exchange;
+        int compressedLength;
+        try {
+            byte[] wire = compress ? JsmonHttpClientFactory.gzip(body) : body;
+            compressedLength = wire.length;
+            exchange = http.sendAsync(uploadRequest(endpoint, apiKey, wire, compress), http.textBody());
+            if (probe) {
+                exchange = settleGzipProbe(exchange, endpoint, apiKey, body);
+            }
+        } catch (RuntimeException e) {
+            if (probe) {
+                gzipProbeInFlight.set(false);
+            }
+            uploadPermits.release();
+            circuitBreaker.release(circuitTicket);
+            rateLimiter.refund(files);
+            return CompletableFuture.completedFuture(new Exchange(uploadError(url, e), null));
+        }
+        boolean attemptedCompressed = compress;
+        return exchange.handle((response, error) -> {
+            uploadPermits.release();
+            // Count the request whose answer is used (a refused gzip probe is followed by a plain copy)
+            boolean sentCompressed = response != null
+                    ? response.request().headers().firstValue("Content-Encoding").isPresent() : attemptedCompressed;
+            http.recordUpload(body.length, sentCompressed ? compressedLength : body.length);
+            SendResult result = error != null
+                    ? uploadError(url, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error)
+                    : uploadResult(url, response);
+            circuitBreaker.onResult(circuitTicket, !result.isSuccess() && (result.getStatusCode() == 0 || result.getStatusCode() >= 500));
+            if (!result.isSuccess()) {
+                rateLimiter.refund(files);
+            }
+            return new Exchange(result, result.isSuccess() ? response.body() : null);
+        });
+    }
+    
+    /**
+     * Build an upload POST for a body that is already gzipped when {@code compressed} is set
+     */
+    private java.net.http.HttpRequest uploadRequest(URI endpoint, String apiKey, byte[] wire, boolean compressed) {
+        java.net.http.HttpRequest.Builder builder = http.newCompressedRequest(endpoint)
+                .header("Content-Type", "application/json")
+                .header("X-Jsmon-Key", apiKey.trim());
+        if (compressed) {
+            builder.header("Content-Encoding", "gzip");
+        }
+        return builder.POST(BodyPublishers.ofByteArray(wire)).build();
+    }
 
-            int status = response.statusCode();
+    /**
+     * Learn from the first gzipped upload whether the server accepts compressed bodies.
+     * A 2xx settles it as accepted. A reply that could mean the encoding was not understood
+     * (400, 415, 5xx or no reply) is followed by a plain copy; if that copy succeeds, uploads stay
+     * uncompressed. Anything else (e.g. 401 or 429) says nothing about gzip and the next large
+     * upload probes again.
+     */
+    private CompletableFuture<HttpResponse<String>> settleGzipProbe(CompletableFuture<HttpResponse<String>> compressed,
+                                                                   URI endpoint, String apiKey, byte[] body) {
+        return compressed.handle((response, error) -> {
+            int status = response != null ? response.statusCode() : 0;
             if (status >= 200 && status < 300) {
-                return new SendResult(true, null);
-            } else {
-                String errorMessage = "HTTP " + status;
-                String responseBody = response.body();
-                if (responseBody != null && !responseBody.isEmpty()) {
-                    errorMessage += " - " + responseBody;
-                }
-                if (logging != null) {
-                    logging.logToError("JSMon: ✗ Failed to send: " + url + " (" + errorMessage + ")");
-                }
-                return new SendResult(false, errorMessage);
+                gzipSupport = GzipSupport.ACCEPTED;
+                gzipProbeInFlight.set(false);
+                return CompletableFuture.completedFuture(response);
             }
-        } catch (Exception e) {
-            String errorMessage = e.getMessage();
-            if (logging != null) {
-                logging.logToError("JSMon: ✗ Error calling JSMon API for " + url + ": " + errorMessage);
+            if (response != null && status != 400 && status != 415 && status < 500) {
+                gzipProbeInFlight.set(false);
+                return CompletableFuture.completedFuture(response);
             }
-            return new SendResult(false, errorMessage);
+            return http.sendAsync(uploadRequest(endpoint, apiKey, body, false), http.textBody())
+                    .whenComplete((plain, plainError) -> {
+                        if (plain != null && plain.statusCode() >= 200 && plain.statusCode() < 300) {
+                            gzipSupport = GzipSupport.REFUSED;
+                            if (logging != null) {
+                                logging.logToOutput("JSMon: Server does not accept gzip uploads ("
+                                        + (response != null ? "HTTP " + status : "no response")
+                                        + " compressed, accepted plain), sending them uncompressed");
+                            }
+                        }
+                        gzipProbeInFlight.set(false);
+                    });
+        }).thenCompose(next -> next);
+    }
+
+    /**
+     * Point the client at another JSMon API (e.g. a local stand-in server); blank restores the default
+     * @throws IllegalArgumentException if the URL is not absolute http(s)
+     */
+    public void setApiBaseUrl(String baseUrl) {
+        if (baseUrl == null || baseUrl.trim().isEmpty()) {
+            apiBaseUrl = DEFAULT_API_BASE_URL;
+            return;
+        }
+        String trimmed = baseUrl.trim();
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        URI uri = URI.create(trimmed);
+        if (uri.getHost() == null || !("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme()))) {
+            throw new IllegalArgumentException("Not an http(s) URL: " + baseUrl);
+        }
+        apiBaseUrl = trimmed;
+    }
+
+    public String getApiBaseUrl() {
+        return apiBaseUrl;
+    }
+
+    /**
+     * Collapses identical concurrent profile, count, secrets and intelligence requests
+     */
+    public JsmonSingleFlight getReadRequests() {
+        return readRequests;
+    }
+
+    public GzipSupport getGzipSupport() {
+        return gzipSupport;
+    }
+
+    private SendResult uploadResult(String url, HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status >= 200 && status < 300) {
+            return new SendResult(true, null, status);
+        }
+        String errorMessage = "HTTP " + status;
+        String responseBody = response.body();
+        if (responseBody != null && !responseBody.isEmpty()) {
+            errorMessage += " - " + responseBody;
         }
+        if (logging != null) {
+            logging.logToError("JSMon: ✗ Failed to send: " + url + " (" + errorMessage + ")");
+        }
+        return new SendResult(false, errorMessage, status,
+                parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null)));
     }
     
     /**
-     * Result class for sendToJsmon operation
+     * Parse a Retry-After header (delay in seconds or an HTTP date)
+     * @return Delay in milliseconds, or -1 if the header is missing or malformed
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        String retryAfter = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(retryAfter)) * 1000;
+        } catch (NumberFormatException e) {
+            // Not a number of seconds - try the date form
+        }
+        try {
+            long until = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, until - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+    
+    private SendResult uploadError(String url, Throwable error) {
+        String errorMessage = error.getMessage();
+        if (logging != null) {
+            logging.logToError("JSMon: ✗ Error calling JSMon API for " + url + ": " + errorMessage);
+        }
+        return new SendResult(false, errorMessage);
+    }
+    
+    /**
+     * Change how many uploads may be in flight at once
+     */
+    public synchronized void setMaxInFlightUploads(int maxInFlightUploads) {
+        int limit = Math.max(1, maxInFlightUploads);
+        int delta = limit - this.maxInFlightUploads;
+        if (delta > 0) {
+            uploadPermits.release(delta);
+        } else if (delta < 0) {
+            uploadPermits.reduce(-delta);
+        }
+        this.maxInFlightUploads = limit;
+    }
+    
+    public int getMaxInFlightUploads() {
+        return maxInFlightUploads;
+    }
+    
+    /**
+     * Uploads currently waiting for a response
+     */
+    public int getInFlightUploads() {
+        return Math.max(0, maxInFlightUploads - uploadPermits.availablePermits());
+    }
+    
+    /**
+     * Result of one upload request, with the response body of a 2xx reply
+     */
+    private static final class Exchange {
+        final SendResult result;
+        final String body;
+
+        Exchange(SendResult result, String body) {
+            this.result = result;
+            this.body = body;
+        }
+    }
+    
+    /**
+     * Result of sendBatchToJsmonAsync: the outcome of the request and, when the server reported
+     * them, one result per file
+     */
+    public static class BatchResult {
+        private final SendResult result;
+        private final List<SendResult> items;
+
+        public BatchResult(SendResult result, List<SendResult> items) {
+            this.result = result;
+            this.items = items;
+        }
+
+        public SendResult getResult() {
+            return result;
+        }
+
+        /**
+         * Per-file results in request order, or null if the server did not report them
+         */
+        public List<SendResult> getItems() {
+            return items;
+        }
+    }
+    
+    /**
+     * Result class for sendToJsmonAsync operation
      */
     public static class SendResult {
         private final boolean success;
         private final String errorMessage;
+        private final int statusCode;
+        private final long retryAfterMs;
+        private final boolean circuitOpen;
+        private final boolean cancelled;
         
         public SendResult(boolean success, String errorMessage) {
+            this(success, errorMessage, 0);
+        }
+        
+        /**
+         * @param statusCode HTTP status of the response, or 0 if no response was received
+         */
+        public SendResult(boolean success, String errorMessage, int statusCode) {
+            this(success, errorMessage, statusCode, -1);
+        }
+        
+        /**
+         * @param retryAfterMs Delay requested by the server's Retry-After header, or -1 if none
+         */
+        public SendResult(boolean success, String errorMessage, int statusCode, long retryAfterMs) {
+            this(success, errorMessage, statusCode, retryAfterMs, false, false);
+        }
+        
+        private SendResult(boolean success, String errorMessage, int statusCode, long retryAfterMs, boolean circuitOpen,
+                           boolean cancelled) {
             this.success = success;
             this.errorMessage = errorMessage;
+            this.statusCode = statusCode;
+            this.retryAfterMs = retryAfterMs;
+            this.circuitOpen = circuitOpen;
+            this.cancelled = cancelled;
+        }
+        
+        /**
+         * Upload refused locally because the circuit breaker is open (nothing was sent)
+         */
+        public static SendResult circuitOpen(long retryAfterMs) {
+            return new SendResult(false, "JSMon API unavailable - circuit open", 0, retryAfterMs, true, false);
+        }
+        
+        /**
+         * Upload abandoned before it was sent: its scan was cancelled, or the sending thread was
+         * interrupted while unloading
+         */
+        public static SendResult cancelled() {
+            return new SendResult(false, "Cancelled before sending", 0, -1, false, true);
         }
         
         public boolean isSuccess() {
@@ -251,100 +686,144 @@ public class JsmonApiClient {
         public String getErrorMessage() {
             return errorMessage;
         }
+        
+        public int getStatusCode() {
+            return statusCode;
+        }
+        
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+        
+        public boolean isCircuitOpen() {
+            return circuitOpen;
+        }
+        
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+        /**
+         * Whether a failed upload may succeed if tried again later
+         * (no response, timeout, rate limiting or a server-side error)
+         */
+        public boolean isRetryable() {
+            return !success && !circuitOpen && !cancelled && (statusCode == 0 || statusCode == 408 || statusCode == 429 || statusCode >= 500);
+        }
     }
     
     /**
-     * Build headers JSON from HTTP request
+     * Write the request's headers as "headers": [{"Name": "value"}, ...] (omitted if there are none)
      */
-    private String buildHeadersJson(burp.api.montoya.http.message.requests.HttpRequest request) {
+    private void writeHeaders(JsmonJsonWriter json, burp.api.montoya.http.message.requests.HttpRequest request) {
         if (request == null) {
-            return null;
+            return;
         }
 
-        List<String> headerObjects = new ArrayList<>();
-
-        Set<String> skipHeaders = new HashSet<>(Arrays.asList(
-            "Host", "Connection", "Content-Length", "Transfer-Encoding",
-            "Upgrade", "TE", "Trailer", "Keep-Alive"
-        ));
-
+        List<burp.api.montoya.http.message.HttpHeader> headers;
         try {
-            for (burp.api.montoya.http.message.HttpHeader header : request.headers()) {
-                String headerName = header.name();
-                if (skipHeaders.contains(headerName)) {
-                    continue;
-                }
-                String headerValue = header.value();
-                if (headerValue != null && !headerValue.isEmpty()) {
-                    String obj = "{\"" + jsonParser.jsonEscape(headerName) + "\":\"" + jsonParser.jsonEscape(headerValue) + "\"}";
-                    headerObjects.add(obj);
+            headers = request.headers();
+            boolean any = false;
+            for (burp.api.montoya.http.message.HttpHeader header : headers) {
+                if (isUploadedHeader(header.name(), header.value())) {
+                    any = true;
+                    break;
                 }
             }
+            if (!any) {
+                return;
+            }
         } catch (Exception e) {
-            // Fallback: parse raw request string if headers() fails
-            try {
-                String requestString = request.toString();
-                String[] lines = requestString.split("\r\n");
-                boolean inHeaders = true;
-                for (int i = 1; i < lines.length && inHeaders; i++) {
-                    String line = lines[i].trim();
-                    if (line.isEmpty()) {
-                        inHeaders = false;
-                        break;
-                    }
-                    int colonIndex = line.indexOf(':');
-                    if (colonIndex > 0) {
-                        String headerName = line.substring(0, colonIndex).trim();
-                        String headerValue = line.substring(colonIndex + 1).trim();
-                        if (!skipHeaders.contains(headerName) && !headerValue.isEmpty()) {
-                            String obj = "{\"" + jsonParser.jsonEscape(headerName) + "\":\"" + jsonParser.jsonEscape(headerValue) + "\"}";
-                            headerObjects.add(obj);
-                        }
-                    }
+            writeRawHeaders(json, request);
+            return;
+        }
+
+        json.name("headers").beginArray();
+        for (burp.api.montoya.http.message.HttpHeader header : headers) {
+            String headerValue = header.value();
+            if (isUploadedHeader(header.name(), headerValue)) {
+                json.beginObject().name(header.name()).value(headerValue).endObject();
+            }
+        }
+        json.endArray();
+    }
+
+    /**
+     * Fallback: parse the raw request string if headers() fails
+     */
+    private void writeRawHeaders(JsmonJsonWriter json, burp.api.montoya.http.message.requests.HttpRequest request) {
+        List<String[]> parsed = new ArrayList<>();
+        try {
+            String requestString = request.toString();
+            String[] lines = requestString.split("\r\n");
+            for (int i = 1; i < lines.length; i++) {
+                String line = lines[i].trim();
+                if (line.isEmpty()) {
+                    break;
                 }
-            } catch (Exception e2) {
-                if (logging != null) {
-                    logging.logToError("JSMon: Error extracting headers: " + e2.getMessage());
+                int colonIndex = line.indexOf(':');
+                if (colonIndex > 0) {
+                    String headerName = line.substring(0, colonIndex).trim();
+                    String headerValue = line.substring(colonIndex + 1).trim();
+                    if (isUploadedHeader(headerName, headerValue)) {
+                        parsed.add(new String[] {headerName, headerValue});
+                    }
                 }
             }
+        } catch (Exception e2) {
+            if (logging != null) {
+                logging.logToError("JSMon: Error extracting headers: " + e2.getMessage());
+            }
         }
 
-        if (headerObjects.isEmpty()) {
-            return null;
+        if (parsed.isEmpty()) {
+            return;
+        }
+        json.name("headers").beginArray();
+        for (String[] header : parsed) {
+            json.beginObject().name(header[0]).value(header[1]).endObject();
         }
+        json.endArray();
+    }
 
-        return "[" + String.join(",", headerObjects) + "]";
+    private static boolean isUploadedHeader(String name, String value) {
+        return !SKIP_HEADERS.contains(name) && value != null && !value.isEmpty();
     }
     
     /**
      * Fetch total counts for all intelligence fields
      */
     public Map<String, Integer> fetchTotalCounts(String workspaceId, String apiKey) {
-        Map<String, Integer> counts = new java.util.HashMap<>();
         if (workspaceId == null || workspaceId.isEmpty() || apiKey == null || apiKey.isEmpty()) {
-            return counts;
+            return new java.util.HashMap<>();
         }
+        return readRequests.execute(apiBaseUrl + "/totalCountAnalysis|" + workspaceId + "|" + apiKey.trim(),
+                () -> sendFetchTotalCounts(workspaceId, apiKey), java.util.HashMap::new);
+    }
+
+    private Map<String, Integer> sendFetchTotalCounts(String workspaceId, String apiKey) {
+        Map<String, Integer> counts = new java.util.HashMap<>();
         
         try {
-            String endpoint = API_BASE_URL + "/totalCountAnalysis?wkspId=" +
+            String endpoint = apiBaseUrl + "/totalCountAnalysis?wkspId=" +
                     URLEncoder.encode(workspaceId, StandardCharsets.UTF_8.toString()) + "&runId=";
 
-            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-                    .uri(URI.create(endpoint))
+            java.net.http.HttpRequest request = http.newCompressedRequest(URI.create(endpoint))
                     .header("X-Jsmon-Key", apiKey.trim())
                     .GET()
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() != 200) {
-                if (logging != null) {
-                    logging.logToError("JSMon: Failed to fetch counts (HTTP " + response.statusCode() + ")");
+            HttpResponse<InputStream> response = http.send(request, http.streamBody());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != 200) {
+                    if (logging != null) {
+                        logging.logToError("JSMon: Failed to fetch counts (HTTP " + response.statusCode() + ")");
+                    }
+                    return counts;
                 }
-                return counts;
-            }
 
-            String body = response.body();
-            jsonParser.extractCountsFromJson(body, counts);
+                jsonParser.readCounts(new InputStreamReader(body, StandardCharsets.UTF_8), counts);
+            }
             
         } catch (Exception e) {
             if (logging != null) {
@@ -362,31 +841,34 @@ public class JsmonApiClient {
         if (workspaceId == null || workspaceId.isEmpty() || apiKey == null || apiKey.isEmpty()) {
             return "✗ Cannot fetch secrets - workspace ID or API key not configured\n";
         }
+        return readRequests.execute(apiBaseUrl + "/keysAndSecrets|" + workspaceId + "|" + page + "|" + apiKey.trim(),
+                () -> sendFetchSecrets(workspaceId, apiKey, page), secrets -> secrets);
+    }
+
+    private String sendFetchSecrets(String workspaceId, String apiKey, int page) {
         
         try {
             StringBuilder all = new StringBuilder();
-            String endpoint = API_BASE_URL + "/keysAndSecrets?wkspId=" +
+            String endpoint = apiBaseUrl + "/keysAndSecrets?wkspId=" +
                     URLEncoder.encode(workspaceId, StandardCharsets.UTF_8.toString()) +
                     "&page=" + page + "&runId=&lastScannedOn=&formDate=&toDate=&limit=100";
 
-            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-                    .uri(URI.create(endpoint))
+            java.net.http.HttpRequest request = http.newCompressedRequest(URI.create(endpoint))
                     .header("X-Jsmon-Key", apiKey.trim())
                     .GET()
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 401) {
-                return "✗ Failed to fetch secrets (unauthorized)\n";
-            }
-            if (response.statusCode() != 200) {
-                return "✗ Failed to fetch secrets (HTTP " + response.statusCode() + ")\n";
-            }
+            HttpResponse<InputStream> response = http.send(request, http.streamBody());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 401) {
+                    return "✗ Failed to fetch secrets (unauthorized)\n";
+                }
+                if (response.statusCode() != 200) {
+                    return "✗ Failed to fetch secrets (HTTP " + response.statusCode() + ")\n";
+                }
 
-            String body = response.body();
-            List<String> objects = jsonParser.extractDataObjects(body);
-            for (String obj : objects) {
-                all.append(obj).append("\n");
+                jsonParser.readDataObjects(new InputStreamReader(body, StandardCharsets.UTF_8),
+                        obj -> all.append(obj).append("\n"));
             }
 
             return all.toString();
@@ -402,41 +884,46 @@ public class JsmonApiClient {
      * Fetch intelligence data (JS URLs, API paths, URLs, domains, etc.)
      */
     public List<JsUrlEntry> fetchIntelligenceData(String workspaceId, String apiKey, String options, int page) {
-        List<JsUrlEntry> entries = new ArrayList<>();
         if (workspaceId == null || workspaceId.isEmpty() || apiKey == null || apiKey.isEmpty()) {
             if (logging != null) {
                 logging.logToError("JSMon: Cannot fetch intelligence data - workspace ID or API key not configured");
             }
-            return entries;
+            return new ArrayList<>();
         }
+        return readRequests.execute(apiBaseUrl + "/intelligence|" + workspaceId + "|" + options + "|" + page + "|" + apiKey.trim(),
+                () -> sendFetchIntelligenceData(workspaceId, apiKey, options, page), ArrayList::new);
+    }
+
+    private List<JsUrlEntry> sendFetchIntelligenceData(String workspaceId, String apiKey, String options, int page) {
+        List<JsUrlEntry> entries = new ArrayList<>();
         
         try {
-            String endpoint = API_BASE_URL + "/intelligence?wkspId=" +
+            String endpoint = apiBaseUrl + "/intelligence?wkspId=" +
                     URLEncoder.encode(workspaceId, StandardCharsets.UTF_8.toString()) +
                     "&options=" + options + "&page=" + page + "&runId=&search=&status=";
 
-            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-                    .uri(URI.create(endpoint))
+            java.net.http.HttpRequest request = http.newCompressedRequest(URI.create(endpoint))
                     .header("X-Jsmon-Key", apiKey.trim())
                     .GET()
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 401) {
-                if (logging != null) {
-                    logging.logToError("JSMon: Failed to fetch intelligence data (unauthorized)");
+            HttpResponse<InputStream> response = http.send(request, http.streamBody());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 401) {
+                    if (logging != null) {
+                        logging.logToError("JSMon: Failed to fetch intelligence data (unauthorized)");
+                    }
+                    return entries;
                 }
-                return entries;
-            }
-            if (response.statusCode() != 200) {
-                if (logging != null) {
-                    logging.logToError("JSMon: Failed to fetch intelligence data (HTTP " + response.statusCode() + ")");
+                if (response.statusCode() != 200) {
+                    if (logging != null) {
+                        logging.logToError("JSMon: Failed to fetch intelligence data (HTTP " + response.statusCode() + ")");
+                    }
+                    return entries;
                 }
-                return entries;
-            }
 
-            String body = response.body();
-            entries = jsonParser.extractJsUrlsFromResponse(body);
+                jsonParser.readJsUrls(new InputStreamReader(body, StandardCharsets.UTF_8), entries::add);
+            }
 
             return entries;
         } catch (Exception e) {
@@ -446,5 +933,20 @@ public class JsmonApiClient {
             return entries;
         }
     }
+    
+    /**
+     * Semaphore whose permit count can be lowered at runtime (reducePermits is protected, so this
+     * has to be a subclass rather than a wrapper)
+     */
+    private static final class UploadPermits extends Semaphore {
+        private static final long serialVersionUID = 1L;
+        
+        UploadPermits(int permits) {
+            super(permits);
+        }
+        
+        void reduce(int permits) {
+            reducePermits(permits);
+        }
+    }
 }
-
@@ -0,0 +1,242 @@
+package burp.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Stops uploads while the JSMon API is unreachable or failing.
+ *
+ * CLOSED: every upload goes through and its outcome is recorded in a window of recent calls.
+ * Once enough of them fail (no response or a 5xx), the breaker OPENs and uploads are refused
+ * locally. After the cool-down the next upload is let through as a single HALF_OPEN probe:
+ * success closes the breaker, failure opens it for another cool-down.
+ *
+ * {@link #tryAcquire()} hands out a ticket that the caller passes back with the outcome. Only the
+ * probe's ticket settles HALF_OPEN, and a CLOSED window only counts uploads sent since it
+ * closed, so results of uploads that were already in flight when the state changed are ignored.
+ */
+public class JsmonCircuitBreaker {
+
+    public enum State {
+        CLOSED("closed"),
+        OPEN("open"),
+        HALF_OPEN("half-open");
+
+        private final String displayName;
+
+        State(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private static final int WINDOW_SIZE = 20;
+    /** Calls needed in the window before the failure rate is trusted */
+    private static final int MINIMUM_CALLS = 8;
+    private static final double FAILURE_RATE_THRESHOLD = 0.5;
+    private static final long COOL_DOWN_MS = 30_000;
+    private static final int TRANSITION_HISTORY = 5;
+
+    /** Returned by {@link #tryAcquire()} when the upload must not be sent */
+    public static final long REFUSED = -1;
+
+    private final Consumer<State> stateListener;
+    private final long coolDownMs;
+
+    private State state = State.CLOSED;
+    private long stateSince = System.currentTimeMillis();
+    private boolean probeInFlight;
+    private long lastTicket;
+    /** Ticket shared by every upload allowed during the current CLOSED period */
+    private long closedTicket;
+    /** Ticket of the HALF_OPEN probe in flight */
+    private long probeTicket = REFUSED;
+    private final boolean[] window = new boolean[WINDOW_SIZE];
+    private int windowCount;
+    private int windowNext;
+    private int windowFailures;
+    private final Deque<Transition> transitions = new ArrayDeque<>();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param stateListener Called after every state change, outside the breaker's lock (may be null)
+     */
+    public JsmonCircuitBreaker(Consumer<State> stateListener) {
+        this(stateListener, COOL_DOWN_MS);
+    }
+
+    /**
+     * @param coolDownMs How long the breaker stays OPEN before letting a probe through
+     */
+    JsmonCircuitBreaker(Consumer<State> stateListener, long coolDownMs) {
+        this.stateListener = stateListener;
+        this.coolDownMs = coolDownMs;
+    }
+
+    /**
+     * Ask to send an upload. In HALF_OPEN only the first caller (the probe) is allowed.
+     * @return Ticket to pass to {@link #onResult} or {@link #release}, or REFUSED if the upload
+     *         must not be sent
+     */
+    public long tryAcquire() {
+        State changed = null;
+        long ticket;
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() - stateSince < coolDownMs) {
+                    rejected.incrementAndGet();
+                    return REFUSED;
+                }
+                changed = moveTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (probeInFlight) {
+                    rejected.incrementAndGet();
+                    return REFUSED;
+                }
+                probeInFlight = true;
+                probeTicket = ++lastTicket;
+                ticket = probeTicket;
+            } else {
+                ticket = closedTicket;
+            }
+        }
+        notifyListener(changed);
+        return ticket;
+    }
+
+    /**
+     * Record the outcome of an upload that tryAcquire allowed
+     * @param ticket         What tryAcquire returned for this upload
+     * @param serviceFailure true if the API did not answer or answered with a server error
+     */
+    public void onResult(long ticket, boolean serviceFailure) {
+        State changed = null;
+        synchronized (this) {
+            if (state == State.HALF_OPEN && ticket == probeTicket) {
+                probeInFlight = false;
+                probeTicket = REFUSED;
+                changed = moveTo(serviceFailure ? State.OPEN : State.CLOSED);
+            } else if (state == State.CLOSED && ticket == closedTicket) {
+                record(serviceFailure);
+                if (windowCount >= MINIMUM_CALLS && windowFailures >= FAILURE_RATE_THRESHOLD * windowCount) {
+                    changed = moveTo(State.OPEN);
+                }
+            }
+            // Anything else was sent under an earlier state: uploads in flight when the breaker
+            // opened, or sent in a previous CLOSED period, say nothing about the probe or the new window
+        }
+        notifyListener(changed);
+    }
+
+    /**
+     * Give up an allowed upload without sending it (frees the half-open probe slot)
+     * @param ticket What tryAcquire returned for this upload
+     */
+    public synchronized void release(long ticket) {
+        if (state == State.HALF_OPEN && ticket == probeTicket) {
+            probeInFlight = false;
+            probeTicket = REFUSED;
+        }
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == WINDOW_SIZE) {
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % WINDOW_SIZE;
+    }
+
+    private State moveTo(State next) {
+        if (next == state) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        state = next;
+        stateSince = now;
+        if (next == State.CLOSED) {
+            windowCount = 0;
+            windowNext = 0;
+            windowFailures = 0;
+            closedTicket = ++lastTicket;
+        }
+        transitions.addFirst(new Transition(next, now));
+        while (transitions.size() > TRANSITION_HISTORY) {
+            transitions.removeLast();
+        }
+        return next;
+    }
+
+    private void notifyListener(State changed) {
+        if (changed != null && stateListener != null) {
+            stateListener.accept(changed);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Time of the last state change (epoch millis)
+     */
+    public synchronized long getStateSince() {
+        return stateSince;
+    }
+
+    /**
+     * Milliseconds until an open breaker lets a probe through (0 if not open)
+     */
+    public synchronized long getRemainingCoolDownMs() {
+        return state == State.OPEN ? Math.max(0, coolDownMs - (System.currentTimeMillis() - stateSince)) : 0;
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Most recent state changes, newest first
+     */
+    public synchronized List<Transition> getTransitions() {
+        return new ArrayList<>(transitions);
+    }
+
+    /**
+     * One state change
+     */
+    public static class Transition {
+        private final State state;
+        private final long timestamp;
+
+        Transition(State state, long timestamp) {
+            this.state = state;
+            this.timestamp = timestamp;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
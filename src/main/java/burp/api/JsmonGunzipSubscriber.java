@@ -0,0 +1,157 @@
+package burp.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.LongConsumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Body subscriber for a gzip-encoded UTF-8 response. Each chunk is inflated as it arrives,
+ * so the compressed body is never held in full and no thread blocks on a stream.
+ */
+final class JsmonGunzipSubscriber implements HttpResponse.BodySubscriber<String> {
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final CompletableFuture<String> body = new CompletableFuture<>();
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] chunk = new byte[8192];
+    private final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+    /** Collects the start of the body until the variable-length gzip header is complete */
+    private ByteArrayOutputStream header = new ByteArrayOutputStream();
+    private final LongConsumer wireBytes;
+    private final LongConsumer decodedBytes;
+    private Flow.Subscription subscription;
+
+    /**
+     * @param wireBytes    Receives the compressed size of each chunk
+     * @param decodedBytes Receives the decompressed size of the whole body
+     */
+    JsmonGunzipSubscriber(LongConsumer wireBytes, LongConsumer decodedBytes) {
+        this.wireBytes = wireBytes;
+        this.decodedBytes = decodedBytes;
+    }
+
+    @Override
+    public CompletionStage<String> getBody() {
+        return body;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        try {
+            for (ByteBuffer item : items) {
+                int length = item.remaining();
+                wireBytes.accept(length);
+                byte[] bytes = new byte[length];
+                item.get(bytes);
+                feed(bytes, 0, length);
+            }
+        } catch (IOException | DataFormatException e) {
+            subscription.cancel();
+            fail(e);
+        }
+    }
+
+    private void feed(byte[] bytes, int offset, int length) throws IOException, DataFormatException {
+        if (header != null) {
+            header.write(bytes, offset, length);
+            byte[] start = header.toByteArray();
+            int headerLength = headerLength(start);
+            if (headerLength < 0) {
+                return;
+            }
+            header = null;
+            bytes = start;
+            offset = headerLength;
+            length = start.length - headerLength;
+        }
+        if (inflater.finished() || length == 0) {
+            // Trailer (CRC and size) after the deflate stream
+            return;
+        }
+        inflater.setInput(bytes, offset, length);
+        while (!inflater.finished()) {
+            int inflated = inflater.inflate(chunk);
+            if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            decoded.write(chunk, 0, inflated);
+        }
+    }
+
+    /**
+     * @return Length of the gzip header, or -1 if more bytes are needed
+     * @throws IOException if the bytes are not a gzip header
+     */
+    private static int headerLength(byte[] start) throws IOException {
+        if (start.length < 10) {
+            return -1;
+        }
+        if ((start[0] & 0xff) != 0x1f || (start[1] & 0xff) != 0x8b || start[2] != 8) {
+            throw new IOException("Response is not valid gzip");
+        }
+        int flags = start[3];
+        int position = 10;
+        if ((flags & FEXTRA) != 0) {
+            if (start.length < position + 2) {
+                return -1;
+            }
+            position += 2 + ((start[position] & 0xff) | (start[position + 1] & 0xff) << 8);
+        }
+        for (int field : new int[] {FNAME, FCOMMENT}) {
+            if ((flags & field) != 0) {
+                while (position < start.length && start[position] != 0) {
+                    position++;
+                }
+                if (position >= start.length) {
+                    return -1;
+                }
+                position++;
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            position += 2;
+        }
+        return position <= start.length ? position : -1;
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (!inflater.finished()) {
+            fail(new EOFException("Truncated gzip response"));
+            return;
+        }
+        inflater.end();
+        decodedBytes.accept(decoded.size());
+        body.complete(new String(decoded.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private void fail(Throwable throwable) {
+        inflater.end();
+        body.completeExceptionally(throwable);
+    }
+}
@@ -0,0 +1,410 @@
+package burp.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Owns the single HttpClient shared by every outbound call (JSMon API and GitHub update check).
+ *
+ * The client prefers HTTP/2 and reuses connections, runs on a small bounded pool of daemon
+ * threads, and enforces three deadlines: connect, request (until response headers arrive) and
+ * read (the whole exchange including the body). Streamed bodies are closed by a timer thread
+ * when the read deadline passes, so a stalled read fails instead of blocking forever. It is shut
+ * down from the extension's unloading handler.
+ */
+public class JsmonHttpClientFactory {
+
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration READ_TIMEOUT = Duration.ofSeconds(60);
+
+    private static final int EXECUTOR_THREADS = 4;
+
+    /** HttpClient.shutdownNow() exists from Java 21; resolved once */
+    private static final Method SHUTDOWN_NOW = resolveShutdownNow();
+
+    private final ThreadPoolExecutor executor;
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+    /** Closes streamed bodies still open at their read deadline */
+    private final ScheduledThreadPoolExecutor deadlineTimer;
+
+    private final LongAdder uploadRawBytes = new LongAdder();
+    private final LongAdder uploadWireBytes = new LongAdder();
+    private final LongAdder downloadWireBytes = new LongAdder();
+    private final LongAdder downloadDecodedBytes = new LongAdder();
+
+    public JsmonHttpClientFactory() {
+        this(READ_TIMEOUT);
+    }
+
+    /**
+     * @param readTimeout Deadline for a whole exchange including the body (shortened in tests)
+     */
+    JsmonHttpClientFactory(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+        AtomicInteger threadCount = new AtomicInteger();
+        // Unbounded queue: the work queued here is bounded by the exchanges in flight (upload permits,
+        // single-flight reads), and a bounded queue would need a rejection policy. CallerRuns would run
+        // response callbacks on the client's own selector thread and stall every connection; aborting
+        // (the default policy, now only reached after shutdown) fails just the one exchange.
+        this.executor = new ThreadPoolExecutor(EXECUTOR_THREADS, EXECUTOR_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "JSMon-Http-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.deadlineTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "JSMon-Http-Deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deadlineTimer.setRemoveOnCancelPolicy(true);
+
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+
+    private static Method resolveShutdownNow() {
+        try {
+            return HttpClient.class.getMethod("shutdownNow");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public HttpClient getClient() {
+        return httpClient;
+    }
+
+    /**
+     * Request builder for a URI with the request deadline already applied
+     */
+    public HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder().uri(uri).timeout(REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Request builder that also asks for a gzip-compressed response; read the body with {@link #textBody()}
+     */
+    public HttpRequest.Builder newCompressedRequest(URI uri) {
+        return newRequest(uri).header("Accept-Encoding", "gzip");
+    }
+
+    /**
+     * UTF-8 text body handler that inflates gzip-encoded responses while they stream in
+     * and counts bytes on the wire against decoded bytes
+     */
+    public HttpResponse.BodyHandler<String> textBody() {
+        return responseInfo -> {
+            if (isGzip(responseInfo)) {
+                return new JsmonGunzipSubscriber(downloadWireBytes::add, downloadDecodedBytes::add);
+            }
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), bytes -> {
+                downloadWireBytes.add(bytes.length);
+                downloadDecodedBytes.add(bytes.length);
+                return new String(bytes, StandardCharsets.UTF_8);
+            });
+        };
+    }
+
+    /**
+     * Streamed body handler for responses too large to buffer: the InputStream inflates gzip-encoded
+     * bodies on the fly and counts bytes like {@link #textBody()}. When the read deadline (counted
+     * from the response headers) passes, the body is closed, and any read, including one blocked
+     * waiting for data, fails with HttpTimeoutException. Close the stream when done.
+     */
+    public HttpResponse.BodyHandler<InputStream> streamBody() {
+        return responseInfo -> {
+            boolean gzip = isGzip(responseInfo);
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(), in -> {
+                InputStream wire = new CountingInputStream(in, downloadWireBytes);
+                // GZIPInputStream reads the header in its constructor, so it is created on first read
+                // rather than here on the HTTP client's thread
+                InputStream decoded = gzip ? new LazyGunzipInputStream(wire) : wire;
+                return new DeadlineInputStream(new CountingInputStream(decoded, downloadDecodedBytes), in);
+            });
+        };
+    }
+
+    private static boolean isGzip(HttpResponse.ResponseInfo responseInfo) {
+        return responseInfo.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.trim().equalsIgnoreCase("gzip"))
+                .orElse(false);
+    }
+
+    /**
+     * Gzip a request body
+     */
+    public static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(data);
+        } catch (IOException e) {
+            // In-memory streams do not fail
+            throw new IllegalStateException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Count an uploaded request body before and after compression
+     */
+    public void recordUpload(int rawBytes, int wireBytes) {
+        uploadRawBytes.add(rawBytes);
+        uploadWireBytes.add(wireBytes);
+    }
+
+    /**
+     * "uploads 120 KB -> 30 KB on the wire, downloads ..." summary for the stats panel
+     */
+    public String getCompressionSummary() {
+        return "uploads " + describeBytes(uploadRawBytes.sum(), uploadWireBytes.sum())
+                + ", downloads " + describeBytes(downloadDecodedBytes.sum(), downloadWireBytes.sum());
+    }
+
+    private static String describeBytes(long raw, long wire) {
+        String summary = raw / 1024 + " KB -> " + wire / 1024 + " KB on the wire";
+        return raw > 0 ? summary + String.format(" (%.0f%% saved)", 100.0 * (raw - wire) / raw) : summary;
+    }
+
+    /**
+     * Send a request and wait for the complete response, giving up after the read deadline
+     * @throws HttpTimeoutException if the response body did not arrive within the read deadline
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> future = httpClient.sendAsync(request, bodyHandler);
+        try {
+            return future.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new HttpTimeoutException("Response not completed within " + readTimeout.getSeconds() + "s: " + request.uri());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause != null ? cause.getMessage() : e.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Send a request without blocking; the future fails with HttpTimeoutException after the read deadline
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        httpClient.sendAsync(request, bodyHandler)
+                .orTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((response, error) -> {
+                    if (error == null) {
+                        result.complete(response);
+                    } else if (error instanceof TimeoutException) {
+                        result.completeExceptionally(new HttpTimeoutException(
+                                "Response not completed within " + readTimeout.getSeconds() + "s: " + request.uri()));
+                    } else {
+                        result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error);
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Stop the client's worker threads; in-flight requests are abandoned
+     */
+    public void shutdown() {
+        if (SHUTDOWN_NOW != null) {
+            try {
+                SHUTDOWN_NOW.invoke(httpClient);
+            } catch (Exception e) {
+                // Fall through to stopping the executor
+            }
+        }
+        executor.shutdownNow();
+        deadlineTimer.shutdownNow();
+    }
+
+    /**
+     * Adds the bytes read to a counter
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final LongAdder counter;
+
+        CountingInputStream(InputStream in, LongAdder counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counter.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                counter.add(read);
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Enforces the read deadline on a streamed body. At the deadline the timer closes the HTTP
+     * client's stream, which wakes a read blocked waiting for data (it then sees end of stream or
+     * "closed"); whatever the read returned, it is reported as a timeout.
+     */
+    private final class DeadlineInputStream extends FilterInputStream {
+        private final InputStream body;
+        private final ScheduledFuture<?> expiry;
+        private volatile boolean expired;
+
+        /**
+         * @param in   Stream handed to the caller
+         * @param body The HTTP client's stream underneath it, closed at the deadline
+         */
+        DeadlineInputStream(InputStream in, InputStream body) {
+            super(in);
+            this.body = body;
+            ScheduledFuture<?> scheduled;
+            try {
+                scheduled = deadlineTimer.schedule(this::expire, readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shut down: nothing will read this body
+                scheduled = null;
+                expire();
+            }
+            this.expiry = scheduled;
+        }
+
+        private void expire() {
+            expired = true;
+            try {
+                body.close();
+            } catch (IOException e) {
+                // Closing only cancels the subscription
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkDeadline();
+            int b;
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                checkDeadline();
+                throw e;
+            }
+            checkDeadline();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            checkDeadline();
+            int read;
+            try {
+                read = super.read(buffer, offset, length);
+            } catch (IOException e) {
+                checkDeadline();
+                throw e;
+            }
+            checkDeadline();
+            return read;
+        }
+
+        private void checkDeadline() throws HttpTimeoutException {
+            if (expired) {
+                throw new HttpTimeoutException("Response not completed within " + readTimeout.getSeconds() + "s");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+            super.close();
+        }
+    }
+
+    /**
+     * GZIPInputStream that is only created (and reads the gzip header) on first use
+     */
+    private static final class LazyGunzipInputStream extends InputStream {
+        private final InputStream compressed;
+        private InputStream inflated;
+
+        LazyGunzipInputStream(InputStream compressed) {
+            this.compressed = compressed;
+        }
+
+        private InputStream inflated() throws IOException {
+            if (inflated == null) {
+                inflated = new GZIPInputStream(compressed, 8192);
+            }
+            return inflated;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return inflated().read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return inflated().read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inflated != null) {
+                inflated.close();
+            } else {
+                compressed.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package burp.api;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Paces uploads with a token bucket and stops them when the account's JsScan credits run out.
+ *
+ * The credit balance is seeded from the viewProfile response and reserved locally as uploads
+ * are sent (failed uploads give their credit back). At zero, callers wait instead of sending
+ * requests that would be refused; while they wait the profile is re-fetched periodically, and
+ * any refresh that reports new credits lets them continue.
+ */
+public class JsmonRateLimiter {
+
+    public static final int DEFAULT_UPLOADS_PER_SECOND = 10;
+
+    /** Credits not known yet (no profile fetched) - uploads are not held back */
+    public static final long UNKNOWN_CREDITS = -1;
+
+    private static final long CREDIT_REFRESH_INTERVAL_MS = 60_000;
+
+    /** Longest single wait, so a waiter notices its cancellation promptly */
+    static final long CANCEL_CHECK_MS = 100;
+
+    private static final BooleanSupplier NOT_CANCELLED = () -> false;
+
+    private final Runnable creditRefresher;
+
+    private double uploadsPerSecond;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private long credits = UNKNOWN_CREDITS;
+    private long lastCreditRefresh;
+    private int waitingForCredits;
+
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong pausedForCredits = new AtomicLong();
+
+    /**
+     * @param uploadsPerSecond Upload rate (0 for no limit)
+     * @param creditRefresher  Re-fetches the profile and calls {@link #setCredits}; run on a waiting
+     *                         thread at most once a minute while credits are exhausted (may be null)
+     */
+    public JsmonRateLimiter(int uploadsPerSecond, Runnable creditRefresher) {
+        this.uploadsPerSecond = Math.max(0, uploadsPerSecond);
+        this.tokens = burst();
+        this.creditRefresher = creditRefresher;
+    }
+
+    /**
+     * Wait until an upload of the given number of files may be sent, then reserve its credits
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire(int files) throws InterruptedException {
+        acquire(files, NOT_CANCELLED);
+    }
+
+    /**
+     * Like {@link #acquire(int)}, but gives up once {@code cancelled} reports true. The token is
+     * checked between waits of at most {@link #CANCEL_CHECK_MS}, so no thread needs interrupting.
+     * @return false if cancelled before the upload was allowed (nothing is reserved)
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean acquire(int files, BooleanSupplier cancelled) throws InterruptedException {
+        boolean counted = false;
+        while (true) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            Runnable refresh = null;
+            synchronized (this) {
+                if (credits == 0) {
+                    if (!counted) {
+                        pausedForCredits.incrementAndGet();
+                        counted = true;
+                    }
+                    long now = System.currentTimeMillis();
+                    long untilRefresh = lastCreditRefresh + CREDIT_REFRESH_INTERVAL_MS - now;
+                    if (untilRefresh <= 0 && creditRefresher != null) {
+                        lastCreditRefresh = now;
+                        refresh = creditRefresher;
+                    } else {
+                        waitingForCredits++;
+                        try {
+                            wait(Math.max(1, Math.min(untilRefresh, CANCEL_CHECK_MS)));
+                        } finally {
+                            waitingForCredits--;
+                        }
+                        continue;
+                    }
+                } else {
+                    long waitMs = takeTokens(files);
+                    if (waitMs == 0) {
+                        if (credits > 0) {
+                            credits = Math.max(0, credits - files);
+                        }
+                        granted.incrementAndGet();
+                        return true;
+                    }
+                    if (!counted) {
+                        throttled.incrementAndGet();
+                        counted = true;
+                    }
+                    wait(Math.min(waitMs, CANCEL_CHECK_MS));
+                    continue;
+                }
+            }
+            // Fetch the profile outside the lock; setCredits wakes every waiter
+            refresh.run();
+        }
+    }
+
+    /**
+     * @return 0 if the tokens were taken, otherwise how long to wait before trying again
+     */
+    private long takeTokens(int files) {
+        if (uploadsPerSecond <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(burst(), tokens + (now - lastRefillNanos) / 1e9 * uploadsPerSecond);
+        lastRefillNanos = now;
+        // A batch larger than the bucket waits for a full bucket and leaves it in debt
+        double needed = Math.min(files, burst());
+        if (tokens >= needed) {
+            tokens -= files;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((needed - tokens) / uploadsPerSecond * 1000));
+    }
+
+    private double burst() {
+        return Math.max(1, uploadsPerSecond);
+    }
+
+    /**
+     * Give back the credits reserved for an upload that did not succeed
+     */
+    public synchronized void refund(int files) {
+        if (credits >= 0) {
+            credits += files;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Seed the credit balance from a profile refresh
+     * @param remaining JsScan credits left, or {@link #UNKNOWN_CREDITS}
+     */
+    public synchronized void setCredits(long remaining) {
+        credits = remaining < 0 ? UNKNOWN_CREDITS : remaining;
+        notifyAll();
+    }
+
+    public synchronized long getCredits() {
+        return credits;
+    }
+
+    public synchronized void setUploadsPerSecond(int uploadsPerSecond) {
+        this.uploadsPerSecond = Math.max(0, uploadsPerSecond);
+        this.tokens = Math.min(tokens, burst());
+        notifyAll();
+    }
+
+    public synchronized int getUploadsPerSecond() {
+        return (int) uploadsPerSecond;
+    }
+
+    /**
+     * Whether uploads are on hold until new credits show up
+     */
+    public synchronized boolean isPaused() {
+        return credits == 0;
+    }
+
+    /**
+     * "10/s, credits 42, N sent, ..." summary for the stats panel
+     */
+    public synchronized String getSummary() {
+        return (uploadsPerSecond > 0 ? (int) uploadsPerSecond + "/s" : "no rate limit")
+                + ", credits " + (credits < 0 ? "unknown" : credits + (credits == 0 ? " (PAUSED, " + waitingForCredits + " waiting)" : ""))
+                + ", " + granted.get() + " sent, " + throttled.get() + " throttled, "
+                + pausedForCredits.get() + " held for credits";
+    }
+}
@@ -0,0 +1,249 @@
+package burp.api;
+
+import burp.api.montoya.logging.Logging;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retries uploads that failed for a transient reason (no response, timeout, 429 or 5xx).
+ *
+ * Retries are scheduled on a timer thread, so no worker sleeps while it waits. When a delay
+ * expires the timer only hands the attempt to a small pool of attempt threads: starting an
+ * attempt can block on the rate limiter and the in-flight limit, and that must not hold up
+ * every other retry that falls due meanwhile. The delay is
+ * the server's Retry-After when it sends one, otherwise exponential backoff with full jitter.
+ * Each upload gets a limited number of attempts, and all uploads share a per-minute retry
+ * budget so a failing server is not hammered during a large scan.
+ */
+public class JsmonRetryScheduler {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 4;
+    public static final int DEFAULT_BUDGET_PER_MINUTE = 60;
+
+    private static final long BASE_DELAY_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+    /** A Retry-After longer than this is treated as "give up" rather than waited out */
+    private static final long MAX_RETRY_AFTER_MS = 5 * 60_000;
+    private static final long BUDGET_WINDOW_MS = 60_000;
+    private static final int ATTEMPT_THREADS = 2;
+
+    private final ScheduledExecutorService timer;
+    private final ExecutorService attemptPool;
+    private final Logging logging;
+    private final Set<Retry> waiting = ConcurrentHashMap.newKeySet();
+
+    private volatile int maxAttempts;
+    private volatile int budgetPerMinute;
+    private long budgetWindowStart = System.currentTimeMillis();
+    private int budgetUsed;
+
+    private final AtomicLong retriesScheduled = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong budgetDenied = new AtomicLong();
+
+    /**
+     * @param maxAttempts     Attempts per upload including the first (1 disables retries)
+     * @param budgetPerMinute Retries allowed across all uploads per minute
+     */
+    public JsmonRetryScheduler(int maxAttempts, int budgetPerMinute, Logging logging) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.budgetPerMinute = Math.max(0, budgetPerMinute);
+        this.logging = logging;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "JSMon-Retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger attemptThreads = new AtomicInteger();
+        this.attemptPool = Executors.newFixedThreadPool(ATTEMPT_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "JSMon-Retry-Attempt-" + attemptThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Run an upload, retrying transient failures
+     * @param description URL used in log messages
+     * @param attempt     Starts one attempt; its future must complete normally
+     * @return Future completing with the first success, the first non-retryable failure,
+     *         or the last failure once attempts or budget run out
+     */
+    public CompletableFuture<JsmonApiClient.SendResult> execute(String description,
+                                                                Supplier<CompletableFuture<JsmonApiClient.SendResult>> attempt) {
+        Retry retry = new Retry(description, attempt);
+        retry.run();
+        return retry.result;
+    }
+
+    /**
+     * Like {@link #execute}, but the first attempt also starts on an attempt thread. For callers
+     * on a thread that must not block on the rate limiter or the in-flight limit, such as the
+     * HTTP client's completion threads.
+     */
+    public CompletableFuture<JsmonApiClient.SendResult> executeAsync(String description,
+                                                                     Supplier<CompletableFuture<JsmonApiClient.SendResult>> attempt) {
+        Retry retry = new Retry(description, attempt);
+        try {
+            attemptPool.execute(retry);
+        } catch (RejectedExecutionException e) {
+            // Unloading: nothing was sent
+            retry.result.complete(JsmonApiClient.SendResult.cancelled());
+        }
+        return retry.result;
+    }
+
+    private final class Retry implements Runnable {
+        final String description;
+        final Supplier<CompletableFuture<JsmonApiClient.SendResult>> attempt;
+        final CompletableFuture<JsmonApiClient.SendResult> result = new CompletableFuture<>();
+        volatile JsmonApiClient.SendResult lastResult;
+        int attempts;
+
+        Retry(String description, Supplier<CompletableFuture<JsmonApiClient.SendResult>> attempt) {
+            this.description = description;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            waiting.remove(this);
+            attempts++;
+            CompletableFuture<JsmonApiClient.SendResult> future;
+            try {
+                future = attempt.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.completedFuture(new JsmonApiClient.SendResult(false, e.getMessage()));
+            }
+            future.thenAccept(this::onResult);
+        }
+
+        private void onResult(JsmonApiClient.SendResult sendResult) {
+            lastResult = sendResult;
+            if (sendResult.isSuccess() || !sendResult.isRetryable()) {
+                if (sendResult.isSuccess() && attempts > 1) {
+                    recovered.incrementAndGet();
+                }
+                result.complete(sendResult);
+                return;
+            }
+
+            long delay = delayFor(sendResult);
+            if (attempts >= maxAttempts || delay < 0) {
+                exhausted.incrementAndGet();
+                result.complete(sendResult);
+                return;
+            }
+            if (!takeBudget()) {
+                budgetDenied.incrementAndGet();
+                result.complete(sendResult);
+                return;
+            }
+
+            retriesScheduled.incrementAndGet();
+            if (logging != null) {
+                logging.logToOutput("JSMon: Retrying " + description + " in " + delay + " ms (attempt "
+                        + (attempts + 1) + "/" + maxAttempts + ")");
+            }
+            waiting.add(this);
+            try {
+                timer.schedule(this::dispatch, delay, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // Timer shut down (extension unloading)
+                waiting.remove(this);
+                result.complete(sendResult);
+            }
+        }
+
+        /**
+         * Runs on the timer thread: start the attempt elsewhere so the timer never blocks
+         */
+        private void dispatch() {
+            try {
+                attemptPool.execute(this);
+            } catch (RejectedExecutionException e) {
+                // Shut down while the delay ran
+                waiting.remove(this);
+                result.complete(lastResult);
+            }
+        }
+
+        /**
+         * @return Milliseconds before the next attempt, or -1 if the server asked for too long a wait
+         */
+        private long delayFor(JsmonApiClient.SendResult sendResult) {
+            long retryAfter = sendResult.getRetryAfterMs();
+            if (retryAfter >= 0) {
+                return retryAfter <= MAX_RETRY_AFTER_MS ? retryAfter : -1;
+            }
+            long backoff = Math.min(MAX_BACKOFF_MS, BASE_DELAY_MS << Math.min(attempts - 1, 16));
+            return ThreadLocalRandom.current().nextLong(backoff + 1);
+        }
+    }
+
+    private synchronized boolean takeBudget() {
+        long now = System.currentTimeMillis();
+        if (now - budgetWindowStart >= BUDGET_WINDOW_MS) {
+            budgetWindowStart = now;
+            budgetUsed = 0;
+        }
+        if (budgetUsed >= budgetPerMinute) {
+            return false;
+        }
+        budgetUsed++;
+        return true;
+    }
+
+    public void configure(int maxAttempts, int budgetPerMinute) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.budgetPerMinute = Math.max(0, budgetPerMinute);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public int getBudgetPerMinute() {
+        return budgetPerMinute;
+    }
+
+    /**
+     * Uploads currently waiting for their next attempt
+     */
+    public int getWaitingCount() {
+        return waiting.size();
+    }
+
+    /**
+     * "N waiting, N scheduled, N recovered, ..." summary for the stats panel
+     */
+    public String getSummary() {
+        return getWaitingCount() + " waiting, " + retriesScheduled.get() + " scheduled, " + recovered.get()
+                + " recovered, " + exhausted.get() + " gave up, " + budgetDenied.get() + " over budget ("
+                + maxAttempts + " attempts, " + budgetPerMinute + "/min)";
+    }
+
+    /**
+     * Stop the timer; uploads waiting for a retry complete with their last failure
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        attemptPool.shutdownNow();
+        for (Retry retry : waiting) {
+            retry.result.complete(retry.lastResult);
+        }
+        waiting.clear();
+    }
+}
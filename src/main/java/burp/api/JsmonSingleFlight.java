@@ -0,0 +1,79 @@
+package burp.api;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Collapses identical concurrent read requests into one.
+ *
+ * The first caller for a key runs the request; callers arriving with the same key while it is
+ * in flight wait for that result instead of sending their own. Nothing is cached: once the
+ * request completes, the next caller sends a fresh one.
+ */
+public class JsmonSingleFlight {
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Run a request, or join the identical one already in flight
+     * @param key    Endpoint plus every parameter that affects the response (including the API key)
+     * @param call   Sends the request on the caller's thread
+     * @param share  Copies the shared result for each caller, so callers may modify what they get
+     *               without affecting each other (identity for immutable results)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call, UnaryOperator<T> share) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                T result = (T) existing.join();
+                return result != null ? share.apply(result) : null;
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        executed.incrementAndGet();
+        try {
+            T result = call.get();
+            mine.complete(result);
+            return result != null ? share.apply(result) : null;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Requests actually sent
+     */
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    /**
+     * Requests saved by joining one already in flight
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,335 @@
+package burp.api;
+
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.logging.Logging;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Collects uploads for a short window and sends them as one multi-URL request.
+ *
+ * A page load can reveal dozens of script chunks within a second; batching turns them into
+ * a handful of requests. A batch is flushed once it holds the configured number of files or
+ * the window has passed since its first file, whichever comes first.
+ *
+ * Array payloads are not part of the documented upload API, so the first batch is a probe and
+ * every other file is sent on its own until it settles. Batching is confirmed only by a reply
+ * with one result per file; a reply without them, or one refusing the payload, switches
+ * batching off and the probe's files are sent again one by one. Each caller gets the result
+ * for its own file. Sends that wait on the rate limiter or the in-flight limit run on the
+ * submitting thread or on this batcher's own thread, never on the HTTP client's threads.
+ */
+public class JsmonUploadBatcher {
+
+    /**
+     * Whether the server takes array payloads, as learned from the first batch
+     */
+    public enum BatchSupport {
+        UNKNOWN, ACCEPTED, REFUSED
+    }
+
+    /** 1 file per batch means batching is off */
+    public static final int DEFAULT_MAX_ITEMS = 1;
+    public static final int DEFAULT_WINDOW_MS = 250;
+
+    private final JsmonApiClient apiClient;
+    private final Logging logging;
+    /** Flushes batches whose window has passed and resends refused batches one file at a time */
+    private final ScheduledExecutorService timer;
+
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> flushTask;
+
+    private volatile int maxItems;
+    private volatile long windowMs;
+    private volatile BatchSupport support = BatchSupport.UNKNOWN;
+    /** Set while the one batch that finds out whether arrays are accepted is in flight */
+    private final AtomicBoolean probeInFlight = new AtomicBoolean();
+    /** Refused batches waiting for the timer thread to send their files, completed as cancelled on unload */
+    private final Set<List<Pending>> fallbacks = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong filesBatched = new AtomicLong();
+    private final AtomicLong filesSentSingly = new AtomicLong();
+
+    public JsmonUploadBatcher(JsmonApiClient apiClient, int maxItems, long windowMs, Logging logging) {
+        this.apiClient = apiClient;
+        this.logging = logging;
+        this.maxItems = Math.max(1, maxItems);
+        this.windowMs = Math.max(1, windowMs);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "JSMon-Batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Upload a file, batched with others if batching is enabled
+     * @param cancelled Checked before the file is sent; a batch is given up only once all its files are cancelled
+     * @return Future that always completes normally with this file's result
+     */
+    public CompletableFuture<JsmonApiClient.SendResult> submit(String url, String workspaceId, String apiKey,
+                                                              HttpRequest request, BooleanSupplier cancelled) {
+        if (!isBatching()) {
+            filesSentSingly.incrementAndGet();
+            return apiClient.sendToJsmonAsync(url, workspaceId, apiKey, request, cancelled);
+        }
+
+        Pending item = new Pending(url, workspaceId, apiKey, request, cancelled);
+        List<Pending> full = null;
+        synchronized (lock) {
+            pending.add(item);
+            if (pending.size() >= maxItems) {
+                full = takePending();
+            } else if (flushTask == null) {
+                try {
+                    flushTask = timer.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Unloading: nothing was sent
+                    pending.remove(item);
+                    item.future.complete(JsmonApiClient.SendResult.cancelled());
+                }
+            }
+        }
+        if (full != null) {
+            // Sent on the submitting thread so a full in-flight limit slows producers down
+            send(full);
+        }
+        return item.future;
+    }
+
+    /**
+     * Send whatever is waiting without waiting for the window to close
+     */
+    public void flush() {
+        List<Pending> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        send(batch);
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        return batch;
+    }
+
+    private void send(List<Pending> batch) {
+        // One request per workspace and API key
+        Map<String, List<Pending>> groups = new LinkedHashMap<>();
+        for (Pending item : batch) {
+            if (item.cancelled.getAsBoolean()) {
+                item.future.complete(JsmonApiClient.SendResult.cancelled());
+                continue;
+            }
+            groups.computeIfAbsent(item.workspaceId + '\n' + item.apiKey, key -> new ArrayList<>()).add(item);
+        }
+        for (List<Pending> group : groups.values()) {
+            BatchSupport current = support;
+            boolean batched = group.size() > 1 && (current == BatchSupport.ACCEPTED
+                    || current == BatchSupport.UNKNOWN && probeInFlight.compareAndSet(false, true));
+            if (batched) {
+                sendBatch(group, current == BatchSupport.UNKNOWN);
+            } else {
+                // Until a probe confirms arrays, the rest go one by one
+                sendSingly(group);
+            }
+        }
+    }
+
+    private void sendBatch(List<Pending> group, boolean probe) {
+        List<String> urls = new ArrayList<>(group.size());
+        List<HttpRequest> requests = new ArrayList<>(group.size());
+        for (Pending item : group) {
+            urls.add(item.url);
+            requests.add(item.request);
+        }
+        Pending first = group.get(0);
+        BooleanSupplier allCancelled = () -> group.stream().allMatch(item -> item.cancelled.getAsBoolean());
+        batchesSent.incrementAndGet();
+        filesBatched.addAndGet(group.size());
+        // Completes on an HTTP client thread: settles futures, but leaves any resending to the timer thread
+        apiClient.sendBatchToJsmonAsync(urls, first.workspaceId, first.apiKey, requests, allCancelled).thenAccept(batch -> {
+            JsmonApiClient.SendResult result = batch.getResult();
+            List<JsmonApiClient.SendResult> items = batch.getItems();
+            if (items != null) {
+                if (probe) {
+                    support = BatchSupport.ACCEPTED;
+                    probeInFlight.set(false);
+                    if (logging != null) {
+                        logging.logToOutput("JSMon: Server accepts batched uploads, sending up to " + maxItems + " files per request");
+                    }
+                }
+                for (int i = 0; i < group.size(); i++) {
+                    group.get(i).future.complete(items.get(i));
+                }
+                return;
+            }
+            if (result.isSuccess() || rejectsArrays(result.getStatusCode())) {
+                refuseBatches(result.isSuccess() ? "no per-file results" : "HTTP " + result.getStatusCode());
+                if (probe) {
+                    probeInFlight.set(false);
+                }
+                filesBatched.addAndGet(-group.size());
+                resendSingly(group);
+                return;
+            }
+            // Nothing learned about arrays (e.g. 401, 429, 5xx or no reply); the next batch probes again
+            if (probe) {
+                probeInFlight.set(false);
+            }
+            for (Pending item : group) {
+                item.future.complete(result);
+            }
+        });
+    }
+
+    private void refuseBatches(String reason) {
+        if (support != BatchSupport.REFUSED) {
+            support = BatchSupport.REFUSED;
+            if (logging != null) {
+                logging.logToOutput("JSMon: Server does not accept batched uploads (" + reason + "), sending files individually");
+            }
+        }
+    }
+
+    /**
+     * Send a refused batch's files one by one on the timer thread
+     */
+    private void resendSingly(List<Pending> group) {
+        fallbacks.add(group);
+        try {
+            timer.execute(() -> {
+                // Once started, an interrupt from shutdown() reports the files not yet sent as cancelled
+                if (fallbacks.remove(group)) {
+                    sendSingly(group);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Unloading: nothing was resent
+            fallbacks.remove(group);
+            for (Pending item : group) {
+                item.future.complete(JsmonApiClient.SendResult.cancelled());
+            }
+        }
+    }
+
+    private void sendSingly(List<Pending> group) {
+        for (Pending item : group) {
+            filesSentSingly.incrementAndGet();
+            apiClient.sendToJsmonAsync(item.url, item.workspaceId, item.apiKey, item.request, item.cancelled)
+                    .thenAccept(item.future::complete);
+        }
+    }
+
+    /**
+     * Responses meaning the payload shape was refused rather than the upload failing
+     */
+    private static boolean rejectsArrays(int statusCode) {
+        return statusCode == 400 || statusCode == 404 || statusCode == 405 || statusCode == 413
+                || statusCode == 415 || statusCode == 422;
+    }
+
+    private boolean isBatching() {
+        return maxItems > 1 && support != BatchSupport.REFUSED;
+    }
+
+    /**
+     * @param maxItems Files per request (1 disables batching)
+     * @param windowMs Longest time the first file of a batch waits for others
+     */
+    public void configure(int maxItems, long windowMs) {
+        this.maxItems = Math.max(1, maxItems);
+        this.windowMs = Math.max(1, windowMs);
+        // Probe a server that refused arrays again after an explicit change
+        this.support = BatchSupport.UNKNOWN;
+        if (this.maxItems == 1) {
+            flush();
+        }
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    public BatchSupport getSupport() {
+        return support;
+    }
+
+    /**
+     * "N batches (N files), N single" summary for the stats panel
+     */
+    public String getSummary() {
+        int waiting;
+        synchronized (lock) {
+            waiting = pending.size();
+        }
+        BatchSupport current = support;
+        String mode = maxItems <= 1 ? "off"
+                : current == BatchSupport.REFUSED ? "not supported by server"
+                : "up to " + maxItems + " files / " + windowMs + " ms"
+                        + (current == BatchSupport.UNKNOWN ? " (server support not confirmed yet)" : "");
+        return mode + ", " + batchesSent.get() + " batches (" + filesBatched.get() + " files), "
+                + filesSentSingly.get() + " single, " + waiting + " waiting";
+    }
+
+    /**
+     * Stop the timer and give up files that were not sent yet (their results say cancelled)
+     */
+    public void shutdown() {
+        List<Pending> unsent;
+        synchronized (lock) {
+            unsent = takePending();
+        }
+        timer.shutdownNow();
+        for (List<Pending> group : fallbacks) {
+            unsent.addAll(group);
+        }
+        fallbacks.clear();
+        for (Pending item : unsent) {
+            item.future.complete(JsmonApiClient.SendResult.cancelled());
+        }
+    }
+
+    private static final class Pending {
+        final String url;
+        final String workspaceId;
+        final String apiKey;
+        final HttpRequest request;
+        final BooleanSupplier cancelled;
+        final CompletableFuture<JsmonApiClient.SendResult> future = new CompletableFuture<>();
+
+        Pending(String url, String workspaceId, String apiKey, HttpRequest request, BooleanSupplier cancelled) {
+            this.url = url;
+            this.workspaceId = workspaceId;
+            this.apiKey = apiKey;
+            this.request = request;
+            this.cancelled = cancelled;
+        }
+    }
+}
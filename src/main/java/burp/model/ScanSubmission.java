@@ -0,0 +1,56 @@
+package burp.model;
+
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.util.JsmonContentIndex;
+
+public class ScanSubmission {
+    private String url;
+    private String dedupKey;
+    private HttpRequest request;
+    private JsmonContentIndex.ContentHash contentHash;
+    private long bodyLength;
+    private long enqueuedAt;
+    
+    /**
+     * @param contentHash Hash of the response body, taken before queueing so the queue never holds
+     *                    bodies (null if there is no body)
+     */
+    public ScanSubmission(String url, String dedupKey, HttpRequest request, JsmonContentIndex.ContentHash contentHash, long bodyLength) {
+        this.url = url;
+        this.dedupKey = dedupKey;
+        this.request = request;
+        this.contentHash = contentHash;
+        this.bodyLength = bodyLength;
+        this.enqueuedAt = System.currentTimeMillis();
+    }
+    
+    public String getUrl() {
+        return url;
+    }
+    
+    /**
+     * Canonical form of the URL used for deduplication
+     */
+    public String getDedupKey() {
+        return dedupKey;
+    }
+    
+    public HttpRequest getRequest() {
+        return request;
+    }
+    
+    /**
+     * Hash of the captured response body (may be null), used for content-hash deduplication
+     */
+    public JsmonContentIndex.ContentHash getContentHash() {
+        return contentHash;
+    }
+    
+    public long getBodyLength() {
+        return bodyLength;
+    }
+    
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+}
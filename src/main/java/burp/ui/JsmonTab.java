@@ -1,11 +1,15 @@
 package burp.ui;
 
 import burp.JsmonExtension;
+import burp.api.JsmonApiClient;
 import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.logging.Logging;
 import burp.model.JsUrlEntry;
 import burp.model.UserProfile;
 import burp.model.Workspace;
+import burp.util.JsmonDiagnostics;
+import burp.util.JsmonSubmissionQueue;
+import burp.util.JsmonUrlProcessor;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -188,6 +192,23 @@ public class JsmonTab extends JPanel {
     private JLabel userEmailValue;
     private JLabel userLimitsValue;
     private JCheckBox automateScanCheckbox;
+    private JComboBox<JsmonSubmissionQueue.OverflowPolicy> queuePolicyComboBox;
+    private JTextField volatileParamsField;
+    private JComboBox<JsmonUrlProcessor.ScopeSource> scopeSourceComboBox;
+    private JTextField prefilterToolsField;
+    private JTextField prefilterStatusField;
+    private JTextField prefilterBodySizeField;
+    private JTextField prefilterMethodsField;
+    private JTextField loadShedThresholdField;
+    private JTextField maxInFlightField;
+    private JTextField uploadsPerSecondField;
+    private JTextField batchSizeField;
+    private JTextField batchWindowField;
+    private JTextField retryAttemptsField;
+    private JTextField retryBudgetField;
+    private JTextField apiBaseUrlField;
+    private JTextField scanWorkersField;
+    private JTextArea pipelineStatsArea;
     private JTextArea statusArea;
     
     // Data display tabs
@@ -364,6 +385,10 @@ public class JsmonTab extends JPanel {
                 statusArea.setBackground(theme.statusBackground);
                 statusArea.setForeground(theme.statusForeground);
             }
+            if (pipelineStatsArea != null) {
+                pipelineStatsArea.setBackground(theme.statusBackground);
+                pipelineStatsArea.setForeground(theme.statusForeground);
+            }
             if (secretsTable != null) {
                 secretsTable.setBackground(theme.tableBackground);
                 secretsTable.setForeground(theme.tableForeground);
@@ -850,7 +875,7 @@ public class JsmonTab extends JPanel {
         scopedDomainField.setCaretColor(theme.caretColor);
         scopedDomainField.setLineWrap(true);
         scopedDomainField.setWrapStyleWord(true);
-        scopedDomainField.setToolTipText("Enter domain(s), one per line, or separated by comma/space (e.g., example.com\\ntest.com). Leave empty to scan all scannable files.");
+        scopedDomainField.setToolTipText("Enter domain(s), one per line, or separated by comma/space (e.g., example.com\\ntest.com). Use *.example.com for subdomains only and !cdn.example.com to exclude. Leave empty to scan all scannable files.");
         scopedDomainField.setPreferredSize(new Dimension(300, 44));
         scopedDomainField.setMaximumSize(new Dimension(300, 60));
         scopedDomainField.setRows(2);
@@ -862,6 +887,25 @@ public class JsmonTab extends JPanel {
         });
         // Add text area directly (no scroll bar) to keep height compact
         domainContent.add(scopedDomainField, BorderLayout.CENTER);
+        
+        // Scope source: the list above or Burp's own target scope
+        JPanel scopeSourcePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        scopeSourcePanel.setOpaque(false);
+        scopeSourcePanel.add(createLabel("Scope source:", false));
+        scopeSourceComboBox = new JComboBox<>(JsmonUrlProcessor.ScopeSource.values());
+        scopeSourceComboBox.setSelectedItem(extension.getScopeSource());
+        scopeSourceComboBox.setToolTipText("Scoped domains uses the list above; Burp target scope follows the project scope from Target > Scope");
+        scopedDomainField.setEnabled(extension.getScopeSource() == JsmonUrlProcessor.ScopeSource.SCOPED_DOMAINS);
+        scopeSourceComboBox.addActionListener(e -> {
+            JsmonUrlProcessor.ScopeSource source = (JsmonUrlProcessor.ScopeSource) scopeSourceComboBox.getSelectedItem();
+            if (source != null && source != extension.getScopeSource()) {
+                extension.setScopeSource(source);
+                scopedDomainField.setEnabled(source == JsmonUrlProcessor.ScopeSource.SCOPED_DOMAINS);
+                appendStatus("✓ Scope source set to: " + source);
+            }
+        });
+        scopeSourcePanel.add(scopeSourceComboBox);
+        domainContent.add(scopeSourcePanel, BorderLayout.SOUTH);
         domainCard.add(domainContent, BorderLayout.CENTER);
         mainContainer.add(domainCard);
         mainContainer.add(Box.createVerticalStrut(8));
@@ -903,6 +947,186 @@ public class JsmonTab extends JPanel {
             }
         });
         automateContent.add(automateScanCheckbox);
+        automateContent.add(Box.createVerticalStrut(6));
+        
+        // Overflow policy for the auto-scan upload queue
+        JPanel queuePolicyPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        queuePolicyPanel.setOpaque(false);
+        queuePolicyPanel.add(createLabel("When upload queue is full:", false));
+        queuePolicyComboBox = new JComboBox<>(JsmonSubmissionQueue.OverflowPolicy.values());
+        queuePolicyComboBox.setSelectedItem(extension.getQueueOverflowPolicy());
+        queuePolicyComboBox.setToolTipText("Block waits for space (slows the proxy), Drop oldest/newest discards a pending file so it can be picked up again later");
+        queuePolicyComboBox.addActionListener(e -> {
+            JsmonSubmissionQueue.OverflowPolicy policy = (JsmonSubmissionQueue.OverflowPolicy) queuePolicyComboBox.getSelectedItem();
+            if (policy != null && policy != extension.getQueueOverflowPolicy()) {
+                extension.setQueueOverflowPolicy(policy);
+                appendStatus("✓ Upload queue policy set to: " + policy.getDisplayName());
+            }
+        });
+        queuePolicyPanel.add(queuePolicyComboBox);
+        automateContent.add(queuePolicyPanel);
+        automateContent.add(Box.createVerticalStrut(6));
+        
+        // Parameters ignored when deciding whether a URL was already scanned
+        JPanel volatileParamsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        volatileParamsPanel.setOpaque(false);
+        volatileParamsPanel.add(createLabel("Ignored URL params:", false));
+        volatileParamsField = createStyledTextField();
+        volatileParamsField.setText(extension.getVolatileQueryParams());
+        volatileParamsField.setPreferredSize(new Dimension(250, 32));
+        volatileParamsField.setToolTipText("Cache-buster and session parameters ignored when deduplicating URLs (comma-separated, prefix with re: for a regex, e.g. re:utm_.*)");
+        volatileParamsField.addActionListener(e -> saveVolatileParams());
+        volatileParamsField.addFocusListener(new java.awt.event.FocusAdapter() {
+            public void focusLost(java.awt.event.FocusEvent evt) {
+                saveVolatileParams();
+            }
+        });
+        volatileParamsPanel.add(volatileParamsField);
+        automateContent.add(volatileParamsPanel);
+        automateContent.add(Box.createVerticalStrut(6));
+        
+        // Prefilter: cheap checks that drop responses before scope and classification
+        JPanel prefilterToolsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        prefilterToolsPanel.setOpaque(false);
+        prefilterToolsPanel.add(createLabel("Skip tools:", false));
+        prefilterToolsField = createPrefilterField(extension.getPrefilterSkippedTools(), 250,
+                "Burp tools whose responses are never auto-scanned (e.g. SCANNER, INTRUDER, SEQUENCER)");
+        prefilterToolsPanel.add(prefilterToolsField);
+        automateContent.add(prefilterToolsPanel);
+        automateContent.add(Box.createVerticalStrut(6));
+        
+        JPanel prefilterRangesPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        prefilterRangesPanel.setOpaque(false);
+        prefilterRangesPanel.add(createLabel("Status:", false));
+        prefilterStatusField = createPrefilterField(extension.getPrefilterStatusRange(), 80,
+                "Accepted status codes as min-max (e.g. 200-299); leave empty to accept all");
+        prefilterRangesPanel.add(prefilterStatusField);
+        prefilterRangesPanel.add(createLabel("Body bytes:", false));
+        prefilterBodySizeField = createPrefilterField(extension.getPrefilterBodySizeRange(), 80,
+                "Accepted response body size as min-max in bytes (e.g. 1- skips empty bodies); leave empty to accept all");
+        prefilterRangesPanel.add(prefilterBodySizeField);
+        prefilterRangesPanel.add(createLabel("Methods:", false));
+        prefilterMethodsField = createPrefilterField(extension.getPrefilterMethods(), 80,
+                "Accepted request methods (e.g. GET, POST); leave empty to accept all");
+        prefilterRangesPanel.add(prefilterMethodsField);
+        automateContent.add(prefilterRangesPanel);
+        automateContent.add(Box.createVerticalStrut(6));
+        
+        // Load shedding: above this rate the live handler only defers files for a later history scan
+        JPanel loadShedPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        loadShedPanel.setOpaque(false);
+        loadShedPanel.add(createLabel("Defer scanning above:", false));
+        loadShedThresholdField = createStyledTextField();
+        loadShedThresholdField.setText(String.valueOf(extension.getLoadShedThreshold()));
+        loadShedThresholdField.setPreferredSize(new Dimension(80, 32));
+        loadShedThresholdField.setToolTipText("Under heavier proxy load, files are only remembered and scanned from HTTP history once load drops (0 = never defer)");
+        loadShedThresholdField.addActionListener(e -> saveLoadShedThreshold());
+        loadShedThresholdField.addFocusListener(new java.awt.event.FocusAdapter() {
+            public void focusLost(java.awt.event.FocusEvent evt) {
+                saveLoadShedThreshold();
+            }
+        });
+        loadShedPanel.add(loadShedThresholdField);
+        loadShedPanel.add(createLabel("responses/s", false));
+        automateContent.add(loadShedPanel);
+        automateContent.add(Box.createVerticalStrut(6));
+        
+        // Upload concurrency: how many files may wait on a JSMon response at once
+        JPanel maxInFlightPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        maxInFlightPanel.setOpaque(false);
+        maxInFlightPanel.add(createLabel("Concurrent uploads:", false));
+        maxInFlightField = createStyledTextField();
+        maxInFlightField.setText(String.valueOf(extension.getMaxInFlightUploads()));
+        maxInFlightField.setPreferredSize(new Dimension(80, 32));
+        maxInFlightField.setToolTipText("Maximum uploads waiting for a JSMon response at once, shared by automatic and manual scans");
+        maxInFlightField.addActionListener(e -> saveMaxInFlightUploads());
+        maxInFlightField.addFocusListener(new java.awt.event.FocusAdapter() {
+            public void focusLost(java.awt.event.FocusEvent evt) {
+                saveMaxInFlightUploads();
+            }
+        });
+        maxInFlightPanel.add(maxInFlightField);
+        maxInFlightPanel.add(createLabel("at most", false));
+        uploadsPerSecondField = createStyledTextField();
+        uploadsPerSecondField.setText(String.valueOf(extension.getUploadsPerSecond()));
+        uploadsPerSecondField.setPreferredSize(new Dimension(60, 32));
+        uploadsPerSecondField.setToolTipText("Upload rate limit (0 = no limit). Uploads also pause while the account has no JsScan credits left");
+        uploadsPerSecondField.addActionListener(e -> saveUploadsPerSecond());
+        uploadsPerSecondField.addFocusListener(new java.awt.event.FocusAdapter() {
+            public void focusLost(java.awt.event.FocusEvent evt) {
+                saveUploadsPerSecond();
+            }
+        });
+        maxInFlightPanel.add(uploadsPerSecondField);
+        maxInFlightPanel.add(createLabel("uploads/s", false));
+        automateContent.add(maxInFlightPanel);
+        automateContent.add(Box.createVerticalStrut(6));
+        
+        // Upload batching: several files per request when the server accepts it
+        JPanel batchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        batchPanel.setOpaque(false);
+        batchPanel.add(createLabel("Batch uploads: up to", false));
+        batchSizeField = createBatchField(extension.getUploadBatchSize(),
+                "Files sent in one upload request (1 = one request per file). Used only once the server answers a batch with per-file results");
+        batchPanel.add(batchSizeField);
+        batchPanel.add(createLabel("files within", false));
+        batchWindowField = createBatchField(extension.getUploadBatchWindowMs(),
+                "Longest time the first file of a batch waits for more files");
+        batchPanel.add(batchWindowField);
+        batchPanel.add(createLabel("ms", false));
+        automateContent.add(batchPanel);
+        automateContent.add(Box.createVerticalStrut(6));
+        
+        // Retries for transient upload failures (timeouts, 429, 5xx)
+        JPanel retryPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        retryPanel.setOpaque(false);
+        retryPanel.add(createLabel("Retry failed uploads:", false));
+        retryAttemptsField = createRetryField(extension.getRetryMaxAttempts(),
+                "Attempts per upload including the first (1 = never retry). Only timeouts, 429 and 5xx responses are retried");
+        retryPanel.add(retryAttemptsField);
+        retryPanel.add(createLabel("attempts, at most", false));
+        retryBudgetField = createRetryField(extension.getRetryBudgetPerMinute(),
+                "Retries allowed per minute across all uploads");
+        retryPanel.add(retryBudgetField);
+        retryPanel.add(createLabel("retries/min", false));
+        automateContent.add(retryPanel);
+        automateContent.add(Box.createVerticalStrut(6));
+        
+        // API base URL, e.g. a local stand-in server for offline load testing
+        JPanel baseUrlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        baseUrlPanel.setOpaque(false);
+        baseUrlPanel.add(createLabel("API base URL:", false));
+        apiBaseUrlField = createStyledTextField();
+        apiBaseUrlField.setText(extension.getApiBaseUrl());
+        apiBaseUrlField.setPreferredSize(new Dimension(280, 32));
+        apiBaseUrlField.setToolTipText("JSMon API endpoint. Point it at a local stand-in server to test without spending credits; leave empty for "
+                + JsmonApiClient.DEFAULT_API_BASE_URL);
+        apiBaseUrlField.addActionListener(e -> saveApiBaseUrl());
+        apiBaseUrlField.addFocusListener(new java.awt.event.FocusAdapter() {
+            public void focusLost(java.awt.event.FocusEvent evt) {
+                saveApiBaseUrl();
+            }
+        });
+        baseUrlPanel.add(apiBaseUrlField);
+        automateContent.add(baseUrlPanel);
+        automateContent.add(Box.createVerticalStrut(6));
+        
+        // Parallelism of history scans (manual scans and the initial automatic scan)
+        JPanel scanWorkersPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        scanWorkersPanel.setOpaque(false);
+        scanWorkersPanel.add(createLabel("History scan workers:", false));
+        scanWorkersField = createStyledTextField();
+        scanWorkersField.setText(String.valueOf(extension.getHistoryScanWorkers()));
+        scanWorkersField.setPreferredSize(new Dimension(60, 32));
+        scanWorkersField.setToolTipText("Files a history scan uploads in parallel. Uploads still respect the concurrency and rate limits above");
+        scanWorkersField.addActionListener(e -> saveHistoryScanWorkers());
+        scanWorkersField.addFocusListener(new java.awt.event.FocusAdapter() {
+            public void focusLost(java.awt.event.FocusEvent evt) {
+                saveHistoryScanWorkers();
+            }
+        });
+        scanWorkersPanel.add(scanWorkersField);
+        automateContent.add(scanWorkersPanel);
         automateContent.add(Box.createVerticalStrut(10));
         
         // Manual scan button - centered
@@ -915,10 +1139,40 @@ public class JsmonTab extends JPanel {
         startScanButton.setFont(startScanButton.getFont().deriveFont(Font.BOLD, 12f));
         startScanButton.addActionListener(e -> startManualScan());
         buttonPanel.add(startScanButton);
+        buttonPanel.add(Box.createHorizontalStrut(8));
+        JButton stopScanButton = createSecondaryButton("⏹ Stop Scan");
+        stopScanButton.setToolTipText("Stop running history scans. Files already being uploaded finish in the background");
+        stopScanButton.setPreferredSize(new Dimension(120, 35));
+        stopScanButton.addActionListener(e -> stopHistoryScans());
+        buttonPanel.add(stopScanButton);
         automateContent.add(buttonPanel);
         
         automateCard.add(automateContent, BorderLayout.CENTER);
         mainContainer.add(automateCard);
+        mainContainer.add(Box.createVerticalStrut(8));
+        
+        // ========== PIPELINE STATS SECTION ==========
+        JPanel pipelineStatsCard = createModernCard("📈 Pipeline Stats");
+        pipelineStatsArea = new JTextArea(5, 30);
+        pipelineStatsArea.setEditable(false);
+        pipelineStatsArea.setLineWrap(true);
+        pipelineStatsArea.setWrapStyleWord(true);
+        pipelineStatsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        pipelineStatsArea.setBackground(theme.statusBackground);
+        pipelineStatsArea.setForeground(theme.statusForeground);
+        pipelineStatsArea.setBorder(new EmptyBorder(6, 8, 6, 8));
+        pipelineStatsCard.add(pipelineStatsArea, BorderLayout.CENTER);
+        mainContainer.add(pipelineStatsCard);
+        refreshPipelineStats();
+        
+        // Refresh the stats while the tab is on screen
+        javax.swing.Timer pipelineStatsTimer = new javax.swing.Timer(2000, e -> {
+            if (isShowing()) {
+                refreshPipelineStats();
+            }
+        });
+        pipelineStatsTimer.setRepeats(true);
+        pipelineStatsTimer.start();
         
         // Add all configuration cards to left panel
         leftPanel.add(mainContainer);
@@ -1523,6 +1777,30 @@ public class JsmonTab extends JPanel {
         
         statusCard.add(statusScrollPane, BorderLayout.CENTER);
         
+        // Diagnostics controls: output level and on-demand dump of the in-memory trace
+        JPanel diagnosticsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        diagnosticsPanel.setOpaque(false);
+        diagnosticsPanel.add(createLabel("Output log level:", false));
+        JComboBox<JsmonDiagnostics.Level> diagnosticsLevelComboBox = new JComboBox<>(JsmonDiagnostics.Level.values());
+        diagnosticsLevelComboBox.setSelectedItem(extension.getDiagnosticsLevel());
+        diagnosticsLevelComboBox.setToolTipText("Messages below this level are kept only in the in-memory trace");
+        diagnosticsLevelComboBox.addActionListener(e -> {
+            JsmonDiagnostics.Level level = (JsmonDiagnostics.Level) diagnosticsLevelComboBox.getSelectedItem();
+            if (level != null && level != extension.getDiagnosticsLevel()) {
+                extension.setDiagnosticsLevel(level);
+                appendStatus("✓ Output log level set to: " + level);
+            }
+        });
+        diagnosticsPanel.add(diagnosticsLevelComboBox);
+        JButton dumpTraceButton = createSecondaryButton("Dump Trace");
+        dumpTraceButton.setToolTipText("Write the recent per-request trace to Burp's Output tab");
+        dumpTraceButton.addActionListener(e -> {
+            int entries = extension.dumpDiagnostics();
+            appendStatus("✓ Wrote " + entries + " trace entries to Burp Suite Output tab");
+        });
+        diagnosticsPanel.add(dumpTraceButton);
+        statusCard.add(diagnosticsPanel, BorderLayout.SOUTH);
+        
         // Main container: Top (split pane) and Bottom (status log)
         JPanel topBottomContainer = new JPanel(new BorderLayout(0, 10));
         topBottomContainer.setOpaque(false);
@@ -1733,16 +2011,14 @@ public class JsmonTab extends JPanel {
             String apiUrl = "https://api.github.com/repos/" + GITHUB_REPO_URL + "/releases/latest";
             logging.logToOutput("JSMon: Checking GitHub API: " + apiUrl);
             
-            java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
-            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-                    .uri(java.net.URI.create(apiUrl))
+            java.net.http.HttpRequest request = extension.getHttpClientFactory().newRequest(java.net.URI.create(apiUrl))
                     .header("Accept", "application/vnd.github.v3+json")
                     .header("User-Agent", "JSMon-Burp-Extension/1.0.0") // Required by GitHub API
                     .timeout(java.time.Duration.ofSeconds(5)) // 5 second timeout
                     .GET()
                     .build();
             
-            java.net.http.HttpResponse<String> response = client.send(request, 
+            java.net.http.HttpResponse<String> response = extension.getHttpClientFactory().send(request, 
                     java.net.http.HttpResponse.BodyHandlers.ofString());
             
             if (response.statusCode() == 200) {
@@ -2670,6 +2946,262 @@ public class JsmonTab extends JPanel {
         // Configuration is saved automatically (no user notification needed)
     }
     
+    /**
+     * Show the latest per-stage pipeline counters
+     */
+    private void refreshPipelineStats() {
+        if (pipelineStatsArea != null) {
+            pipelineStatsArea.setText(extension.getPipelineStats());
+        }
+    }
+    
+    /**
+     * Save the ignored URL parameter list if it changed
+     */
+    private void saveVolatileParams() {
+        String volatileParams = volatileParamsField.getText().trim();
+        if (volatileParams.equals(extension.getVolatileQueryParams())) {
+            return;
+        }
+        List<String> invalid = extension.setVolatileQueryParams(volatileParams);
+        if (invalid.isEmpty()) {
+            appendStatus("✓ Ignored URL parameters updated");
+        } else {
+            appendStatus("⚠ Ignored URL parameters updated - invalid regex skipped: " + String.join(", ", invalid));
+        }
+    }
+    
+    /**
+     * Text field for one prefilter rule; saves all rules on Enter or focus loss
+     */
+    private JTextField createPrefilterField(String value, int width, String toolTip) {
+        JTextField field = createStyledTextField();
+        field.setText(value);
+        field.setPreferredSize(new Dimension(width, 32));
+        field.setToolTipText(toolTip);
+        field.addActionListener(e -> savePrefilterRules());
+        field.addFocusListener(new java.awt.event.FocusAdapter() {
+            public void focusLost(java.awt.event.FocusEvent evt) {
+                savePrefilterRules();
+            }
+        });
+        return field;
+    }
+    
+    /**
+     * Save the prefilter rules if any of them changed
+     */
+    private void savePrefilterRules() {
+        String tools = prefilterToolsField.getText().trim();
+        String status = prefilterStatusField.getText().trim();
+        String bodySize = prefilterBodySizeField.getText().trim();
+        String methods = prefilterMethodsField.getText().trim();
+        if (tools.equals(extension.getPrefilterSkippedTools()) && status.equals(extension.getPrefilterStatusRange())
+                && bodySize.equals(extension.getPrefilterBodySizeRange()) && methods.equals(extension.getPrefilterMethods())) {
+            return;
+        }
+        List<String> invalid = extension.setPrefilterRules(tools, status, bodySize, methods);
+        if (invalid.isEmpty()) {
+            appendStatus("✓ Response prefilter updated");
+        } else {
+            appendStatus("⚠ Response prefilter updated - invalid values ignored: " + String.join(", ", invalid));
+        }
+    }
+    
+    /**
+     * Save the load-shedding threshold if it changed
+     */
+    private void saveLoadShedThreshold() {
+        String text = loadShedThresholdField.getText().trim();
+        int threshold;
+        try {
+            threshold = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            threshold = -1;
+        }
+        if (threshold < 0) {
+            appendStatus("✗ Invalid load threshold: " + text + " (enter responses per second, 0 to disable)");
+            loadShedThresholdField.setText(String.valueOf(extension.getLoadShedThreshold()));
+            return;
+        }
+        if (threshold != extension.getLoadShedThreshold()) {
+            extension.setLoadShedThreshold(threshold);
+            appendStatus(threshold > 0 ? "✓ Files are deferred above " + threshold + " responses/s" : "✓ Load shedding disabled");
+        }
+    }
+    
+    private JTextField createBatchField(int value, String tooltip) {
+        JTextField field = createStyledTextField();
+        field.setText(String.valueOf(value));
+        field.setPreferredSize(new Dimension(60, 32));
+        field.setToolTipText(tooltip);
+        field.addActionListener(e -> saveUploadBatching());
+        field.addFocusListener(new java.awt.event.FocusAdapter() {
+            public void focusLost(java.awt.event.FocusEvent evt) {
+                saveUploadBatching();
+            }
+        });
+        return field;
+    }
+    
+    private JTextField createRetryField(int value, String tooltip) {
+        JTextField field = createStyledTextField();
+        field.setText(String.valueOf(value));
+        field.setPreferredSize(new Dimension(60, 32));
+        field.setToolTipText(tooltip);
+        field.addActionListener(e -> saveRetryPolicy());
+        field.addFocusListener(new java.awt.event.FocusAdapter() {
+            public void focusLost(java.awt.event.FocusEvent evt) {
+                saveRetryPolicy();
+            }
+        });
+        return field;
+    }
+    
+    /**
+     * Save the retry attempts and budget if either changed
+     */
+    private void saveRetryPolicy() {
+        int attempts;
+        int budget;
+        try {
+            attempts = Integer.parseInt(retryAttemptsField.getText().trim());
+            budget = Integer.parseInt(retryBudgetField.getText().trim());
+        } catch (NumberFormatException e) {
+            attempts = 0;
+            budget = 0;
+        }
+        if (attempts <= 0 || budget <= 0) {
+            appendStatus("✗ Invalid retry settings (enter numbers above 0)");
+            retryAttemptsField.setText(String.valueOf(extension.getRetryMaxAttempts()));
+            retryBudgetField.setText(String.valueOf(extension.getRetryBudgetPerMinute()));
+            return;
+        }
+        if (attempts != extension.getRetryMaxAttempts() || budget != extension.getRetryBudgetPerMinute()) {
+            extension.setRetryPolicy(attempts, budget);
+            appendStatus(attempts > 1 ? "✓ Retrying failed uploads up to " + (attempts - 1) + " time(s), at most " + budget + "/min"
+                    : "✓ Upload retries disabled");
+        }
+    }
+    
+    /**
+     * Save the history scan worker count if it changed (applies to the next scan)
+     */
+    private void saveHistoryScanWorkers() {
+        String text = scanWorkersField.getText().trim();
+        int workers;
+        try {
+            workers = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            workers = 0;
+        }
+        if (workers <= 0) {
+            appendStatus("✗ Invalid history scan workers: " + text + " (enter a number above 0)");
+            scanWorkersField.setText(String.valueOf(extension.getHistoryScanWorkers()));
+            return;
+        }
+        if (workers != extension.getHistoryScanWorkers()) {
+            extension.setHistoryScanWorkers(workers);
+            appendStatus("✓ History scans upload with " + workers + " worker(s)"
+                    + (extension.isHistoryScanRunning() ? " from the next scan" : ""));
+        }
+    }
+    
+    private void stopHistoryScans() {
+        int stopped = extension.cancelHistoryScans();
+        appendStatus(stopped > 0 ? "⏹ Stopping " + stopped + " history scan(s)..." : "No history scan is running");
+    }
+    
+    /**
+     * Save the API base URL if it changed
+     */
+    private void saveApiBaseUrl() {
+        String baseUrl = apiBaseUrlField.getText().trim();
+        String current = extension.getApiBaseUrl();
+        if (baseUrl.equals(current) || (baseUrl.isEmpty() && current.equals(JsmonApiClient.DEFAULT_API_BASE_URL))) {
+            apiBaseUrlField.setText(current);
+            return;
+        }
+        try {
+            extension.setApiBaseUrl(baseUrl);
+            apiBaseUrlField.setText(extension.getApiBaseUrl());
+            appendStatus("✓ API base URL set to " + extension.getApiBaseUrl());
+        } catch (IllegalArgumentException e) {
+            appendStatus("✗ Invalid API base URL (enter an http:// or https:// URL)");
+            apiBaseUrlField.setText(current);
+        }
+    }
+    
+    /**
+     * Save the batch size and window if either changed
+     */
+    private void saveUploadBatching() {
+        int batchSize;
+        int windowMs;
+        try {
+            batchSize = Integer.parseInt(batchSizeField.getText().trim());
+            windowMs = Integer.parseInt(batchWindowField.getText().trim());
+        } catch (NumberFormatException e) {
+            batchSize = 0;
+            windowMs = 0;
+        }
+        if (batchSize <= 0 || windowMs <= 0) {
+            appendStatus("✗ Invalid batch settings (enter numbers above 0)");
+            batchSizeField.setText(String.valueOf(extension.getUploadBatchSize()));
+            batchWindowField.setText(String.valueOf(extension.getUploadBatchWindowMs()));
+            return;
+        }
+        if (batchSize != extension.getUploadBatchSize() || windowMs != extension.getUploadBatchWindowMs()) {
+            extension.setUploadBatching(batchSize, windowMs);
+            appendStatus(batchSize > 1 ? "✓ Batching up to " + batchSize + " files within " + windowMs + " ms"
+                    : "✓ Upload batching disabled");
+        }
+    }
+    
+    /**
+     * Save the upload rate limit if it changed
+     */
+    private void saveUploadsPerSecond() {
+        String text = uploadsPerSecondField.getText().trim();
+        int rate;
+        try {
+            rate = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            rate = -1;
+        }
+        if (rate < 0) {
+            appendStatus("✗ Invalid upload rate: " + text + " (enter uploads per second, 0 for no limit)");
+            uploadsPerSecondField.setText(String.valueOf(extension.getUploadsPerSecond()));
+            return;
+        }
+        if (rate != extension.getUploadsPerSecond()) {
+            extension.setUploadsPerSecond(rate);
+            appendStatus(rate > 0 ? "✓ Uploads limited to " + rate + "/s" : "✓ Upload rate limit removed");
+        }
+    }
+    
+    /**
+     * Save the upload concurrency limit if it changed
+     */
+    private void saveMaxInFlightUploads() {
+        String text = maxInFlightField.getText().trim();
+        int limit;
+        try {
+            limit = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            limit = 0;
+        }
+        if (limit <= 0) {
+            appendStatus("✗ Invalid upload limit: " + text + " (enter a number above 0)");
+            maxInFlightField.setText(String.valueOf(extension.getMaxInFlightUploads()));
+            return;
+        }
+        if (limit != extension.getMaxInFlightUploads()) {
+            extension.setMaxInFlightUploads(limit);
+            appendStatus("✓ Up to " + limit + " uploads in flight");
+        }
+    }
+    
     private void appendStatus(String message) {
         if (statusArea == null) {
             return;
@@ -1,5 +1,9 @@
 package burp.util;
 
+import burp.api.JsmonApiClient;
+import burp.api.JsmonRateLimiter;
+import burp.api.JsmonRetryScheduler;
+import burp.api.JsmonUploadBatcher;
 import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.persistence.PersistedObject;
 
@@ -9,6 +13,42 @@ public class JsmonConfig {
     private static final String SCOPED_DOMAIN_KEY = "scopedDomain";
     private static final String AUTOMATE_SCAN_KEY = "automateScan";
     private static final String GITHUB_TOKEN_KEY = "githubToken";
+    private static final String QUEUE_CAPACITY_KEY = "queueCapacity";
+    private static final String UPLOAD_WORKERS_KEY = "uploadWorkers";
+    private static final String QUEUE_OVERFLOW_POLICY_KEY = "queueOverflowPolicy";
+    private static final String DIAGNOSTICS_LEVEL_KEY = "diagnosticsLevel";
+    private static final String DEDUP_MEMORY_BUDGET_MB_KEY = "dedupMemoryBudgetMb";
+    private static final String DEDUP_EVICTION_POLICY_KEY = "dedupEvictionPolicy";
+    private static final String DEDUP_TTL_MINUTES_KEY = "dedupTtlMinutes";
+    private static final String VOLATILE_QUERY_PARAMS_KEY = "volatileQueryParams";
+    private static final String SCOPE_SOURCE_KEY = "scopeSource";
+    private static final String PREFILTER_SKIPPED_TOOLS_KEY = "prefilterSkippedTools";
+    private static final String PREFILTER_STATUS_RANGE_KEY = "prefilterStatusRange";
+    private static final String PREFILTER_BODY_SIZE_RANGE_KEY = "prefilterBodySizeRange";
+    private static final String PREFILTER_METHODS_KEY = "prefilterMethods";
+    private static final String LOAD_SHED_THRESHOLD_KEY = "loadShedThreshold";
+    private static final String MAX_IN_FLIGHT_UPLOADS_KEY = "maxInFlightUploads";
+    private static final String UPLOAD_BATCH_SIZE_KEY = "uploadBatchSize";
+    private static final String UPLOAD_BATCH_WINDOW_MS_KEY = "uploadBatchWindowMs";
+    private static final String RETRY_MAX_ATTEMPTS_KEY = "retryMaxAttempts";
+    private static final String RETRY_BUDGET_PER_MINUTE_KEY = "retryBudgetPerMinute";
+    private static final String UPLOADS_PER_SECOND_KEY = "uploadsPerSecond";
+    private static final String API_BASE_URL_KEY = "apiBaseUrl";
+    private static final String HISTORY_SCAN_WORKERS_KEY = "historyScanWorkers";
+    
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_UPLOAD_WORKERS = 2;
+    public static final int DEFAULT_DEDUP_MEMORY_BUDGET_MB = 8;
+    public static final int DEFAULT_DEDUP_TTL_MINUTES = 24 * 60;
+    public static final int DEFAULT_LOAD_SHED_THRESHOLD = JsmonLoadShedder.DEFAULT_THRESHOLD_PER_SECOND;
+    public static final int DEFAULT_MAX_IN_FLIGHT_UPLOADS = 16;
+    public static final int DEFAULT_UPLOAD_BATCH_SIZE = JsmonUploadBatcher.DEFAULT_MAX_ITEMS;
+    public static final int DEFAULT_UPLOAD_BATCH_WINDOW_MS = JsmonUploadBatcher.DEFAULT_WINDOW_MS;
+    public static final int DEFAULT_RETRY_MAX_ATTEMPTS = JsmonRetryScheduler.DEFAULT_MAX_ATTEMPTS;
+    public static final int DEFAULT_RETRY_BUDGET_PER_MINUTE = JsmonRetryScheduler.DEFAULT_BUDGET_PER_MINUTE;
+    public static final int DEFAULT_UPLOADS_PER_SECOND = JsmonRateLimiter.DEFAULT_UPLOADS_PER_SECOND;
+    public static final String DEFAULT_API_BASE_URL = JsmonApiClient.DEFAULT_API_BASE_URL;
+    public static final int DEFAULT_HISTORY_SCAN_WORKERS = JsmonScanJob.DEFAULT_WORKERS;
     
     private MontoyaApi api;
     private PersistedObject persistedObject;
@@ -18,6 +58,28 @@ public class JsmonConfig {
     private String scopedDomain;
     private boolean automateScan = false; // Default to false - automatic scanning is off by default
     private String githubToken;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int uploadWorkers = DEFAULT_UPLOAD_WORKERS;
+    private String queueOverflowPolicy;
+    private String diagnosticsLevel;
+    private int dedupMemoryBudgetMb = DEFAULT_DEDUP_MEMORY_BUDGET_MB;
+    private String dedupEvictionPolicy;
+    private int dedupTtlMinutes = DEFAULT_DEDUP_TTL_MINUTES;
+    private String volatileQueryParams = JsmonUrlCanonicalizer.DEFAULT_VOLATILE_PARAMS;
+    private String scopeSource;
+    private String prefilterSkippedTools = JsmonPrefilter.DEFAULT_SKIPPED_TOOLS;
+    private String prefilterStatusRange = JsmonPrefilter.DEFAULT_STATUS_RANGE;
+    private String prefilterBodySizeRange = JsmonPrefilter.DEFAULT_BODY_SIZE_RANGE;
+    private String prefilterMethods = JsmonPrefilter.DEFAULT_METHODS;
+    private int loadShedThreshold = DEFAULT_LOAD_SHED_THRESHOLD;
+    private int maxInFlightUploads = DEFAULT_MAX_IN_FLIGHT_UPLOADS;
+    private int uploadBatchSize = DEFAULT_UPLOAD_BATCH_SIZE;
+    private int uploadBatchWindowMs = DEFAULT_UPLOAD_BATCH_WINDOW_MS;
+    private int retryMaxAttempts = DEFAULT_RETRY_MAX_ATTEMPTS;
+    private int retryBudgetPerMinute = DEFAULT_RETRY_BUDGET_PER_MINUTE;
+    private int uploadsPerSecond = DEFAULT_UPLOADS_PER_SECOND;
+    private String apiBaseUrl = DEFAULT_API_BASE_URL;
+    private int historyScanWorkers = DEFAULT_HISTORY_SCAN_WORKERS;
     
     public JsmonConfig(MontoyaApi api) {
         this.api = api;
@@ -46,6 +108,28 @@ public class JsmonConfig {
             String loadedScopedDomain = persistedObject.getString(SCOPED_DOMAIN_KEY);
             Boolean loadedAutomateScan = persistedObject.getBoolean(AUTOMATE_SCAN_KEY);
             String loadedGithubToken = persistedObject.getString(GITHUB_TOKEN_KEY);
+            Integer loadedQueueCapacity = persistedObject.getInteger(QUEUE_CAPACITY_KEY);
+            Integer loadedUploadWorkers = persistedObject.getInteger(UPLOAD_WORKERS_KEY);
+            String loadedQueueOverflowPolicy = persistedObject.getString(QUEUE_OVERFLOW_POLICY_KEY);
+            String loadedDiagnosticsLevel = persistedObject.getString(DIAGNOSTICS_LEVEL_KEY);
+            Integer loadedDedupMemoryBudgetMb = persistedObject.getInteger(DEDUP_MEMORY_BUDGET_MB_KEY);
+            String loadedDedupEvictionPolicy = persistedObject.getString(DEDUP_EVICTION_POLICY_KEY);
+            Integer loadedDedupTtlMinutes = persistedObject.getInteger(DEDUP_TTL_MINUTES_KEY);
+            String loadedVolatileQueryParams = persistedObject.getString(VOLATILE_QUERY_PARAMS_KEY);
+            String loadedScopeSource = persistedObject.getString(SCOPE_SOURCE_KEY);
+            String loadedPrefilterSkippedTools = persistedObject.getString(PREFILTER_SKIPPED_TOOLS_KEY);
+            String loadedPrefilterStatusRange = persistedObject.getString(PREFILTER_STATUS_RANGE_KEY);
+            String loadedPrefilterBodySizeRange = persistedObject.getString(PREFILTER_BODY_SIZE_RANGE_KEY);
+            String loadedPrefilterMethods = persistedObject.getString(PREFILTER_METHODS_KEY);
+            Integer loadedLoadShedThreshold = persistedObject.getInteger(LOAD_SHED_THRESHOLD_KEY);
+            Integer loadedMaxInFlightUploads = persistedObject.getInteger(MAX_IN_FLIGHT_UPLOADS_KEY);
+            Integer loadedUploadBatchSize = persistedObject.getInteger(UPLOAD_BATCH_SIZE_KEY);
+            Integer loadedUploadBatchWindowMs = persistedObject.getInteger(UPLOAD_BATCH_WINDOW_MS_KEY);
+            Integer loadedRetryMaxAttempts = persistedObject.getInteger(RETRY_MAX_ATTEMPTS_KEY);
+            Integer loadedRetryBudgetPerMinute = persistedObject.getInteger(RETRY_BUDGET_PER_MINUTE_KEY);
+            Integer loadedUploadsPerSecond = persistedObject.getInteger(UPLOADS_PER_SECOND_KEY);
+            String loadedApiBaseUrl = persistedObject.getString(API_BASE_URL_KEY);
+            Integer loadedHistoryScanWorkers = persistedObject.getInteger(HISTORY_SCAN_WORKERS_KEY);
             
             // Only assign if values were actually loaded (not null for strings, not false for boolean if it was set)
             if (loadedApiKey != null) {
@@ -63,6 +147,72 @@ public class JsmonConfig {
             if (loadedGithubToken != null) {
                 this.githubToken = loadedGithubToken;
             }
+            if (loadedQueueCapacity != null && loadedQueueCapacity > 0) {
+                this.queueCapacity = loadedQueueCapacity;
+            }
+            if (loadedUploadWorkers != null && loadedUploadWorkers > 0) {
+                this.uploadWorkers = loadedUploadWorkers;
+            }
+            if (loadedQueueOverflowPolicy != null) {
+                this.queueOverflowPolicy = loadedQueueOverflowPolicy;
+            }
+            if (loadedDiagnosticsLevel != null) {
+                this.diagnosticsLevel = loadedDiagnosticsLevel;
+            }
+            if (loadedDedupMemoryBudgetMb != null && loadedDedupMemoryBudgetMb > 0) {
+                this.dedupMemoryBudgetMb = loadedDedupMemoryBudgetMb;
+            }
+            if (loadedDedupEvictionPolicy != null) {
+                this.dedupEvictionPolicy = loadedDedupEvictionPolicy;
+            }
+            if (loadedDedupTtlMinutes != null && loadedDedupTtlMinutes > 0) {
+                this.dedupTtlMinutes = loadedDedupTtlMinutes;
+            }
+            if (loadedVolatileQueryParams != null) {
+                this.volatileQueryParams = loadedVolatileQueryParams;
+            }
+            if (loadedScopeSource != null) {
+                this.scopeSource = loadedScopeSource;
+            }
+            if (loadedPrefilterSkippedTools != null) {
+                this.prefilterSkippedTools = loadedPrefilterSkippedTools;
+            }
+            if (loadedPrefilterStatusRange != null) {
+                this.prefilterStatusRange = loadedPrefilterStatusRange;
+            }
+            if (loadedPrefilterBodySizeRange != null) {
+                this.prefilterBodySizeRange = loadedPrefilterBodySizeRange;
+            }
+            if (loadedPrefilterMethods != null) {
+                this.prefilterMethods = loadedPrefilterMethods;
+            }
+            if (loadedLoadShedThreshold != null && loadedLoadShedThreshold >= 0) {
+                this.loadShedThreshold = loadedLoadShedThreshold;
+            }
+            if (loadedMaxInFlightUploads != null && loadedMaxInFlightUploads > 0) {
+                this.maxInFlightUploads = loadedMaxInFlightUploads;
+            }
+            if (loadedUploadBatchSize != null && loadedUploadBatchSize > 0) {
+                this.uploadBatchSize = loadedUploadBatchSize;
+            }
+            if (loadedUploadBatchWindowMs != null && loadedUploadBatchWindowMs > 0) {
+                this.uploadBatchWindowMs = loadedUploadBatchWindowMs;
+            }
+            if (loadedRetryMaxAttempts != null && loadedRetryMaxAttempts > 0) {
+                this.retryMaxAttempts = loadedRetryMaxAttempts;
+            }
+            if (loadedRetryBudgetPerMinute != null && loadedRetryBudgetPerMinute > 0) {
+                this.retryBudgetPerMinute = loadedRetryBudgetPerMinute;
+            }
+            if (loadedUploadsPerSecond != null && loadedUploadsPerSecond >= 0) {
+                this.uploadsPerSecond = loadedUploadsPerSecond;
+            }
+            if (loadedApiBaseUrl != null && !loadedApiBaseUrl.trim().isEmpty()) {
+                this.apiBaseUrl = loadedApiBaseUrl.trim();
+            }
+            if (loadedHistoryScanWorkers != null && loadedHistoryScanWorkers > 0) {
+                this.historyScanWorkers = loadedHistoryScanWorkers;
+            }
             
             // Log successful load for debugging
             if (api != null && api.logging() != null) {
@@ -140,6 +290,87 @@ public class JsmonConfig {
                 }
             }
             
+            persistedObject.setInteger(QUEUE_CAPACITY_KEY, queueCapacity);
+            persistedObject.setInteger(UPLOAD_WORKERS_KEY, uploadWorkers);
+            
+            if (queueOverflowPolicy != null && !queueOverflowPolicy.isEmpty()) {
+                persistedObject.setString(QUEUE_OVERFLOW_POLICY_KEY, queueOverflowPolicy);
+            } else {
+                try {
+                    persistedObject.deleteString(QUEUE_OVERFLOW_POLICY_KEY);
+                } catch (Exception e) {
+                    // Ignore if key doesn't exist
+                }
+            }
+            
+            if (diagnosticsLevel != null && !diagnosticsLevel.isEmpty()) {
+                persistedObject.setString(DIAGNOSTICS_LEVEL_KEY, diagnosticsLevel);
+            } else {
+                try {
+                    persistedObject.deleteString(DIAGNOSTICS_LEVEL_KEY);
+                } catch (Exception e) {
+                    // Ignore if key doesn't exist
+                }
+            }
+            
+            persistedObject.setInteger(DEDUP_MEMORY_BUDGET_MB_KEY, dedupMemoryBudgetMb);
+            persistedObject.setInteger(DEDUP_TTL_MINUTES_KEY, dedupTtlMinutes);
+            
+            if (dedupEvictionPolicy != null && !dedupEvictionPolicy.isEmpty()) {
+                persistedObject.setString(DEDUP_EVICTION_POLICY_KEY, dedupEvictionPolicy);
+            } else {
+                try {
+                    persistedObject.deleteString(DEDUP_EVICTION_POLICY_KEY);
+                } catch (Exception e) {
+                    // Ignore if key doesn't exist
+                }
+            }
+            
+            // Stored even when empty so that "strip nothing" survives a reload
+            persistedObject.setString(VOLATILE_QUERY_PARAMS_KEY, volatileQueryParams != null ? volatileQueryParams : "");
+            
+            if (scopeSource != null && !scopeSource.isEmpty()) {
+                persistedObject.setString(SCOPE_SOURCE_KEY, scopeSource);
+            } else {
+                try {
+                    persistedObject.deleteString(SCOPE_SOURCE_KEY);
+                } catch (Exception e) {
+                    // Ignore if key doesn't exist
+                }
+            }
+            
+            // Prefilter rules are stored even when empty (an empty rule accepts everything)
+            persistedObject.setString(PREFILTER_SKIPPED_TOOLS_KEY, prefilterSkippedTools != null ? prefilterSkippedTools : "");
+            persistedObject.setString(PREFILTER_STATUS_RANGE_KEY, prefilterStatusRange != null ? prefilterStatusRange : "");
+            persistedObject.setString(PREFILTER_BODY_SIZE_RANGE_KEY, prefilterBodySizeRange != null ? prefilterBodySizeRange : "");
+            persistedObject.setString(PREFILTER_METHODS_KEY, prefilterMethods != null ? prefilterMethods : "");
+            
+            persistedObject.setInteger(LOAD_SHED_THRESHOLD_KEY, loadShedThreshold);
+            
+            persistedObject.setInteger(MAX_IN_FLIGHT_UPLOADS_KEY, maxInFlightUploads);
+            
+            persistedObject.setInteger(UPLOAD_BATCH_SIZE_KEY, uploadBatchSize);
+            
+            persistedObject.setInteger(UPLOAD_BATCH_WINDOW_MS_KEY, uploadBatchWindowMs);
+            
+            persistedObject.setInteger(RETRY_MAX_ATTEMPTS_KEY, retryMaxAttempts);
+            
+            persistedObject.setInteger(RETRY_BUDGET_PER_MINUTE_KEY, retryBudgetPerMinute);
+            
+            persistedObject.setInteger(UPLOADS_PER_SECOND_KEY, uploadsPerSecond);
+            
+            if (apiBaseUrl != null && !apiBaseUrl.isEmpty()) {
+                persistedObject.setString(API_BASE_URL_KEY, apiBaseUrl);
+            } else {
+                try {
+                    persistedObject.deleteString(API_BASE_URL_KEY);
+                } catch (Exception e) {
+                    // Ignore if key doesn't exist
+                }
+            }
+            
+            persistedObject.setInteger(HISTORY_SCAN_WORKERS_KEY, historyScanWorkers);
+            
             // Log successful save for debugging
             if (api != null && api.logging() != null) {
                 api.logging().logToOutput("JSMon: Configuration saved to project data (API key: " + 
@@ -199,5 +430,259 @@ public class JsmonConfig {
         this.githubToken = githubToken;
         saveToPersistence();
     }
+    
+    /**
+     * Maximum number of discovered files waiting for upload (applies on extension reload)
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity > 0 ? queueCapacity : DEFAULT_QUEUE_CAPACITY;
+        saveToPersistence();
+    }
+    
+    /**
+     * Number of threads uploading queued files (applies on extension reload)
+     */
+    public int getUploadWorkers() {
+        return uploadWorkers;
+    }
+    
+    public void setUploadWorkers(int uploadWorkers) {
+        this.uploadWorkers = uploadWorkers > 0 ? uploadWorkers : DEFAULT_UPLOAD_WORKERS;
+        saveToPersistence();
+    }
+    
+    /**
+     * Behaviour when the upload queue is full: BLOCK, DROP_OLDEST or DROP_NEWEST
+     */
+    public String getQueueOverflowPolicy() {
+        return queueOverflowPolicy;
+    }
+    
+    public void setQueueOverflowPolicy(String queueOverflowPolicy) {
+        this.queueOverflowPolicy = queueOverflowPolicy;
+        saveToPersistence();
+    }
+    
+    /**
+     * Minimum diagnostics level written to Burp's output (TRACE, DEBUG, INFO, WARN, ERROR)
+     */
+    public String getDiagnosticsLevel() {
+        return diagnosticsLevel;
+    }
+    
+    public void setDiagnosticsLevel(String diagnosticsLevel) {
+        this.diagnosticsLevel = diagnosticsLevel;
+        saveToPersistence();
+    }
+    
+    /**
+     * Memory budget in MB for the processed-URL index (applies on extension reload)
+     */
+    public int getDedupMemoryBudgetMb() {
+        return dedupMemoryBudgetMb;
+    }
+    
+    public void setDedupMemoryBudgetMb(int dedupMemoryBudgetMb) {
+        this.dedupMemoryBudgetMb = dedupMemoryBudgetMb > 0 ? dedupMemoryBudgetMb : DEFAULT_DEDUP_MEMORY_BUDGET_MB;
+        saveToPersistence();
+    }
+    
+    /**
+     * Eviction policy for the processed-URL index: LRU or TTL (applies on extension reload)
+     */
+    public String getDedupEvictionPolicy() {
+        return dedupEvictionPolicy;
+    }
+    
+    public void setDedupEvictionPolicy(String dedupEvictionPolicy) {
+        this.dedupEvictionPolicy = dedupEvictionPolicy;
+        saveToPersistence();
+    }
+    
+    /**
+     * How long a processed URL is remembered in TTL mode (applies on extension reload)
+     */
+    public int getDedupTtlMinutes() {
+        return dedupTtlMinutes;
+    }
+    
+    public void setDedupTtlMinutes(int dedupTtlMinutes) {
+        this.dedupTtlMinutes = dedupTtlMinutes > 0 ? dedupTtlMinutes : DEFAULT_DEDUP_TTL_MINUTES;
+        saveToPersistence();
+    }
+    
+    /**
+     * Query/path parameter names ignored when deduplicating URLs ("re:" prefix for regex entries)
+     */
+    public String getVolatileQueryParams() {
+        return volatileQueryParams;
+    }
+    
+    public void setVolatileQueryParams(String volatileQueryParams) {
+        this.volatileQueryParams = volatileQueryParams != null ? volatileQueryParams : "";
+        saveToPersistence();
+    }
+    
+    /**
+     * Where scope decisions come from: SCOPED_DOMAINS (the scoped domain list) or BURP_SCOPE (Burp's target scope)
+     */
+    public String getScopeSource() {
+        return scopeSource;
+    }
+    
+    public void setScopeSource(String scopeSource) {
+        this.scopeSource = scopeSource;
+        saveToPersistence();
+    }
+    
+    /**
+     * Burp tools whose responses are ignored by auto-scan (e.g. SCANNER, INTRUDER)
+     */
+    public String getPrefilterSkippedTools() {
+        return prefilterSkippedTools;
+    }
+    
+    /**
+     * Status codes accepted by auto-scan, as min-max
+     */
+    public String getPrefilterStatusRange() {
+        return prefilterStatusRange;
+    }
+    
+    /**
+     * Response body sizes in bytes accepted by auto-scan, as min-max
+     */
+    public String getPrefilterBodySizeRange() {
+        return prefilterBodySizeRange;
+    }
+    
+    /**
+     * Request methods accepted by auto-scan (e.g. GET, POST)
+     */
+    public String getPrefilterMethods() {
+        return prefilterMethods;
+    }
+    
+    /**
+     * Replace all prefilter rules at once (single save)
+     */
+    public void setPrefilterRules(String skippedTools, String statusRange, String bodySizeRange, String methods) {
+        this.prefilterSkippedTools = skippedTools != null ? skippedTools : "";
+        this.prefilterStatusRange = statusRange != null ? statusRange : "";
+        this.prefilterBodySizeRange = bodySizeRange != null ? bodySizeRange : "";
+        this.prefilterMethods = methods != null ? methods : "";
+        saveToPersistence();
+    }
+    
+    /**
+     * Responses per second above which the live handler only defers URLs for a later history scan (0 disables)
+     */
+    public int getLoadShedThreshold() {
+        return loadShedThreshold;
+    }
+    
+    public void setLoadShedThreshold(int loadShedThreshold) {
+        this.loadShedThreshold = Math.max(0, loadShedThreshold);
+        saveToPersistence();
+    }
+    
+    /**
+     * Maximum uploads waiting for a JSMon response at once
+     */
+    public int getMaxInFlightUploads() {
+        return maxInFlightUploads;
+    }
+    
+    public void setMaxInFlightUploads(int maxInFlightUploads) {
+        this.maxInFlightUploads = maxInFlightUploads > 0 ? maxInFlightUploads : DEFAULT_MAX_IN_FLIGHT_UPLOADS;
+        saveToPersistence();
+    }
+    
+    /**
+     * Files sent per upload request (1 disables batching)
+     */
+    public int getUploadBatchSize() {
+        return uploadBatchSize;
+    }
+    
+    public void setUploadBatchSize(int uploadBatchSize) {
+        this.uploadBatchSize = uploadBatchSize > 0 ? uploadBatchSize : DEFAULT_UPLOAD_BATCH_SIZE;
+        saveToPersistence();
+    }
+    
+    /**
+     * Longest time a file waits for others to fill its batch
+     */
+    public int getUploadBatchWindowMs() {
+        return uploadBatchWindowMs;
+    }
+    
+    public void setUploadBatchWindowMs(int uploadBatchWindowMs) {
+        this.uploadBatchWindowMs = uploadBatchWindowMs > 0 ? uploadBatchWindowMs : DEFAULT_UPLOAD_BATCH_WINDOW_MS;
+        saveToPersistence();
+    }
+    
+    /**
+     * Attempts per upload including the first (1 disables retries)
+     */
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+    
+    public void setRetryMaxAttempts(int retryMaxAttempts) {
+        this.retryMaxAttempts = retryMaxAttempts > 0 ? retryMaxAttempts : DEFAULT_RETRY_MAX_ATTEMPTS;
+        saveToPersistence();
+    }
+    
+    /**
+     * Retries allowed across all uploads per minute
+     */
+    public int getRetryBudgetPerMinute() {
+        return retryBudgetPerMinute;
+    }
+    
+    public void setRetryBudgetPerMinute(int retryBudgetPerMinute) {
+        this.retryBudgetPerMinute = retryBudgetPerMinute > 0 ? retryBudgetPerMinute : DEFAULT_RETRY_BUDGET_PER_MINUTE;
+        saveToPersistence();
+    }
+    
+    /**
+     * Upload rate limit (0 for no limit)
+     */
+    public int getUploadsPerSecond() {
+        return uploadsPerSecond;
+    }
+    
+    public void setUploadsPerSecond(int uploadsPerSecond) {
+        this.uploadsPerSecond = Math.max(0, uploadsPerSecond);
+        saveToPersistence();
+    }
+    
+    /**
+     * JSMon API base URL, e.g. a local stand-in server for offline load testing
+     */
+    public String getApiBaseUrl() {
+        return apiBaseUrl;
+    }
+    
+    public void setApiBaseUrl(String apiBaseUrl) {
+        this.apiBaseUrl = apiBaseUrl == null || apiBaseUrl.trim().isEmpty() ? DEFAULT_API_BASE_URL : apiBaseUrl.trim();
+        saveToPersistence();
+    }
+    
+    /**
+     * Files uploaded in parallel by a history scan
+     */
+    public int getHistoryScanWorkers() {
+        return historyScanWorkers;
+    }
+    
+    public void setHistoryScanWorkers(int historyScanWorkers) {
+        this.historyScanWorkers = historyScanWorkers > 0 ? historyScanWorkers : DEFAULT_HISTORY_SCAN_WORKERS;
+        saveToPersistence();
+    }
 }
-
@@ -0,0 +1,309 @@
+package burp.util;
+
+import burp.api.montoya.core.ByteArray;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Remembers which response bodies were already submitted to each workspace, keyed by
+ * a 128-bit MurmurHash3 of the body. Lets identical bundles served from different
+ * hosts or versioned paths be uploaded once. Entries are kept in LRU order up to a
+ * fixed maximum so the index cannot grow without bound.
+ *
+ * A claim only becomes a reason to skip once its upload succeeds: a duplicate that arrives
+ * while the first upload is in flight waits on {@link Entry#getUpload()}, and claims the
+ * content again if that upload fails.
+ */
+public class JsmonContentIndex {
+
+    public static final int DEFAULT_MAX_ENTRIES = 50_000;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /** Bytes copied out of a body per call; a multiple of the 16-byte block */
+    static final int CHUNK_BYTES = 64 * 1024;
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Map<String, Entry> entries;
+    /** Claims whose upload has not settled, kept apart so LRU eviction cannot strand their waiters */
+    private final Map<String, Entry> pending = new HashMap<>();
+    private long skippedUploads;
+    private long bytesSaved;
+
+    public JsmonContentIndex(int maxEntries) {
+        int limit = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<String, Entry>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JsmonContentIndex.Entry> eldest) {
+                return size() > limit;
+            }
+        };
+    }
+
+    /**
+     * Claim a body for upload to a workspace. The caller that gets null must settle the claim
+     * with {@link #succeed} or {@link #release}.
+     * @return null if the caller should upload, or the entry for the earlier upload of the same
+     *         content (which may still be in flight)
+     */
+    public synchronized Entry claim(String workspaceId, ContentHash hash, String url, long bodyLength) {
+        String key = workspaceId + ":" + hash;
+        Entry existing = pending.get(key);
+        if (existing == null) {
+            existing = entries.get(key);
+        }
+        if (existing != null) {
+            return existing;
+        }
+        Entry entry = new Entry(hash, url, bodyLength);
+        entries.put(key, entry);
+        pending.put(key, entry);
+        return null;
+    }
+
+    /**
+     * Record that a claimed body was uploaded; duplicates waiting on it are skipped
+     */
+    public void succeed(String workspaceId, ContentHash hash) {
+        Entry entry;
+        synchronized (this) {
+            entry = pending.remove(workspaceId + ":" + hash);
+        }
+        if (entry != null) {
+            entry.upload.complete(true);
+        }
+    }
+
+    /**
+     * Forget a claim (e.g. when the upload failed) so the content can be submitted again;
+     * duplicates waiting on it claim the content themselves
+     */
+    public void release(String workspaceId, ContentHash hash) {
+        String key = workspaceId + ":" + hash;
+        Entry entry;
+        synchronized (this) {
+            entry = pending.remove(key);
+            if (entry != null) {
+                entries.remove(key, entry);
+            }
+        }
+        if (entry != null) {
+            entry.upload.complete(false);
+        }
+    }
+
+    /**
+     * Count an upload skipped because an earlier upload of the same content succeeded
+     */
+    public synchronized void recordDuplicate(Entry entry, long bodyLength) {
+        entry.hits++;
+        skippedUploads++;
+        bytesSaved += bodyLength;
+    }
+
+    /**
+     * Forget every uploaded body; claims still in flight settle normally
+     */
+    public synchronized void clear() {
+        entries.clear();
+        for (Map.Entry<String, Entry> claim : pending.entrySet()) {
+            entries.put(claim.getKey(), claim.getValue());
+        }
+    }
+
+    public synchronized long getSkippedUploads() {
+        return skippedUploads;
+    }
+
+    public synchronized long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Entries with the most skipped duplicates, highest first
+     */
+    public synchronized List<Entry> getTopHits(int limit) {
+        List<Entry> withHits = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.hits > 0) {
+                withHits.add(entry);
+            }
+        }
+        withHits.sort((a, b) -> Long.compare(b.hits, a.hits));
+        return withHits.size() > limit ? new ArrayList<>(withHits.subList(0, limit)) : withHits;
+    }
+
+    /**
+     * Hash a body with MurmurHash3 (x64, 128-bit). Burp's ByteArray is copied out in chunks of
+     * {@link #CHUNK_BYTES} (one call per chunk rather than one per byte) and each chunk is
+     * hashed as an array.
+     */
+    public static ContentHash hash(ByteArray body) {
+        int length = body != null ? body.length() : 0;
+        long h1 = 0;
+        long h2 = 0;
+
+        for (int start = 0; start < length; start += CHUNK_BYTES) {
+            int end = Math.min(length, start + CHUNK_BYTES);
+            byte[] chunk = start == 0 && end == length ? body.getBytes() : body.subArray(start, end).getBytes();
+            int chunkLength = end - start;
+
+            // Chunks are a multiple of 16 bytes, so only the last one has a tail
+            int blocks = chunkLength / 16;
+            for (int i = 0; i < blocks; i++) {
+                long k1 = (long) LONG_LE.get(chunk, i * 16);
+                long k2 = (long) LONG_LE.get(chunk, i * 16 + 8);
+
+                k1 *= C1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= C2;
+                h1 ^= k1;
+                h1 = Long.rotateLeft(h1, 27);
+                h1 += h2;
+                h1 = h1 * 5 + 0x52dce729;
+
+                k2 *= C2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= C1;
+                h2 ^= k2;
+                h2 = Long.rotateLeft(h2, 31);
+                h2 += h1;
+                h2 = h2 * 5 + 0x38495ab5;
+            }
+
+            int tail = blocks * 16;
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = chunkLength - 1; i >= tail; i--) {
+                int index = i - tail;
+                long b = chunk[i] & 0xffL;
+                if (index >= 8) {
+                    k2 |= b << ((index - 8) * 8);
+                } else {
+                    k1 |= b << (index * 8);
+                }
+            }
+            if (k2 != 0) {
+                k2 *= C2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= C1;
+                h2 ^= k2;
+            }
+            if (k1 != 0) {
+                k1 *= C1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= C2;
+                h1 ^= k1;
+            }
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return new ContentHash(h1, h2);
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * 128-bit content hash
+     */
+    public static final class ContentHash {
+        private final long high;
+        private final long low;
+
+        public ContentHash(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ContentHash)) {
+                return false;
+            }
+            ContentHash other = (ContentHash) obj;
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high ^ low);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", high, low);
+        }
+    }
+
+    /**
+     * First upload of a piece of content and how many duplicates it saved
+     */
+    public static final class Entry {
+        private final ContentHash hash;
+        private final String firstUrl;
+        private final long bodyLength;
+        private final CompletableFuture<Boolean> upload = new CompletableFuture<>();
+        private long hits;
+
+        Entry(ContentHash hash, String firstUrl, long bodyLength) {
+            this.hash = hash;
+            this.firstUrl = firstUrl;
+            this.bodyLength = bodyLength;
+        }
+
+        public ContentHash getHash() {
+            return hash;
+        }
+
+        public String getFirstUrl() {
+            return firstUrl;
+        }
+
+        public long getBodyLength() {
+            return bodyLength;
+        }
+
+        /**
+         * Completes (on the thread that settles the first upload) with true once it succeeded,
+         * or false if it failed and the content was released
+         */
+        public CompletableFuture<Boolean> getUpload() {
+            return upload;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+    }
+}
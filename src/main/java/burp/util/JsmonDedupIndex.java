@@ -0,0 +1,314 @@
+package burp.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Memory-bounded set of already-processed keys (URLs).
+ *
+ * Keys are reduced to 64-bit fingerprints stored in a primitive open-addressing table
+ * (linear probing, backward-shift deletion), so memory use is fixed by the configured
+ * budget instead of growing with URL length and count. When the table is full an
+ * approximately least-recently-used (or oldest, in TTL mode) entry is evicted.
+ *
+ * A lookup can only report a false "seen" when two keys share a fingerprint; the
+ * probability of that per lookup is at most size / 2^64.
+ */
+public class JsmonDedupIndex {
+
+    public enum EvictionPolicy {
+        /** Evict the least recently looked-up entry when full */
+        LRU,
+        /** Entries expire a fixed time after insertion; the oldest is evicted when full */
+        TTL;
+
+        public static EvictionPolicy fromString(String value) {
+            if (value != null) {
+                for (EvictionPolicy policy : values()) {
+                    if (policy.name().equalsIgnoreCase(value.trim())) {
+                        return policy;
+                    }
+                }
+            }
+            return LRU;
+        }
+    }
+
+    /** Fingerprint plus timestamp per slot */
+    private static final int BYTES_PER_SLOT = 16;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final int EVICTION_SAMPLES = 16;
+    private static final int MIN_SLOTS = 1024;
+
+    private final EvictionPolicy policy;
+    private final long ttlMillis;
+    private final long[] fingerprints;
+    private final long[] stamps;
+    private final int mask;
+    private final int maxEntries;
+    private int size;
+
+    private long lookups;
+    private long hits;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param memoryBudgetBytes Upper bound for the table size in bytes
+     * @param policy            Eviction policy
+     * @param ttlMillis         Entry lifetime for TTL mode (ignored for LRU)
+     */
+    public JsmonDedupIndex(long memoryBudgetBytes, EvictionPolicy policy, long ttlMillis) {
+        long slots = Math.max(MIN_SLOTS, memoryBudgetBytes / BYTES_PER_SLOT);
+        int capacity = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+        this.fingerprints = new long[capacity];
+        this.stamps = new long[capacity];
+        this.mask = capacity - 1;
+        this.maxEntries = (int) (capacity * MAX_LOAD_FACTOR);
+        this.policy = policy != null ? policy : EvictionPolicy.LRU;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Compute a well-mixed 64-bit fingerprint of a key without allocating.
+     * Zero is reserved as the empty-slot marker.
+     */
+    static long fingerprint(CharSequence key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= key.length();
+        // MurmurHash3 finalizer to spread FNV output across all bits
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != 0 ? h : 1;
+    }
+
+    /**
+     * Check whether a key has been recorded
+     */
+    public synchronized boolean contains(String key) {
+        lookups++;
+        int slot = find(fingerprint(key), System.currentTimeMillis());
+        if (slot < 0) {
+            return false;
+        }
+        hits++;
+        return true;
+    }
+
+    /**
+     * Record a key if it is not already present
+     * @return true if the key was newly added, false if it was already present
+     */
+    public synchronized boolean addIfAbsent(String key) {
+        lookups++;
+        long fp = fingerprint(key);
+        long now = System.currentTimeMillis();
+        if (find(fp, now) >= 0) {
+            hits++;
+            return false;
+        }
+        if (size >= maxEntries) {
+            evictOne(now);
+        }
+        int slot = (int) fp & mask;
+        while (fingerprints[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        fingerprints[slot] = fp;
+        stamps[slot] = now;
+        size++;
+        return true;
+    }
+
+    /**
+     * Record a key (no-op if already present)
+     */
+    public void add(String key) {
+        addIfAbsent(key);
+    }
+
+    /**
+     * Forget a key so it can be processed again
+     * @return true if the key was present
+     */
+    public synchronized boolean remove(String key) {
+        long fp = fingerprint(key);
+        int slot = (int) fp & mask;
+        while (fingerprints[slot] != 0) {
+            if (fingerprints[slot] == fp) {
+                deleteSlot(slot);
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public synchronized void clear() {
+        java.util.Arrays.fill(fingerprints, 0L);
+        java.util.Arrays.fill(stamps, 0L);
+        size = 0;
+    }
+
+    /**
+     * Locate a fingerprint, dropping it if it has expired (TTL) or refreshing it (LRU)
+     * @return Slot index, or -1 if absent
+     */
+    private int find(long fp, long now) {
+        int slot = (int) fp & mask;
+        while (fingerprints[slot] != 0) {
+            if (fingerprints[slot] == fp) {
+                if (policy == EvictionPolicy.TTL) {
+                    if (now - stamps[slot] > ttlMillis) {
+                        deleteSlot(slot);
+                        expirations++;
+                        return -1;
+                    }
+                } else {
+                    stamps[slot] = now;
+                }
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Evict the entry with the oldest stamp among a random sample of occupied slots
+     */
+    private void evictOne(long now) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int victim = -1;
+        long victimStamp = Long.MAX_VALUE;
+        for (int sample = 0; sample < EVICTION_SAMPLES; sample++) {
+            int slot = random.nextInt(fingerprints.length);
+            while (fingerprints[slot] == 0) {
+                slot = (slot + 1) & mask;
+            }
+            if (stamps[slot] < victimStamp) {
+                victimStamp = stamps[slot];
+                victim = slot;
+            }
+        }
+        if (victim >= 0) {
+            if (policy == EvictionPolicy.TTL && now - victimStamp > ttlMillis) {
+                expirations++;
+            } else {
+                evictions++;
+            }
+            deleteSlot(victim);
+        }
+    }
+
+    /**
+     * Remove a slot and shift back any following entries of the same probe run
+     */
+    private void deleteSlot(int hole) {
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            long fp = fingerprints[next];
+            if (fp == 0) {
+                break;
+            }
+            int home = (int) fp & mask;
+            boolean homeBetween = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (homeBetween) {
+                continue;
+            }
+            fingerprints[hole] = fp;
+            stamps[hole] = stamps[next];
+            hole = next;
+        }
+        fingerprints[hole] = 0;
+        stamps[hole] = 0;
+        size--;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(size, maxEntries, lookups, hits, evictions, expirations,
+                (long) fingerprints.length * BYTES_PER_SLOT, policy);
+    }
+
+    /**
+     * Snapshot of index statistics
+     */
+    public static class Stats {
+        private final int size;
+        private final int maxEntries;
+        private final long lookups;
+        private final long hits;
+        private final long evictions;
+        private final long expirations;
+        private final long bytesUsed;
+        private final EvictionPolicy policy;
+
+        Stats(int size, int maxEntries, long lookups, long hits, long evictions, long expirations,
+              long bytesUsed, EvictionPolicy policy) {
+            this.size = size;
+            this.maxEntries = maxEntries;
+            this.lookups = lookups;
+            this.hits = hits;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.bytesUsed = bytesUsed;
+            this.policy = policy;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public long getLookups() {
+            return lookups;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public double getHitRate() {
+            return lookups > 0 ? (double) hits / lookups : 0.0;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public long getBytesUsed() {
+            return bytesUsed;
+        }
+
+        /**
+         * Upper bound on the probability that a single lookup reports a false "seen"
+         */
+        public double getFalsePositiveBound() {
+            return size / Math.pow(2, 64);
+        }
+
+        public EvictionPolicy getPolicy() {
+            return policy;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d entries, hit rate %.1f%%, %d evicted, %d expired, %d KB (%s)",
+                    size, maxEntries, getHitRate() * 100, evictions, expirations, bytesUsed / 1024, policy);
+        }
+    }
+}
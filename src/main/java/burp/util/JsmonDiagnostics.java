@@ -0,0 +1,294 @@
+package burp.util;
+
+import burp.api.montoya.logging.Logging;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Leveled logging facade for hot paths (the HTTP handler and URL classification).
+ * Messages are passed as suppliers so nothing is concatenated unless it is needed.
+ * Every message is recorded in a fixed-size in-memory ring buffer; only messages at
+ * or above the output level are written to Burp's output/error panes. The ring is
+ * striped by thread and written without locks, so handler threads never wait on it.
+ */
+public class JsmonDiagnostics {
+
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR;
+
+        /**
+         * Parse a persisted level name, falling back to INFO for unknown values
+         */
+        public static Level fromString(String value) {
+            if (value != null) {
+                for (Level level : values()) {
+                    if (level.name().equalsIgnoreCase(value.trim())) {
+                        return level;
+                    }
+                }
+            }
+            return INFO;
+        }
+    }
+
+    public static final int DEFAULT_RING_CAPACITY = 2000;
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    /**
+     * One recorded message: either a supplier, or a "{}" pattern with up to three arguments that is
+     * only formatted when the ring is dumped
+     */
+    private static final class Entry {
+        final long nanos;
+        final Level level;
+        final Object message;
+        final Object arg1;
+        final Object arg2;
+        final Object arg3;
+
+        Entry(long nanos, Level level, Object message, Object arg1, Object arg2, Object arg3) {
+            this.nanos = nanos;
+            this.level = level;
+            this.message = message;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.arg3 = arg3;
+        }
+
+        String render() {
+            if (message instanceof Supplier) {
+                return String.valueOf(((Supplier<?>) message).get());
+            }
+            return format((String) message, arg1, arg2, arg3);
+        }
+    }
+
+    /**
+     * Part of the ring written by a subset of threads, so concurrent handler threads do not
+     * contend on one cursor
+     */
+    private static final class Stripe {
+        final AtomicLong next = new AtomicLong();
+        final AtomicReferenceArray<Entry> entries;
+
+        Stripe(int capacity) {
+            entries = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    private final Logging logging;
+    private final int ringCapacity;
+    private final Stripe[] stripes;
+    /** Wall clock at construction, to turn entry nano times into timestamps */
+    private final long baseMillis = System.currentTimeMillis();
+    private final long baseNanos = System.nanoTime();
+    private volatile Level outputLevel = Level.INFO;
+    private volatile boolean ringEnabled = true;
+
+    public JsmonDiagnostics(Logging logging) {
+        this(logging, DEFAULT_RING_CAPACITY);
+    }
+
+    public JsmonDiagnostics(Logging logging, int ringCapacity) {
+        this.logging = logging;
+        this.ringCapacity = Math.max(16, ringCapacity);
+        int stripeCount = Math.min(16, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1));
+        int stripeCapacity = Math.max(16, (this.ringCapacity + stripeCount - 1) / stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    public void trace(Supplier<String> message) {
+        log(Level.TRACE, message);
+    }
+
+    /**
+     * Record a TRACE message without allocating a lambda; "{}" placeholders are filled in on output
+     */
+    public void trace(String pattern, Object arg1, Object arg2) {
+        log(Level.TRACE, pattern, arg1, arg2, null);
+    }
+
+    public void trace(String pattern, Object arg1, Object arg2, Object arg3) {
+        log(Level.TRACE, pattern, arg1, arg2, arg3);
+    }
+
+    public void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
+    }
+
+    public void info(Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, () -> message);
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, () -> message);
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, () -> message);
+    }
+
+    /**
+     * Record a message in the ring buffer and write it to Burp if it meets the output level.
+     * The supplier is evaluated at most once for output; ring entries are rendered on dump.
+     */
+    public void log(Level level, Supplier<String> message) {
+        if (ringEnabled) {
+            record(level, message, null, null, null);
+        }
+        if (logging == null || level.compareTo(outputLevel) < 0) {
+            return;
+        }
+        write(level, message.get());
+    }
+
+    /**
+     * Pattern form of {@link #log(Level, Supplier)} for hot paths: nothing is allocated beyond the
+     * ring entry, and nothing at all when the message is neither recorded nor written
+     */
+    public void log(Level level, String pattern, Object arg1, Object arg2, Object arg3) {
+        if (ringEnabled) {
+            record(level, pattern, arg1, arg2, arg3);
+        }
+        if (logging == null || level.compareTo(outputLevel) < 0) {
+            return;
+        }
+        write(level, format(pattern, arg1, arg2, arg3));
+    }
+
+    private void write(Level level, String text) {
+        if (level.compareTo(Level.WARN) >= 0) {
+            logging.logToError(text);
+        } else {
+            logging.logToOutput(text);
+        }
+    }
+
+    /**
+     * Check whether a level would be written to Burp's output
+     */
+    public boolean isEnabled(Level level) {
+        return level.compareTo(outputLevel) >= 0;
+    }
+
+    private void record(Level level, Object message, Object arg1, Object arg2, Object arg3) {
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        long sequence = stripe.next.getAndIncrement();
+        stripe.entries.set((int) (sequence % stripe.entries.length()),
+                new Entry(System.nanoTime(), level, message, arg1, arg2, arg3));
+    }
+
+    /**
+     * Replace each "{}" in the pattern with the next argument
+     */
+    static String format(String pattern, Object arg1, Object arg2, Object arg3) {
+        StringBuilder out = new StringBuilder(pattern.length() + 64);
+        int argument = 0;
+        int start = 0;
+        int placeholder;
+        while ((placeholder = pattern.indexOf("{}", start)) >= 0 && argument < 3) {
+            out.append(pattern, start, placeholder)
+               .append(argument == 0 ? arg1 : argument == 1 ? arg2 : arg3);
+            argument++;
+            start = placeholder + 2;
+        }
+        return out.append(pattern, start, pattern.length()).toString();
+    }
+
+    /**
+     * Render the ring buffer contents, oldest first
+     */
+    public String dump() {
+        List<Entry> entries = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < stripe.entries.length(); i++) {
+                Entry entry = stripe.entries.get(i);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(entry -> entry.nanos));
+
+        StringBuilder out = new StringBuilder();
+        for (Entry entry : entries.subList(Math.max(0, entries.size() - ringCapacity), entries.size())) {
+            String text;
+            try {
+                text = entry.render();
+            } catch (Exception e) {
+                text = "<message failed: " + e.getMessage() + ">";
+            }
+            long millis = baseMillis + (entry.nanos - baseNanos) / 1_000_000L;
+            out.append(TIME_FORMAT.format(Instant.ofEpochMilli(millis)))
+               .append(' ').append(entry.level)
+               .append(' ').append(text)
+               .append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write the ring buffer to Burp's output pane as a single block
+     * @return Number of entries written
+     */
+    public int dumpToOutput() {
+        int count = getRecordedCount();
+        if (logging != null) {
+            logging.logToOutput("JSMon: ===== Diagnostics trace (" + count + " entries) =====\n" + dump()
+                    + "JSMon: ===== End of diagnostics trace =====");
+        }
+        return count;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < stripe.entries.length(); i++) {
+                stripe.entries.set(i, null);
+            }
+            stripe.next.set(0);
+        }
+    }
+
+    public int getRecordedCount() {
+        long recorded = 0;
+        for (Stripe stripe : stripes) {
+            recorded += Math.min(stripe.next.get(), stripe.entries.length());
+        }
+        return (int) Math.min(recorded, ringCapacity);
+    }
+
+    public Level getOutputLevel() {
+        return outputLevel;
+    }
+
+    public void setOutputLevel(Level outputLevel) {
+        if (outputLevel != null) {
+            this.outputLevel = outputLevel;
+        }
+    }
+
+    public boolean isRingEnabled() {
+        return ringEnabled;
+    }
+
+    public void setRingEnabled(boolean ringEnabled) {
+        this.ringEnabled = ringEnabled;
+    }
+}
@@ -0,0 +1,261 @@
+package burp.util;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Precompiled matcher for scannable file extensions and Content-Type tokens.
+ *
+ * The extension list is compiled into two character tries: a reversed-suffix trie that is
+ * walked backwards from the end of the URL path, and a forward trie used to find the first
+ * occurrence of each extension directly followed by '?', '#' or the end of the URL. Content
+ * types are matched by dispatching on each character through a table of the tokens starting
+ * with it. Neither lookup allocates or copies the input.
+ *
+ * Content types are deliberately not looked up by hashing the media-type base: the tokens are
+ * substrings that may match anywhere in the header ("text" in "text/x-component", "json" in
+ * "application/vnd.api+json" or in a parameter), so an exact lookup would change verdicts.
+ *
+ * Verdicts are identical to lowercasing the input and using endsWith / indexOf / contains.
+ * Non-ASCII input (where lowercasing can change string length) takes that original path.
+ */
+public class JsmonFileClassifier {
+
+    private static final int ALPHABET = 128;
+
+    private final String[] extensions;
+    private final String[] contentTypes;
+
+    /** Reversed-suffix trie: child index per (node, char), 0 = none; terminal flag per node */
+    private final int[] suffixChildren;
+    private final boolean[] suffixTerminal;
+
+    /** Forward trie over the same extensions; extension index per terminal node, -1 = none */
+    private final int[] prefixChildren;
+    private final int[] prefixExtension;
+
+    /** Content-type tokens grouped by their first character */
+    private final String[][] tokensByFirstChar;
+
+    /**
+     * @param extensions   Extensions including the leading dot (e.g. ".js"), lowercase ASCII
+     * @param contentTypes Substrings that mark a Content-Type as scannable, lowercase ASCII
+     * @throws IllegalArgumentException if there are more than 64 extensions
+     */
+    public JsmonFileClassifier(String[] extensions, String[] contentTypes) {
+        if (extensions.length > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " extensions are supported");
+        }
+        this.extensions = extensions.clone();
+        this.contentTypes = contentTypes.clone();
+
+        int maxNodes = 1;
+        for (String ext : this.extensions) {
+            maxNodes += ext.length();
+        }
+
+        int[] children = new int[maxNodes * ALPHABET];
+        boolean[] terminal = new boolean[maxNodes];
+        int nodes = 1;
+        for (String ext : this.extensions) {
+            int node = 0;
+            for (int i = ext.length() - 1; i >= 0; i--) {
+                int slot = node * ALPHABET + ext.charAt(i);
+                if (children[slot] == 0) {
+                    children[slot] = nodes++;
+                }
+                node = children[slot];
+            }
+            terminal[node] = true;
+        }
+        this.suffixChildren = Arrays.copyOf(children, nodes * ALPHABET);
+        this.suffixTerminal = Arrays.copyOf(terminal, nodes);
+
+        children = new int[maxNodes * ALPHABET];
+        int[] extensionAt = new int[maxNodes];
+        Arrays.fill(extensionAt, -1);
+        nodes = 1;
+        for (int e = 0; e < this.extensions.length; e++) {
+            String ext = this.extensions[e];
+            int node = 0;
+            for (int i = 0; i < ext.length(); i++) {
+                int slot = node * ALPHABET + ext.charAt(i);
+                if (children[slot] == 0) {
+                    children[slot] = nodes++;
+                }
+                node = children[slot];
+            }
+            extensionAt[node] = e;
+        }
+        this.prefixChildren = Arrays.copyOf(children, nodes * ALPHABET);
+        this.prefixExtension = Arrays.copyOf(extensionAt, nodes);
+
+        this.tokensByFirstChar = new String[ALPHABET][];
+        for (String token : this.contentTypes) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int first = token.charAt(0);
+            String[] group = tokensByFirstChar[first];
+            group = group == null ? new String[1] : Arrays.copyOf(group, group.length + 1);
+            group[group.length - 1] = token;
+            tokensByFirstChar[first] = group;
+        }
+    }
+
+    /**
+     * Check whether a URL names a scannable file: its path (before the first '?', or the first
+     * '#' if there is no query) ends with an extension, or the first occurrence of an extension
+     * in the URL is followed by '?', '#' or the end of the URL
+     */
+    public boolean hasScannableExtension(String url) {
+        if (url == null || url.isEmpty()) {
+            return false;
+        }
+        if (!isAscii(url)) {
+            return hasScannableExtensionSlow(url);
+        }
+        return pathEndsWithExtension(url) || extensionBeforeDelimiter(url);
+    }
+
+    /**
+     * Find the Content-Type token that makes a response scannable
+     * @return The matching token, or null if the Content-Type is not scannable
+     */
+    public String matchContentType(String contentType) {
+        if (contentType == null || contentType.isEmpty()) {
+            return null;
+        }
+        if (!isAscii(contentType)) {
+            return matchContentTypeSlow(contentType);
+        }
+        int length = contentType.length();
+        for (int i = 0; i < length; i++) {
+            String[] candidates = tokensByFirstChar[lower(contentType.charAt(i))];
+            if (candidates == null) {
+                continue;
+            }
+            for (String token : candidates) {
+                if (regionMatchesLower(contentType, i, token)) {
+                    return token;
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean isScannableContentType(String contentType) {
+        return matchContentType(contentType) != null;
+    }
+
+    private boolean pathEndsWithExtension(String url) {
+        int pathEnd = url.indexOf('?');
+        if (pathEnd < 0) {
+            pathEnd = url.indexOf('#');
+            if (pathEnd < 0) {
+                pathEnd = url.length();
+            }
+        }
+        int node = 0;
+        for (int i = pathEnd - 1; i >= 0; i--) {
+            node = suffixChildren[node * ALPHABET + lower(url.charAt(i))];
+            if (node == 0) {
+                return false;
+            }
+            if (suffixTerminal[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean extensionBeforeDelimiter(String url) {
+        int length = url.length();
+        // Extensions whose first occurrence has been seen; only that occurrence counts
+        long seen = 0;
+        for (int start = url.indexOf('.'); start >= 0; start = url.indexOf('.', start + 1)) {
+            int node = 0;
+            for (int i = start; i < length; i++) {
+                node = prefixChildren[node * ALPHABET + lower(url.charAt(i))];
+                if (node == 0) {
+                    break;
+                }
+                int ext = prefixExtension[node];
+                if (ext < 0) {
+                    continue;
+                }
+                long bit = 1L << ext;
+                if ((seen & bit) != 0) {
+                    continue;
+                }
+                seen |= bit;
+                int after = i + 1;
+                if (after >= length || url.charAt(after) == '?' || url.charAt(after) == '#') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatchesLower(String value, int offset, String token) {
+        int length = token.length();
+        if (offset + length > value.length()) {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            if (lower(value.charAt(offset + i)) != token.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lower(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= ALPHABET) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasScannableExtensionSlow(String url) {
+        url = url.toLowerCase(Locale.ROOT);
+        String urlPath = url;
+        int queryIndex = url.indexOf('?');
+        int hashIndex = url.indexOf('#');
+        if (queryIndex != -1) {
+            urlPath = url.substring(0, queryIndex);
+        } else if (hashIndex != -1) {
+            urlPath = url.substring(0, hashIndex);
+        }
+        for (String ext : extensions) {
+            if (urlPath.endsWith(ext)) {
+                return true;
+            }
+            int extIndex = url.indexOf(ext);
+            if (extIndex != -1) {
+                int afterExt = extIndex + ext.length();
+                if (afterExt >= url.length() || url.charAt(afterExt) == '?' || url.charAt(afterExt) == '#') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String matchContentTypeSlow(String contentType) {
+        String contentTypeLower = contentType.toLowerCase(Locale.ROOT);
+        for (String token : contentTypes) {
+            if (contentTypeLower.contains(token)) {
+                return token;
+            }
+        }
+        return null;
+    }
+}
@@ -3,14 +3,22 @@ package burp.util;
 import burp.api.montoya.logging.Logging;
 import burp.model.JsUrlEntry;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
 public class JsmonJsonParser {
+    private static final String[] TIMESTAMP_FIELDS = {"createdAt", "scannedAt", "lastScannedOn", "scannedOn", "timestamp", "time", "date"};
+    private static final Pattern ISO_DATE = Pattern.compile("[0-9]{4}-[0-9]{2}-[0-9]{2}T[0-9]{2}:[0-9]{2}:[0-9]{2}");
+    /** readStringFields key for the first ISO date value (the NUL keeps it apart from real member names) */
+    private static final String FIRST_DATE_FIELD = "\0firstDate";
+
     private final Logging logging;
     
     public JsmonJsonParser(Logging logging) {
@@ -79,144 +87,199 @@ public class JsmonJsonParser {
     }
     
     /**
-     * Extract counts from totalCountAnalysis JSON response
+     * Read counts from a streamed totalCountAnalysis response (every integer member, at any depth)
      */
-    public void extractCountsFromJson(String json, java.util.Map<String, Integer> counts) {
-        if (json == null || json.isEmpty()) {
-            return;
-        }
-        
-        try {
-            Pattern pattern = Pattern.compile("\"([^\"]+)\"\\s*:\\s*(\\d+)");
-            Matcher matcher = pattern.matcher(json);
-            
-            while (matcher.find()) {
-                String fieldName = matcher.group(1);
-                int count = Integer.parseInt(matcher.group(2));
-                counts.put(fieldName, count);
+    public void readCounts(Reader json, java.util.Map<String, Integer> counts) throws IOException {
+        JsmonJsonReader reader = new JsmonJsonReader(json);
+        String name = null;
+        for (JsmonJsonReader.Token token = reader.next(); token != JsmonJsonReader.Token.END_DOCUMENT; token = reader.next()) {
+            if (token == JsmonJsonReader.Token.NAME) {
+                name = reader.getText();
+                continue;
             }
-        } catch (Exception e) {
-            if (logging != null) {
-                logging.logToError("JSMon: Error parsing counts JSON: " + e.getMessage());
+            if (token == JsmonJsonReader.Token.NUMBER && name != null) {
+                try {
+                    counts.put(name, Integer.parseInt(reader.getText()));
+                } catch (NumberFormatException ignored) {
+                    // Not a count (fraction or out of range)
+                }
             }
+            name = null;
         }
     }
     
     /**
-     * Extract data objects from secrets response
+     * Read a batched upload response: a top-level array with one object per file, in request order.
+     * Every string, number or literal member of each object is returned as text (e.g. "status" -> "200").
+     * @return One map per file, or null if the response is not an array of objects
      */
-    public List<String> extractDataObjects(String json) {
-        List<String> objects = new ArrayList<>();
-        if (json == null || json.isEmpty()) {
-            return objects;
+    public List<java.util.Map<String, String>> readUploadResults(Reader json) throws IOException {
+        JsmonJsonReader reader = new JsmonJsonReader(json);
+        if (reader.next() != JsmonJsonReader.Token.BEGIN_ARRAY) {
+            return null;
         }
-
-        int dataIndex = json.indexOf("\"data\"");
-        if (dataIndex == -1) {
-            return objects;
+        List<java.util.Map<String, String>> results = new ArrayList<>();
+        for (JsmonJsonReader.Token token = reader.next(); token != JsmonJsonReader.Token.END_ARRAY; token = reader.next()) {
+            if (token != JsmonJsonReader.Token.BEGIN_OBJECT) {
+                return null;
+            }
+            java.util.Map<String, String> fields = new java.util.HashMap<>();
+            int objectDepth = reader.getDepth();
+            String name = null;
+            while (true) {
+                JsmonJsonReader.Token member = reader.next();
+                if (reader.getDepth() < objectDepth) {
+                    break;
+                }
+                if (member == JsmonJsonReader.Token.NAME) {
+                    name = reader.getText();
+                    continue;
+                }
+                if (name != null && (member == JsmonJsonReader.Token.STRING || member == JsmonJsonReader.Token.NUMBER
+                        || member == JsmonJsonReader.Token.LITERAL)) {
+                    fields.putIfAbsent(name, reader.getText());
+                } else {
+                    reader.skipValue(member);
+                }
+                name = null;
+            }
+            results.add(fields);
         }
-        int arrayStart = json.indexOf("[", dataIndex);
-        if (arrayStart == -1) {
-            return objects;
+        return results;
+    }
+    
+    /**
+     * Read the "data" array of a streamed secrets response, passing each object on as raw JSON
+     * as soon as it has been read
+     */
+    public void readDataObjects(Reader json, Consumer<String> objects) throws IOException {
+        JsmonJsonReader reader = new JsmonJsonReader(json);
+        if (!seekDataArray(reader)) {
+            return;
         }
-        int arrayEnd = json.indexOf("]", arrayStart);
-        if (arrayEnd == -1) {
-            return objects;
+        int arrayDepth = reader.getDepth();
+        while (true) {
+            JsmonJsonReader.Token token = reader.next();
+            if (reader.getDepth() < arrayDepth || token == JsmonJsonReader.Token.END_DOCUMENT) {
+                return;
+            }
+            if (token == JsmonJsonReader.Token.BEGIN_OBJECT) {
+                objects.accept(reader.readRaw(token));
+            } else {
+                reader.skipValue(token);
+            }
         }
-
-        String arrayContent = json.substring(arrayStart + 1, arrayEnd);
-        objects.addAll(splitJsonObjects(arrayContent));
-        return objects;
     }
     
     /**
-     * Extract JS URLs from intelligence API response
+     * Read JS URLs (or other intelligence values) from a streamed intelligence API response.
+     * The "data" array holds either plain strings or objects with a "value" and a timestamp.
      */
-    public List<JsUrlEntry> extractJsUrlsFromResponse(String json) {
-        List<JsUrlEntry> entries = new ArrayList<>();
-        if (json == null || json.isEmpty()) {
-            return entries;
+    public void readJsUrls(Reader json, Consumer<JsUrlEntry> entries) throws IOException {
+        JsmonJsonReader reader = new JsmonJsonReader(json);
+        if (!seekDataArray(reader)) {
+            return;
         }
-        
-        try {
-            int dataIndex = json.indexOf("\"data\"");
-            if (dataIndex == -1) {
-                return entries;
+        String fetchTimeStr = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        boolean sampleLogged = false;
+        int arrayDepth = reader.getDepth();
+        while (true) {
+            JsmonJsonReader.Token token = reader.next();
+            if (reader.getDepth() < arrayDepth || token == JsmonJsonReader.Token.END_DOCUMENT) {
+                return;
             }
-            
-            int arrayStart = json.indexOf("[", dataIndex);
-            if (arrayStart == -1) {
-                return entries;
+            if (token == JsmonJsonReader.Token.STRING) {
+                String url = reader.getText();
+                if (!url.isEmpty()) {
+                    entries.accept(new JsUrlEntry(url, fetchTimeStr));
+                }
+                continue;
             }
-            
-            int arrayEnd = json.lastIndexOf("]");
-            if (arrayEnd == -1 || arrayEnd <= arrayStart) {
-                return entries;
+            if (token != JsmonJsonReader.Token.BEGIN_OBJECT) {
+                reader.skipValue(token);
+                continue;
             }
-            
-            String arrayContent = json.substring(arrayStart + 1, arrayEnd).trim();
-            
-            if (arrayContent.startsWith("\"") && !arrayContent.contains("{")) {
-                // Simple string array
-                Pattern stringPattern = Pattern.compile("\"([^\"]+)\"");
-                Matcher stringMatcher = stringPattern.matcher(arrayContent);
-                LocalDateTime fetchTime = LocalDateTime.now();
-                String fetchTimeStr = fetchTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                while (stringMatcher.find()) {
-                    String url = stringMatcher.group(1);
-                    if (url != null && !url.isEmpty()) {
-                        entries.add(new JsUrlEntry(url, fetchTimeStr));
-                    }
-                }
+
+            java.util.Map<String, String> fields;
+            if (!sampleLogged && logging != null) {
+                String sample = reader.readRaw(token);
+                logging.logToOutput("JSMon: Sample object from intelligence API: " + sample.substring(0, Math.min(300, sample.length())));
+                sampleLogged = true;
+                JsmonJsonReader sampleReader = new JsmonJsonReader(new java.io.StringReader(sample));
+                fields = readStringFields(sampleReader, sampleReader.next());
             } else {
-                // Array of objects
-                List<String> objects = splitJsonObjects(arrayContent);
-                
-                if (!objects.isEmpty() && logging != null) {
-                    String sample = objects.get(0);
-                    logging.logToOutput("JSMon: Sample object from intelligence API: " + sample.substring(0, Math.min(300, sample.length())));
+                fields = readStringFields(reader, token);
+            }
+
+            String url = fields.get("value");
+            if (url == null || url.isEmpty()) {
+                continue;
+            }
+            String timestamp = null;
+            for (String field : TIMESTAMP_FIELDS) {
+                timestamp = fields.get(field);
+                if (timestamp != null && !timestamp.isEmpty() && !timestamp.equals("null")) {
+                    break;
                 }
-                
-                for (String obj : objects) {
-                    String url = extractJsonFieldSimple(obj, "value");
-                    
-                    if (url != null && !url.isEmpty()) {
-                        String timestamp = null;
-                        String[] timestampFields = {"createdAt", "scannedAt", "lastScannedOn", "scannedOn", "timestamp", "time", "date"};
-                        
-                        for (String field : timestampFields) {
-                            timestamp = extractJsonFieldSimple(obj, field);
-                            if (timestamp != null && !timestamp.isEmpty() && !timestamp.equals("null")) {
-                                break;
-                            }
-                        }
-                        
-                        if (timestamp == null || timestamp.isEmpty() || timestamp.equals("null")) {
-                            Pattern datePattern = Pattern.compile("\"([^\"]+)\"\\s*:\\s*\"([0-9]{4}-[0-9]{2}-[0-9]{2}T[0-9]{2}:[0-9]{2}:[0-9]{2}[^\"]*)\"");
-                            Matcher dateMatcher = datePattern.matcher(obj);
-                            if (dateMatcher.find()) {
-                                timestamp = dateMatcher.group(2);
-                            }
-                        }
-                        
-                        String formattedTime;
-                        if (timestamp == null || timestamp.isEmpty() || timestamp.equals("null")) {
-                            LocalDateTime now = LocalDateTime.now();
-                            formattedTime = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                        } else {
-                            formattedTime = formatTimestamp(timestamp);
-                        }
-                        entries.add(new JsUrlEntry(url, formattedTime));
-                    }
+            }
+            if (timestamp == null || timestamp.isEmpty() || timestamp.equals("null")) {
+                timestamp = fields.get(FIRST_DATE_FIELD);
+            }
+
+            String formattedTime;
+            if (timestamp == null || timestamp.isEmpty() || timestamp.equals("null")) {
+                formattedTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+            } else {
+                formattedTime = formatTimestamp(timestamp);
+            }
+            entries.accept(new JsUrlEntry(url, formattedTime));
+        }
+    }
+    
+    /**
+     * Move the reader to just inside the first "data" array
+     * @return false if the response has none
+     */
+    private boolean seekDataArray(JsmonJsonReader reader) throws IOException {
+        for (JsmonJsonReader.Token token = reader.next(); token != JsmonJsonReader.Token.END_DOCUMENT; token = reader.next()) {
+            if (token == JsmonJsonReader.Token.NAME && reader.getText().equals("data")) {
+                JsmonJsonReader.Token value = reader.next();
+                if (value == JsmonJsonReader.Token.BEGIN_ARRAY) {
+                    return true;
                 }
+                reader.skipValue(value);
             }
-        } catch (Exception e) {
-            if (logging != null) {
-                logging.logToError("JSMon: Error parsing JS URLs from response: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    /**
+     * Collect the string members of the object just begun, at any depth (first occurrence of a
+     * name wins). The first ISO date value is also kept under {@link #FIRST_DATE_FIELD}.
+     */
+    private java.util.Map<String, String> readStringFields(JsmonJsonReader reader, JsmonJsonReader.Token begin) throws IOException {
+        java.util.Map<String, String> fields = new java.util.HashMap<>();
+        int objectDepth = reader.getDepth();
+        String name = null;
+        while (reader.getDepth() >= objectDepth) {
+            JsmonJsonReader.Token token = reader.next();
+            if (token == JsmonJsonReader.Token.END_DOCUMENT) {
+                break;
+            }
+            if (token == JsmonJsonReader.Token.NAME) {
+                name = reader.getText();
+                continue;
             }
+            if (token == JsmonJsonReader.Token.STRING && name != null) {
+                String value = reader.getText();
+                fields.putIfAbsent(name, value);
+                if (ISO_DATE.matcher(value).lookingAt()) {
+                    fields.putIfAbsent(FIRST_DATE_FIELD, value);
+                }
+            }
+            name = null;
         }
-        
-        return entries;
+        return fields;
     }
     
     /**
@@ -268,13 +331,7 @@ public class JsmonJsonParser {
      * Escape JSON string
      */
     public String jsonEscape(String value) {
-        if (value == null) return "";
-        return value
-                .replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+        return JsmonJsonWriter.escape(value);
     }
 }
 
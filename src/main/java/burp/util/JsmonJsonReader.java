@@ -0,0 +1,228 @@
+package burp.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull parser that reads JSON tokens from a stream one at a time, so large API responses are
+ * consumed record by record instead of being held in memory as one String.
+ *
+ * Only the current token's text is buffered. {@link #readRaw(Token)} copies a single object or
+ * array verbatim when a caller needs it as text.
+ */
+public final class JsmonJsonReader implements Closeable {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, LITERAL, END_DOCUMENT
+    }
+
+    private static final int MAX_DEPTH = 256;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+
+    /** Open containers: '{' or '[' */
+    private final char[] stack = new char[MAX_DEPTH];
+    private int depth;
+    private boolean expectName;
+
+    private final StringBuilder text = new StringBuilder();
+    /** Raw copy of consumed characters while {@link #readRaw(Token)} runs, otherwise null */
+    private StringBuilder capture;
+
+    public JsmonJsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Advance to the next token
+     * @throws IOException on read errors or malformed JSON
+     */
+    public Token next() throws IOException {
+        while (true) {
+            int c = nextNonWhitespace();
+            switch (c) {
+                case -1:
+                    if (depth != 0) {
+                        throw new IOException("Unexpected end of JSON");
+                    }
+                    return Token.END_DOCUMENT;
+                case ',':
+                    expectName = depth > 0 && stack[depth - 1] == '{';
+                    continue;
+                case ':':
+                    continue;
+                case '{':
+                    push('{');
+                    expectName = true;
+                    return Token.BEGIN_OBJECT;
+                case '[':
+                    push('[');
+                    expectName = false;
+                    return Token.BEGIN_ARRAY;
+                case '}':
+                case ']':
+                    if (depth == 0 || stack[depth - 1] != (c == '}' ? '{' : '[')) {
+                        throw new IOException("Unbalanced '" + (char) c + "' in JSON");
+                    }
+                    depth--;
+                    expectName = false;
+                    return c == '}' ? Token.END_OBJECT : Token.END_ARRAY;
+                case '"':
+                    readString();
+                    if (expectName) {
+                        expectName = false;
+                        return Token.NAME;
+                    }
+                    return Token.STRING;
+                default:
+                    readLiteral((char) c);
+                    return c == '-' || (c >= '0' && c <= '9') ? Token.NUMBER : Token.LITERAL;
+            }
+        }
+    }
+
+    /**
+     * Text of the last NAME, STRING, NUMBER or LITERAL token (strings are unescaped)
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Number of containers currently open
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * If the token just returned began an object or array, skip to its matching end
+     */
+    public void skipValue(Token current) throws IOException {
+        if (current == Token.BEGIN_OBJECT || current == Token.BEGIN_ARRAY) {
+            int target = depth - 1;
+            while (depth > target) {
+                if (next() == Token.END_DOCUMENT) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the object or array whose BEGIN token was just returned, up to its matching end
+     * @return Raw JSON text of the container
+     */
+    public String readRaw(Token current) throws IOException {
+        char open = current == Token.BEGIN_OBJECT ? '{' : '[';
+        capture = new StringBuilder().append(open);
+        try {
+            skipValue(current);
+            return capture.toString();
+        } finally {
+            capture = null;
+        }
+    }
+
+    private void push(char container) throws IOException {
+        if (depth == MAX_DEPTH) {
+            throw new IOException("JSON nested too deeply");
+        }
+        stack[depth++] = container;
+    }
+
+    private void readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated string in JSON");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c != '\\') {
+                text.append((char) c);
+                continue;
+            }
+            int escaped = read();
+            switch (escaped) {
+                case 'n': text.append('\n'); break;
+                case 'r': text.append('\r'); break;
+                case 't': text.append('\t'); break;
+                case 'b': text.append('\b'); break;
+                case 'f': text.append('\f'); break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw new IOException("Bad \\u escape in JSON");
+                        }
+                        code = code << 4 | digit;
+                    }
+                    text.append((char) code);
+                    break;
+                case -1:
+                    throw new IOException("Unterminated string in JSON");
+                default:
+                    // \" \\ \/
+                    text.append((char) escaped);
+            }
+        }
+    }
+
+    private void readLiteral(char first) throws IOException {
+        text.setLength(0);
+        text.append(first);
+        while (true) {
+            if (position == limit && !fill()) {
+                return;
+            }
+            char c = buffer[position];
+            if (c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c)) {
+                return;
+            }
+            read();
+            text.append(c);
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && Character.isWhitespace(c));
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (capture != null) {
+            capture.append(c);
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,242 @@
+package burp.util;
+
+import java.util.Arrays;
+
+/**
+ * Minimal JSON writer that escapes and UTF-8 encodes in one pass, straight into a byte buffer.
+ *
+ * Used for upload payloads so no intermediate Strings are built per header. Each thread keeps
+ * one writer whose buffer is reused between payloads ({@link #reusable()}); only the final
+ * {@link #toByteArray()} copy is allocated per payload.
+ */
+public final class JsmonJsonWriter {
+
+    private static final int INITIAL_CAPACITY = 4096;
+    /** Buffers grown beyond this are dropped on reuse instead of being kept by the thread */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+    private static final int MAX_DEPTH = 64;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private static final ThreadLocal<JsmonJsonWriter> POOL = ThreadLocal.withInitial(JsmonJsonWriter::new);
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+    /** Per nesting level: whether the next value needs a comma before it */
+    private final boolean[] needsComma = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    public JsmonJsonWriter() {
+    }
+
+    /**
+     * This thread's writer, emptied. Do not hold on to it across calls that may also use it.
+     */
+    public static JsmonJsonWriter reusable() {
+        JsmonJsonWriter writer = POOL.get();
+        writer.reset();
+        return writer;
+    }
+
+    public void reset() {
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        size = 0;
+        depth = 0;
+        afterName = false;
+        needsComma[0] = false;
+    }
+
+    public JsmonJsonWriter beginObject() {
+        return open('{');
+    }
+
+    public JsmonJsonWriter endObject() {
+        return close('}');
+    }
+
+    public JsmonJsonWriter beginArray() {
+        return open('[');
+    }
+
+    public JsmonJsonWriter endArray() {
+        return close(']');
+    }
+
+    /**
+     * Write an object member name; the next call writes its value
+     */
+    public JsmonJsonWriter name(String name) {
+        separate();
+        writeString(name);
+        write((byte) ':');
+        afterName = true;
+        return this;
+    }
+
+    public JsmonJsonWriter value(String value) {
+        separate();
+        writeString(value);
+        return this;
+    }
+
+    private JsmonJsonWriter open(char bracket) {
+        separate();
+        if (depth + 1 >= MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested too deeply");
+        }
+        write((byte) bracket);
+        needsComma[++depth] = false;
+        return this;
+    }
+
+    private JsmonJsonWriter close(char bracket) {
+        if (depth == 0) {
+            throw new IllegalStateException("Unbalanced " + bracket);
+        }
+        depth--;
+        write((byte) bracket);
+        return this;
+    }
+
+    private void separate() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (needsComma[depth]) {
+            write((byte) ',');
+        }
+        needsComma[depth] = true;
+    }
+
+    private void writeString(String value) {
+        write((byte) '"');
+        if (value != null) {
+            escapeInto(value);
+        }
+        write((byte) '"');
+    }
+
+    /**
+     * Escape and UTF-8 encode a string (without quotes) in a single pass
+     */
+    private void escapeInto(String value) {
+        int length = value.length();
+        // Worst case is 6 bytes per char (\\u001f); grow once up front for typical input
+        ensureCapacity(length * 3);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    ensureCapacity(2);
+                    buffer[size++] = '\\';
+                }
+                write((byte) c);
+            } else if (c < 0x20) {
+                writeControl(c);
+            } else if (c < 0x800) {
+                ensureCapacity(2);
+                buffer[size++] = (byte) (0xc0 | c >> 6);
+                buffer[size++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensureCapacity(4);
+                buffer[size++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, replaced as String.getBytes(UTF_8) does
+                write((byte) '?');
+            } else {
+                ensureCapacity(3);
+                buffer[size++] = (byte) (0xe0 | c >> 12);
+                buffer[size++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[size++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+    }
+
+    private void writeControl(char c) {
+        ensureCapacity(6);
+        buffer[size++] = '\\';
+        switch (c) {
+            case '\n': buffer[size++] = 'n'; break;
+            case '\r': buffer[size++] = 'r'; break;
+            case '\t': buffer[size++] = 't'; break;
+            case '\b': buffer[size++] = 'b'; break;
+            case '\f': buffer[size++] = 'f'; break;
+            default:
+                buffer[size++] = 'u';
+                buffer[size++] = '0';
+                buffer[size++] = '0';
+                buffer[size++] = HEX[c >> 4];
+                buffer[size++] = HEX[c & 0xf];
+        }
+    }
+
+    /**
+     * Escape a string for embedding in a JSON string literal (one pass, returns the input if nothing needs escaping)
+     */
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                break;
+            }
+            i++;
+        }
+        if (i == length) {
+            return value;
+        }
+        StringBuilder escaped = new StringBuilder(length + 16).append(value, 0, i);
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': escaped.append("\\\""); break;
+                case '\\': escaped.append("\\\\"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\b': escaped.append("\\b"); break;
+                case '\f': escaped.append("\\f"); break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append("\\u00").append((char) HEX[c >> 4]).append((char) HEX[c & 0xf]);
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+
+    private void write(byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copy of the bytes written so far
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+}
@@ -0,0 +1,148 @@
+package burp.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Measures the live handler's arrival rate and time per response in one-second windows and
+ * switches to a degraded (shedding) mode when either gets too high: more responses per second
+ * than the configured threshold, or the handler keeping more than half a CPU core busy.
+ * Shedding ends after several consecutive calm windows so the mode does not flap.
+ */
+public class JsmonLoadShedder {
+
+    public static final int DEFAULT_THRESHOLD_PER_SECOND = 500;
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    /** Handler busy time per window (as a fraction of one core) that triggers shedding */
+    private static final double BUSY_FRACTION_LIMIT = 0.5;
+    /** Load must drop below this fraction of both limits to count as calm */
+    private static final double RECOVERY_FACTOR = 0.7;
+    private static final int RECOVERY_WINDOWS = 3;
+
+    private final Consumer<Boolean> modeListener;
+    private volatile int thresholdPerSecond;
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final LongAdder windowArrivals = new LongAdder();
+    private final LongAdder windowBusyNanos = new LongAdder();
+
+    private volatile boolean shedding;
+    private volatile double arrivalRate;
+    private volatile long averageNanos;
+    private int calmWindows;
+
+    private final LongAdder shedCount = new LongAdder();
+    private final AtomicLong modeSwitches = new AtomicLong();
+
+    /**
+     * @param thresholdPerSecond Arrival rate that triggers shedding (0 disables shedding)
+     * @param modeListener       Called with true when shedding starts and false when it ends (may be null)
+     */
+    public JsmonLoadShedder(int thresholdPerSecond, Consumer<Boolean> modeListener) {
+        this.thresholdPerSecond = Math.max(0, thresholdPerSecond);
+        this.modeListener = modeListener;
+    }
+
+    /**
+     * Record an arriving response
+     * @return true if the response should take the degraded path
+     */
+    public boolean onArrival() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            closeWindow(now - start);
+        }
+        windowArrivals.increment();
+        if (shedding) {
+            shedCount.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record how long the handler spent on one response
+     */
+    public void onCompleted(long elapsedNanos) {
+        windowBusyNanos.add(elapsedNanos);
+    }
+
+    /**
+     * Only one thread closes a given window (guarded by the compareAndSet in onArrival)
+     */
+    private void closeWindow(long elapsedNanos) {
+        long arrivals = windowArrivals.sumThenReset();
+        long busyNanos = windowBusyNanos.sumThenReset();
+        arrivalRate = arrivals * (double) WINDOW_NANOS / elapsedNanos;
+        averageNanos = arrivals > 0 ? busyNanos / arrivals : 0;
+
+        int threshold = thresholdPerSecond;
+        if (threshold <= 0) {
+            calmWindows = 0;
+            switchMode(false);
+            return;
+        }
+
+        double busyFraction = (double) busyNanos / elapsedNanos;
+        if (!shedding) {
+            if (arrivalRate > threshold || busyFraction > BUSY_FRACTION_LIMIT) {
+                calmWindows = 0;
+                switchMode(true);
+            }
+        } else if (arrivalRate < threshold * RECOVERY_FACTOR && busyFraction < BUSY_FRACTION_LIMIT * RECOVERY_FACTOR) {
+            if (++calmWindows >= RECOVERY_WINDOWS) {
+                switchMode(false);
+            }
+        } else {
+            calmWindows = 0;
+        }
+    }
+
+    private void switchMode(boolean shed) {
+        if (shedding == shed) {
+            return;
+        }
+        shedding = shed;
+        modeSwitches.incrementAndGet();
+        if (modeListener != null) {
+            modeListener.accept(shed);
+        }
+    }
+
+    public void setThresholdPerSecond(int thresholdPerSecond) {
+        this.thresholdPerSecond = Math.max(0, thresholdPerSecond);
+    }
+
+    public int getThresholdPerSecond() {
+        return thresholdPerSecond;
+    }
+
+    public boolean isShedding() {
+        return shedding;
+    }
+
+    /**
+     * Responses per second in the last completed window
+     */
+    public double getArrivalRate() {
+        return arrivalRate;
+    }
+
+    /**
+     * Average handler time per response in the last completed window
+     */
+    public long getAverageNanos() {
+        return averageNanos;
+    }
+
+    public long getShedCount() {
+        return shedCount.sum();
+    }
+
+    public long getModeSwitches() {
+        return modeSwitches.get();
+    }
+}
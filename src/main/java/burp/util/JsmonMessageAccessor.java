@@ -0,0 +1,79 @@
+package burp.util;
+
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.HttpMessage;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.proxy.ProxyHttpRequestResponse;
+
+/**
+ * Header and request/response access for live responses and proxy history entries.
+ * The access strategy is resolved once when the class loads; every call afterwards
+ * is a plain interface call with no reflection.
+ */
+public final class JsmonMessageAccessor {
+
+    /**
+     * True when the loaded Montoya API exposes HttpMessage.headerValue(String).
+     * Older Burp builds only have headers(), so we fall back to scanning the list.
+     */
+    private static final boolean HAS_HEADER_VALUE = resolveHeaderValueSupport();
+
+    private JsmonMessageAccessor() {
+    }
+
+    private static boolean resolveHeaderValueSupport() {
+        try {
+            HttpMessage.class.getMethod("headerValue", String.class);
+            return true;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get a header value (case-insensitive name match), or null if absent
+     */
+    public static String headerValue(HttpMessage message, String name) {
+        if (message == null) {
+            return null;
+        }
+        if (HAS_HEADER_VALUE) {
+            return message.headerValue(name);
+        }
+        for (HttpHeader header : message.headers()) {
+            if (name.equalsIgnoreCase(header.name())) {
+                return header.value();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the Content-Type header of a response, or null if absent
+     */
+    public static String contentType(HttpResponse response) {
+        return headerValue(response, "Content-Type");
+    }
+
+    /**
+     * Get the request that was actually sent for a proxy history entry
+     */
+    public static HttpRequest request(ProxyHttpRequestResponse entry) {
+        return entry != null ? entry.finalRequest() : null;
+    }
+
+    /**
+     * Get the response received for a proxy history entry, or null if none was received
+     */
+    public static HttpResponse response(ProxyHttpRequestResponse entry) {
+        return entry != null ? entry.originalResponse() : null;
+    }
+
+    /**
+     * Get the Content-Type header of a proxy history entry's response, or null if absent
+     */
+    public static String contentType(ProxyHttpRequestResponse entry) {
+        return contentType(response(entry));
+    }
+}
@@ -0,0 +1,545 @@
+package burp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of uploads that were discovered but not finished,
+ * so they survive an extension reload or a Burp restart.
+ *
+ * Each record is {@code [length][type][payload][crc32]}; PENDING adds a file, ATTEMPT counts a
+ * failed run and DONE removes it. On open the records are replayed up to the first torn or
+ * corrupt one, which is where the previous process stopped writing. Writes go to a mapped
+ * buffer, so they reach the OS as soon as they are made and survive a crash of Burp itself.
+ *
+ * Two files take turns: compaction writes the live entries to the idle file under a higher
+ * generation number, then invalidates the old one. Nothing is renamed or truncated while
+ * mapped, which Windows would refuse.
+ *
+ * Only the headers needed to replay an upload are kept (see {@link #REPLAY_HEADERS}); cookies
+ * and authorization headers never reach the disk. The directory and files are readable by the
+ * owner only, and a lock file keeps a second Burp process or project from mapping the same
+ * journal while it is open.
+ */
+public class JsmonOutboundJournal {
+
+    /** Size of each journal file */
+    public static final int CAPACITY_BYTES = 8 * 1024 * 1024;
+
+    private static final int MAGIC = 0x4A534A4C; // "JSJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    /** Longest header block kept per entry; larger ones are cut at a line boundary */
+    private static final int MAX_HEADERS_CHARS = 8 * 1024;
+
+    /** Lower-case names of the request headers kept for replay */
+    private static final Set<String> REPLAY_HEADERS = new HashSet<>(Arrays.asList(
+            "user-agent", "accept", "accept-language", "referer", "origin"));
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private static final byte PENDING = 1;
+    private static final byte ATTEMPT = 2;
+    private static final byte DONE = 3;
+
+    private final Path[] files;
+    private final FileChannel lockChannel;
+    private MappedByteBuffer buffer;
+    private int activeFile;
+    private long generation;
+
+    private final Map<String, Entry> live = new LinkedHashMap<>();
+    private long liveBytes;
+    private boolean full;
+    private long compactions;
+    /** Set while replaying if an older record held headers that are no longer kept */
+    private boolean scrubbed;
+
+    /**
+     * Open (or create) the journal in a directory and replay it
+     * @throws IOException if the journal files cannot be created or mapped, or another
+     *                     Burp process or project already has the journal open
+     */
+    public JsmonOutboundJournal(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        ownerOnly(directory, "rwx------");
+        this.lockChannel = lock(directory.resolve("journal.lock"));
+        this.files = new Path[] {
+                directory.resolve("outbound-a.journal"),
+                directory.resolve("outbound-b.journal")
+        };
+
+        try {
+            // The valid file with the highest generation is current
+            long[] generations = {readGeneration(files[0]), readGeneration(files[1])};
+            activeFile = generations[1] > generations[0] ? 1 : 0;
+            generation = Math.max(0, generations[activeFile]);
+            buffer = map(files[activeFile]);
+            if (generations[activeFile] < 0) {
+                writeHeader(buffer, generation);
+            }
+            replay();
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+        // Start each session without the records of files finished last time
+        if (scrubbed) {
+            // Also overwrite the old file, which still holds the headers that were dropped
+            MappedByteBuffer old = buffer;
+            int oldEnd = old.position();
+            compact();
+            if (buffer != old) {
+                wipe(old, oldEnd);
+            }
+        } else if (buffer.position() - HEADER_BYTES > liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * ~/.jsmon-burp, where the extension keeps files that outlive a Burp project
+     */
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".jsmon-burp");
+    }
+
+    /**
+     * Hold the directory's lock file for as long as this journal is open
+     */
+    private static FileChannel lock(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        ownerOnly(file, "rw-------");
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another extension instance in this JVM
+            lock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("journal in " + file.getParent() + " is in use by another Burp process or project");
+        }
+        return channel;
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ownerOnly(file, "rw-------");
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, CAPACITY_BYTES);
+        }
+    }
+
+    /**
+     * Restrict a journal path to its owner (also fixes files created by earlier versions)
+     */
+    private static void ownerOnly(Path path, String permissions) throws IOException {
+        if (POSIX) {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(permissions));
+        }
+    }
+
+    /**
+     * @return The file's generation, or -1 if it is missing or has no valid header
+     */
+    private static long readGeneration(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_BYTES) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Keep reading until the header is complete
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return -1;
+            }
+            return header.getLong();
+        }
+    }
+
+    private static void writeHeader(MappedByteBuffer target, long generation) {
+        target.clear();
+        target.putInt(MAGIC).putInt(VERSION).putLong(generation);
+    }
+
+    private void replay() {
+        buffer.position(HEADER_BYTES);
+        while (buffer.remaining() >= 9) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining() - 5) {
+                buffer.position(start);
+                break;
+            }
+            byte type = buffer.get();
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            int crc = buffer.getInt();
+            if (crc != checksum(type, payload)) {
+                buffer.position(start);
+                break;
+            }
+            try {
+                apply(type, payload, buffer.position() - start);
+            } catch (IOException e) {
+                buffer.position(start);
+                break;
+            }
+        }
+        // Anything after the last good record is from an interrupted write
+        clearFrom(buffer.position());
+    }
+
+    private void apply(byte type, byte[] payload, int recordBytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String key = in.readUTF();
+        switch (type) {
+            case PENDING:
+                String url = in.readUTF();
+                String workspaceId = in.readUTF();
+                String stored = in.readUTF();
+                String headers = replayHeaders(stored);
+                if (!headers.equals(stored)) {
+                    scrubbed = true;
+                }
+                Entry entry = new Entry(key, url, workspaceId, headers, in.readInt(), recordBytes);
+                Entry previous = live.put(key, entry);
+                liveBytes += recordBytes - (previous != null ? previous.recordBytes : 0);
+                break;
+            case ATTEMPT:
+                Entry attempted = live.get(key);
+                if (attempted != null) {
+                    attempted.attempts++;
+                }
+                break;
+            case DONE:
+                Entry done = live.remove(key);
+                if (done != null) {
+                    liveBytes -= done.recordBytes;
+                }
+                break;
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    /**
+     * Zero the records of a file that is no longer current
+     */
+    private static void wipe(MappedByteBuffer target, int end) {
+        for (int i = HEADER_BYTES; i < end; i++) {
+            target.put(i, (byte) 0);
+        }
+        target.force();
+    }
+
+    private void clearFrom(int position) {
+        int end = Math.min(buffer.capacity(), position + 4);
+        for (int i = position; i < end; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * Record a file that still has to be uploaded (no-op if it is already pending)
+     * @param headers Request headers as "Name: value" lines; only {@link #REPLAY_HEADERS} are kept
+     */
+    public synchronized void append(String key, String url, String workspaceId, String headers) {
+        if (live.containsKey(key)) {
+            return;
+        }
+        String kept = replayHeaders(headers);
+        byte[] payload = payload(key, url, workspaceId != null ? workspaceId : "", kept, 0);
+        if (payload == null) {
+            return;
+        }
+        int recordBytes = write(PENDING, payload);
+        if (recordBytes > 0) {
+            live.put(key, new Entry(key, url, workspaceId, kept, 0, recordBytes));
+            liveBytes += recordBytes;
+        }
+    }
+
+    /**
+     * Count a failed upload run for a pending file
+     */
+    public synchronized void attempt(String key) {
+        Entry entry = live.get(key);
+        byte[] payload = payload(key);
+        if (entry != null && payload != null && write(ATTEMPT, payload) > 0) {
+            entry.attempts++;
+        }
+    }
+
+    /**
+     * Remove a file from the journal (uploaded, rejected for good, or dropped)
+     */
+    public synchronized void complete(String key) {
+        Entry entry = live.get(key);
+        byte[] payload = payload(key);
+        if (entry != null && payload != null && write(DONE, payload) > 0) {
+            live.remove(key);
+            liveBytes -= entry.recordBytes;
+            // Periodic compaction: once a quarter of the file is used and most of it is finished work
+            int used = buffer.position() - HEADER_BYTES;
+            if (used > CAPACITY_BYTES / 4 && liveBytes < used / 4) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Files still pending, oldest first
+     */
+    public synchronized List<Entry> getPending() {
+        return new ArrayList<>(live.values());
+    }
+
+    public synchronized int getPendingCount() {
+        return live.size();
+    }
+
+    /**
+     * Append a record, compacting first if the file is full
+     * @return Record size, or 0 if it did not fit even after compaction
+     */
+    private int write(byte type, byte[] payload) {
+        int recordBytes = 4 + 1 + payload.length + 4;
+        if (buffer.remaining() < recordBytes + 4) {
+            compact();
+            if (buffer.remaining() < recordBytes + 4) {
+                full = true;
+                return 0;
+            }
+        }
+        full = false;
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(type).put(payload).putInt(checksum(type, payload));
+        // Mark the next slot as the end before publishing this record's length
+        if (buffer.remaining() >= 4) {
+            buffer.putInt(buffer.position(), 0);
+        }
+        buffer.putInt(start, payload.length);
+        return recordBytes;
+    }
+
+    /**
+     * Rewrite the live entries into the idle file and switch to it
+     */
+    private void compact() {
+        int target = 1 - activeFile;
+        MappedByteBuffer compacted;
+        try {
+            compacted = map(files[target]);
+        } catch (IOException e) {
+            return;
+        }
+        // Invalidate first so a crash mid-copy falls back to the old file
+        compacted.putInt(0, 0);
+        compacted.position(HEADER_BYTES);
+        Iterator<Entry> entries = live.values().iterator();
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            byte[] payload = payload(entry.key, entry.url, entry.workspaceId != null ? entry.workspaceId : "",
+                    entry.headers, entry.attempts);
+            if (payload == null || compacted.remaining() < payload.length + 13) {
+                // Does not fit: the file is full of live entries, the newest are given up
+                entries.remove();
+                full = true;
+                continue;
+            }
+            int start = compacted.position();
+            compacted.putInt(payload.length).put(PENDING).put(payload).putInt(checksum(PENDING, payload));
+            entry.recordBytes = compacted.position() - start;
+        }
+        int end = compacted.position();
+        if (compacted.remaining() >= 4) {
+            compacted.putInt(end, 0);
+        }
+        compacted.force();
+
+        long nextGeneration = generation + 1;
+        compacted.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, nextGeneration);
+        compacted.force();
+        buffer.putInt(0, 0);
+        buffer.force();
+
+        buffer = compacted;
+        buffer.position(end);
+        activeFile = target;
+        generation = nextGeneration;
+        liveBytes = end - HEADER_BYTES;
+        compactions++;
+    }
+
+    /**
+     * Push written records to disk (called on unload)
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Flush and release the lock so another session can open the journal (called on unload)
+     */
+    public synchronized void close() {
+        buffer.force();
+        try {
+            lockChannel.close();
+        } catch (IOException e) {
+            // The lock goes away with the process anyway
+        }
+    }
+
+    public synchronized boolean isFull() {
+        return full;
+    }
+
+    /**
+     * "N pending, N KB used, N compactions" summary for the stats panel
+     */
+    public synchronized String getSummary() {
+        return live.size() + " pending, " + buffer.position() / 1024 + "/" + CAPACITY_BYTES / 1024 + " KB used, "
+                + compactions + " compactions" + (full ? " (FULL)" : "");
+    }
+
+    /**
+     * Keep only the {@link #REPLAY_HEADERS} lines, cut at a line boundary to {@link #MAX_HEADERS_CHARS}
+     */
+    static String replayHeaders(String headers) {
+        if (headers == null || headers.isEmpty()) {
+            return "";
+        }
+        StringBuilder kept = new StringBuilder();
+        int start = 0;
+        while (start < headers.length()) {
+            int end = headers.indexOf('\n', start);
+            if (end < 0) {
+                end = headers.length();
+            }
+            int colon = headers.indexOf(':', start);
+            if (colon > start && colon < end
+                    && REPLAY_HEADERS.contains(headers.substring(start, colon).trim().toLowerCase(Locale.ROOT))) {
+                if (kept.length() + end - start + 1 > MAX_HEADERS_CHARS) {
+                    break;
+                }
+                kept.append(headers, start, end).append('\n');
+            }
+            start = end + 1;
+        }
+        return kept.toString();
+    }
+
+    /**
+     * @return The encoded PENDING payload, or null if a field is too long for the format (64 KB)
+     */
+    private static byte[] payload(String key, String url, String workspaceId, String headers, int attempts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + headers.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(key);
+            out.writeUTF(url);
+            out.writeUTF(workspaceId);
+            out.writeUTF(headers);
+            out.writeInt(attempts);
+        } catch (IOException e) {
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] payload(String key) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 + key.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(key);
+        } catch (IOException e) {
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int checksum(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A pending upload
+     */
+    public static final class Entry {
+        private final String key;
+        private final String url;
+        private final String workspaceId;
+        private final String headers;
+        private int attempts;
+        private int recordBytes;
+
+        Entry(String key, String url, String workspaceId, String headers, int attempts, int recordBytes) {
+            this.key = key;
+            this.url = url;
+            this.workspaceId = workspaceId;
+            this.headers = headers;
+            this.attempts = attempts;
+            this.recordBytes = recordBytes;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getWorkspaceId() {
+            return workspaceId;
+        }
+
+        /**
+         * Replay headers as "Name: value" lines
+         */
+        public String getHeaders() {
+            return headers;
+        }
+
+        /**
+         * Upload runs that ended in failure so far
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+}
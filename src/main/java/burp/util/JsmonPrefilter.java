@@ -0,0 +1,211 @@
+package burp.util;
+
+import burp.api.montoya.core.ToolType;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cheap checks run on every live response before any scope or classification work:
+ * which Burp tool produced it, its status code, its body length and the request method.
+ * Each rule counts the responses it rejected.
+ */
+public class JsmonPrefilter {
+
+    public static final String DEFAULT_SKIPPED_TOOLS = "SCANNER, INTRUDER, SEQUENCER";
+    public static final String DEFAULT_STATUS_RANGE = "200-299";
+    public static final String DEFAULT_BODY_SIZE_RANGE = "1-";
+    public static final String DEFAULT_METHODS = "GET";
+
+    /**
+     * Prefilter rules, in the order they are checked
+     */
+    public enum Rule {
+        TOOL("tool"),
+        STATUS("status"),
+        BODY_SIZE("body size"),
+        METHOD("method");
+
+        private final String displayName;
+
+        Rule(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private volatile Settings settings;
+    private final Map<Rule, LongAdder> rejected = new EnumMap<>(Rule.class);
+    private final LongAdder passed = new LongAdder();
+
+    public JsmonPrefilter() {
+        for (Rule rule : Rule.values()) {
+            rejected.put(rule, new LongAdder());
+        }
+        configure(DEFAULT_SKIPPED_TOOLS, DEFAULT_STATUS_RANGE, DEFAULT_BODY_SIZE_RANGE, DEFAULT_METHODS);
+    }
+
+    /**
+     * Replace the rules. Empty values disable a rule; invalid ones fall back to the defaults.
+     * @param skippedTools   Burp tool names whose responses are ignored (e.g. "SCANNER, INTRUDER")
+     * @param statusRange    Accepted status codes, "min-max" (either end may be omitted)
+     * @param bodySizeRange  Accepted body length in bytes, "min-max" (either end may be omitted)
+     * @param methods        Accepted request methods (e.g. "GET, POST")
+     * @return Descriptions of the values that could not be parsed
+     */
+    public List<String> configure(String skippedTools, String statusRange, String bodySizeRange, String methods) {
+        List<String> invalid = new ArrayList<>();
+
+        Set<ToolType> tools = EnumSet.noneOf(ToolType.class);
+        for (String entry : split(skippedTools)) {
+            try {
+                tools.add(ToolType.valueOf(entry.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                invalid.add("tool " + entry);
+            }
+        }
+
+        long[] status = parseRange(statusRange);
+        if (status == null) {
+            invalid.add("status range " + statusRange);
+            status = parseRange(DEFAULT_STATUS_RANGE);
+        }
+        long[] bodySize = parseRange(bodySizeRange);
+        if (bodySize == null) {
+            invalid.add("body size range " + bodySizeRange);
+            bodySize = parseRange(DEFAULT_BODY_SIZE_RANGE);
+        }
+
+        Set<String> methodSet = new HashSet<>();
+        for (String entry : split(methods)) {
+            methodSet.add(entry.toUpperCase(Locale.ROOT));
+        }
+
+        this.settings = new Settings(tools, status[0], status[1], bodySize[0], bodySize[1], methodSet);
+        return invalid;
+    }
+
+    /**
+     * Check the tool, status code and body length (no request access needed)
+     * @return The rule that rejects the response, or null if it passes
+     */
+    public Rule checkResponse(ToolType tool, int statusCode, int bodyLength) {
+        Settings current = settings;
+        Rule rule = null;
+        if (tool != null && current.skippedTools.contains(tool)) {
+            rule = Rule.TOOL;
+        } else if (statusCode < current.minStatus || statusCode > current.maxStatus) {
+            rule = Rule.STATUS;
+        } else if (bodyLength < current.minBodySize || bodyLength > current.maxBodySize) {
+            rule = Rule.BODY_SIZE;
+        }
+        if (rule != null) {
+            rejected.get(rule).increment();
+        }
+        return rule;
+    }
+
+    /**
+     * Check the request method; call after {@link #checkResponse} passed
+     * @return The rule that rejects the response, or null if it passes
+     */
+    public Rule checkMethod(String method) {
+        Set<String> methods = settings.methods;
+        if (!methods.isEmpty() && (method == null || !methods.contains(method))) {
+            rejected.get(Rule.METHOD).increment();
+            return Rule.METHOD;
+        }
+        passed.increment();
+        return null;
+    }
+
+    public long getRejectedCount(Rule rule) {
+        return rejected.get(rule).sum();
+    }
+
+    public long getPassedCount() {
+        return passed.sum();
+    }
+
+    /**
+     * "N passed, rejected: tool N, status N, ..." summary for the stats panel
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(getPassedCount()).append(" passed, rejected:");
+        for (Rule rule : Rule.values()) {
+            summary.append(' ').append(rule).append(' ').append(getRejectedCount(rule))
+                    .append(rule.ordinal() < Rule.values().length - 1 ? "," : "");
+        }
+        return summary.toString();
+    }
+
+    private static List<String> split(String value) {
+        List<String> entries = new ArrayList<>();
+        if (value != null) {
+            for (String entry : value.split("[,\\n\\r\\s]+")) {
+                if (!entry.isEmpty()) {
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Parse "min-max", "min-", "-max", a single value or an empty string (no bounds)
+     * @return {min, max}, or null if the value is malformed
+     */
+    private static long[] parseRange(String value) {
+        String range = value != null ? value.trim() : "";
+        if (range.isEmpty()) {
+            return new long[] {Long.MIN_VALUE, Long.MAX_VALUE};
+        }
+        try {
+            int dash = range.indexOf('-');
+            if (dash < 0) {
+                long exact = Long.parseLong(range);
+                return new long[] {exact, exact};
+            }
+            String min = range.substring(0, dash).trim();
+            String max = range.substring(dash + 1).trim();
+            long[] bounds = {
+                    min.isEmpty() ? Long.MIN_VALUE : Long.parseLong(min),
+                    max.isEmpty() ? Long.MAX_VALUE : Long.parseLong(max)
+            };
+            return bounds[0] <= bounds[1] ? bounds : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Settings {
+        final Set<ToolType> skippedTools;
+        final long minStatus;
+        final long maxStatus;
+        final long minBodySize;
+        final long maxBodySize;
+        final Set<String> methods;
+
+        Settings(Set<ToolType> skippedTools, long minStatus, long maxStatus,
+                 long minBodySize, long maxBodySize, Set<String> methods) {
+            this.skippedTools = skippedTools;
+            this.minStatus = minStatus;
+            this.maxStatus = maxStatus;
+            this.minBodySize = minBodySize;
+            this.maxBodySize = maxBodySize;
+            this.methods = methods;
+        }
+    }
+}
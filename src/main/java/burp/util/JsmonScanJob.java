@@ -0,0 +1,175 @@
+package burp.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * One run over a fixed list of files with a bounded pool of workers.
+ *
+ * Each worker takes the next file, starts its task and waits for the task's future before taking
+ * another, so at most {@code workers} files are in flight and any blocking in the task (rate
+ * limiter, upload permits) paces the whole run. Cancelling stops workers from taking new files
+ * and releases every waiter at once; tasks already sent finish on their own. Workers are never
+ * interrupted, since tasks run Burp API code: a task still blocked before sending is expected to
+ * poll {@link #isCancelled} and give its file up.
+ */
+public class JsmonScanJob {
+
+    public static final int DEFAULT_WORKERS = 4;
+
+    private final String name;
+    private final int total;
+    private final int workers;
+    private final boolean automatic;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final CompletableFuture<Void> cancelled = new CompletableFuture<>();
+    private volatile long startedNanos;
+
+    /**
+     * @param name      Used for worker thread names
+     * @param total     Number of files
+     * @param workers   Files in flight at once
+     * @param automatic Started by automatic scanning (stopped when it is turned off)
+     */
+    public JsmonScanJob(String name, int total, int workers, boolean automatic) {
+        this.name = name;
+        this.total = total;
+        this.workers = Math.max(1, Math.min(workers, Math.max(1, total)));
+        this.automatic = automatic;
+    }
+
+    /**
+     * Process every file, blocking until all are done or the job is cancelled
+     * @param task             Starts the work for one file index; the future completes when it is done
+     * @param progressInterval Milliseconds between progress callbacks
+     * @param progress         Called on the calling thread while the job runs (may be null)
+     * @return false if the job was cancelled
+     */
+    public boolean run(IntFunction<CompletableFuture<?>> task, long progressInterval, Consumer<JsmonScanJob> progress) {
+        startedNanos = System.nanoTime();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletableFuture<?>[] running = new CompletableFuture<?>[workers];
+            for (int i = 0; i < workers; i++) {
+                running[i] = CompletableFuture.runAsync(() -> work(task), pool);
+            }
+            CompletableFuture<Object> finished = CompletableFuture.anyOf(CompletableFuture.allOf(running), cancelled);
+            while (true) {
+                try {
+                    finished.get(progressInterval, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (progress != null) {
+                        progress.accept(this);
+                    }
+                } catch (ExecutionException e) {
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                    break;
+                }
+            }
+        } finally {
+            // Workers stop taking files; any still waiting on a started task exit once it settles
+            pool.shutdown();
+        }
+        return !isCancelled();
+    }
+
+    private void work(IntFunction<CompletableFuture<?>> task) {
+        while (!isCancelled()) {
+            int index = next.getAndIncrement();
+            if (index >= total) {
+                return;
+            }
+            inFlight.incrementAndGet();
+            try {
+                CompletableFuture<?> file = task.apply(index);
+                if (isCancelled()) {
+                    return;
+                }
+                CompletableFuture.anyOf(file, cancelled).join();
+                if (file.isDone()) {
+                    completed.incrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                // The task reports its own failures; count the file as done
+                completed.incrementAndGet();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Stop handing out files and release {@link #run} immediately
+     */
+    public void cancel() {
+        cancelled.complete(null);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.isDone();
+    }
+
+    public boolean isAutomatic() {
+        return automatic;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public double getFilesPerSecond() {
+        long started = startedNanos;
+        double seconds = started == 0 ? 0 : (System.nanoTime() - started) / 1e9;
+        return seconds > 0 ? completed.get() / seconds : 0;
+    }
+
+    /**
+     * Estimated seconds until every file is done, or -1 while no rate is known
+     */
+    public long getEtaSeconds() {
+        double rate = getFilesPerSecond();
+        return rate > 0 ? (long) Math.ceil((total - completed.get()) / rate) : -1;
+    }
+
+    /**
+     * "120/4000 files (3%), 8.5 files/s, 4 in flight, ETA 7m 36s" summary for status and stats
+     */
+    public String getSummary() {
+        int done = completed.get();
+        long eta = getEtaSeconds();
+        return String.format("%d/%d files (%d%%), %.1f files/s, %d in flight, ETA %s", done, total,
+                total > 0 ? done * 100 / total : 100, getFilesPerSecond(), inFlight.get(),
+                eta < 0 ? "unknown" : eta >= 60 ? (eta / 60) + "m " + (eta % 60) + "s" : eta + "s");
+    }
+}
@@ -0,0 +1,128 @@
+package burp.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of scope decisions. A crawl hits the same few hundred hosts over and over,
+ * so remembering each decision saves re-evaluating the scope (or calling into Burp) per
+ * response. The cache is emptied when the scope changes, and also when it fills up.
+ *
+ * A lookup that misses evaluates the scope and then stores its decision. If the scope changes
+ * in between, that decision is stale, so callers take {@link #generation()} before reading the
+ * scope and {@link #put} refuses decisions from an older generation.
+ */
+public class JsmonScopeCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private volatile Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    /** Bumped by every invalidation, before the map is swapped */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public JsmonScopeCache(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * @return The cached decision, or null on a miss
+     */
+    public Boolean get(String key) {
+        Boolean decision = decisions.get(key);
+        if (decision != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return decision;
+    }
+
+    /**
+     * Current generation; read it before reading the scope a decision is computed from
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Store a decision computed from the scope as it was at {@code generation}
+     * @return false if the scope has changed since and the decision was discarded
+     */
+    public boolean put(String key, boolean decision, long generation) {
+        // Read the map before the generation: invalidate() bumps the generation before swapping,
+        // so seeing the new map here guarantees seeing the new generation below
+        Map<String, Boolean> current = decisions;
+        if (generation != this.generation.get()) {
+            return false;
+        }
+        if (current.size() >= maxEntries) {
+            current.clear();
+        }
+        // If invalidate() swaps the map right now this lands in the discarded one, which is harmless
+        current.put(key, decision);
+        return true;
+    }
+
+    /**
+     * Forget every decision (the scope changed)
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        decisions = new ConcurrentHashMap<>();
+        invalidations.incrementAndGet();
+    }
+
+    public Stats getStats() {
+        return new Stats(decisions.size(), hits.get(), misses.get(), invalidations.get());
+    }
+
+    /**
+     * Snapshot of cache statistics
+     */
+    public static class Stats {
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long invalidations;
+
+        Stats(int size, long hits, long misses, long invalidations) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.invalidations = invalidations;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups > 0 ? (double) hits / lookups : 0.0;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d entries, hit rate %.1f%% (%d/%d), %d invalidations",
+                    size, getHitRate() * 100, hits, hits + misses, invalidations);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package burp.util;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Scoped domain list compiled into a suffix trie over reversed host labels
+ * ("app.example.com" is stored as com -> example -> app), so a lookup costs one step
+ * per host label no matter how many domains are in scope.
+ *
+ * Entry syntax (comma, space or newline separated):
+ * <ul>
+ *   <li>{@code example.com} - the domain and all of its subdomains</li>
+ *   <li>{@code *.example.com} - subdomains only, not example.com itself</li>
+ *   <li>{@code !ads.example.com} / {@code !*.ads.example.com} - exclusions with the same meaning</li>
+ * </ul>
+ * The most specific matching rule wins; on a tie an exclusion beats an inclusion. A list
+ * with only exclusions puts every other host in scope.
+ */
+public class JsmonScopeIndex {
+
+    private static final int INCLUDE_SELF = 1;
+    private static final int INCLUDE_SUBDOMAINS = 2;
+    private static final int EXCLUDE_SELF = 4;
+    private static final int EXCLUDE_SUBDOMAINS = 8;
+
+    private final Node root = new Node();
+    private final boolean hasIncludes;
+    private final int ruleCount;
+
+    /**
+     * @param domains Raw scoped domain setting; null or empty puts every host in scope
+     */
+    public JsmonScopeIndex(String domains) {
+        boolean includes = false;
+        int rules = 0;
+        if (domains != null) {
+            for (String entry : domains.split("[,\\n\\r\\s]+")) {
+                String domain = entry.trim().toLowerCase(Locale.ROOT);
+                boolean exclude = domain.startsWith("!");
+                if (exclude) {
+                    domain = domain.substring(1);
+                }
+                boolean subdomainsOnly = domain.startsWith("*.");
+                if (subdomainsOnly) {
+                    domain = domain.substring(2);
+                }
+                domain = stripDots(domain);
+                if (domain.isEmpty()) {
+                    continue;
+                }
+
+                int flags;
+                if (exclude) {
+                    flags = subdomainsOnly ? EXCLUDE_SUBDOMAINS : EXCLUDE_SELF | EXCLUDE_SUBDOMAINS;
+                } else {
+                    flags = subdomainsOnly ? INCLUDE_SUBDOMAINS : INCLUDE_SELF | INCLUDE_SUBDOMAINS;
+                    includes = true;
+                }
+                insert(domain).flags |= flags;
+                rules++;
+            }
+        }
+        this.hasIncludes = includes;
+        this.ruleCount = rules;
+    }
+
+    private Node insert(String domain) {
+        Node node = root;
+        int end = domain.length();
+        for (int i = end - 1; i >= -1; i--) {
+            if (i == -1 || domain.charAt(i) == '.') {
+                if (end > i + 1) {
+                    node = node.children.computeIfAbsent(domain.substring(i + 1, end), label -> new Node());
+                }
+                end = i;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Whether the index has no rules at all (everything is in scope)
+     */
+    public boolean isEmpty() {
+        return ruleCount == 0;
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * Decide scope for a lowercase host name
+     */
+    public boolean isHostInScope(String host) {
+        if (ruleCount == 0) {
+            return true;
+        }
+        if (host == null) {
+            return false;
+        }
+
+        // Without include rules everything not excluded is in scope
+        boolean decision = !hasIncludes;
+        Node node = root;
+        int end = host.length();
+        for (int i = end - 1; i >= -1 && node != null; i--) {
+            if (i != -1 && host.charAt(i) != '.') {
+                continue;
+            }
+            if (end > i + 1) {
+                node = node.children.get(host.substring(i + 1, end));
+                if (node == null) {
+                    break;
+                }
+                boolean self = i == -1;
+                int exclude = self ? EXCLUDE_SELF : EXCLUDE_SUBDOMAINS;
+                int include = self ? INCLUDE_SELF : INCLUDE_SUBDOMAINS;
+                if ((node.flags & exclude) != 0) {
+                    decision = false;
+                } else if ((node.flags & include) != 0) {
+                    decision = true;
+                }
+            }
+            end = i;
+        }
+        return decision;
+    }
+
+    /**
+     * Extract the lowercase host from an absolute URL without building a java.net.URL
+     * @return The host, or null if the URL has no authority
+     */
+    public static String hostOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0) {
+            return null;
+        }
+        int start = schemeEnd + 3;
+        int end = start;
+        int length = url.length();
+        while (end < length) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) {
+            start = at + 1;
+        }
+        int portSeparator = url.lastIndexOf(':', end - 1);
+        // Ignore colons inside an IPv6 literal ("[::1]")
+        if (portSeparator >= start && portSeparator > url.lastIndexOf(']', end - 1)) {
+            end = portSeparator;
+        }
+        if (end <= start) {
+            return null;
+        }
+        return stripDots(url.substring(start, end).toLowerCase(Locale.ROOT));
+    }
+
+    private static String stripDots(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) == '.') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) == '.') {
+            end--;
+        }
+        return value.substring(start, end);
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>(4);
+        int flags;
+    }
+}
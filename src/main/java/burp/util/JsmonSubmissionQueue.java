@@ -0,0 +1,239 @@
+package burp.util;
+
+import burp.api.montoya.logging.Logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded in-memory queue drained by a fixed pool of worker threads.
+ * Producers (Burp's HTTP handler threads) only enqueue; the slow work
+ * (JSMon API round trips) happens on the workers.
+ */
+public class JsmonSubmissionQueue<T> {
+
+    /**
+     * What to do when a producer submits into a full queue
+     */
+    public enum OverflowPolicy {
+        BLOCK("Block"),
+        DROP_OLDEST("Drop oldest"),
+        DROP_NEWEST("Drop newest");
+
+        private final String displayName;
+
+        OverflowPolicy(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * Parse a persisted policy name, falling back to DROP_OLDEST for unknown values
+         */
+        public static OverflowPolicy fromString(String value) {
+            if (value != null) {
+                for (OverflowPolicy policy : values()) {
+                    if (policy.name().equalsIgnoreCase(value) || policy.displayName.equalsIgnoreCase(value)) {
+                        return policy;
+                    }
+                }
+            }
+            return DROP_OLDEST;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final Consumer<T> processor;
+    private final Consumer<T> dropHandler;
+    private final Logging logging;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile boolean running = true;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+
+    /**
+     * @param name        Prefix used for worker thread names
+     * @param capacity    Maximum number of pending items
+     * @param workerCount Number of worker threads draining the queue
+     * @param policy      Behaviour when the queue is full
+     * @param processor   Called on a worker thread for every dequeued item
+     * @param dropHandler Called for every item discarded by a drop policy or clear() (may be null)
+     */
+    public JsmonSubmissionQueue(String name, int capacity, int workerCount, OverflowPolicy policy,
+                                Consumer<T> processor, Consumer<T> dropHandler, Logging logging) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.processor = processor;
+        this.dropHandler = dropHandler;
+        this.logging = logging;
+        this.overflowPolicy = policy != null ? policy : OverflowPolicy.DROP_OLDEST;
+
+        int threads = Math.max(1, workerCount);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::drain, name + "-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Enqueue an item according to the current overflow policy
+     * @return true if the item was accepted, false if it was dropped
+     */
+    public boolean submit(T item) {
+        if (!running || item == null) {
+            return false;
+        }
+        submittedCount.incrementAndGet();
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(item);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop(item);
+                    return false;
+                }
+            case DROP_NEWEST:
+                if (queue.offer(item)) {
+                    return true;
+                }
+                drop(item);
+                return false;
+            case DROP_OLDEST:
+            default:
+                while (!queue.offer(item)) {
+                    T evicted = queue.poll();
+                    if (evicted != null) {
+                        drop(evicted);
+                    }
+                }
+                return true;
+        }
+    }
+
+    private void drop(T item) {
+        droppedCount.incrementAndGet();
+        notifyDropHandler(item);
+    }
+
+    private void notifyDropHandler(T item) {
+        if (dropHandler != null) {
+            try {
+                dropHandler.accept(item);
+            } catch (Exception e) {
+                if (logging != null) {
+                    logging.logToError("JSMon: " + name + " drop handler failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            T item;
+            try {
+                item = queue.poll(500, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+                continue;
+            }
+            if (item == null) {
+                continue;
+            }
+            try {
+                processor.accept(item);
+            } catch (Exception e) {
+                if (logging != null) {
+                    logging.logToError("JSMon: " + name + " worker failed: " + e.getMessage());
+                }
+            } finally {
+                processedCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Discard all pending items without processing them (the drop handler still sees each one)
+     * @return Number of items discarded
+     */
+    public int clear() {
+        List<T> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (T item : pending) {
+            notifyDropHandler(item);
+        }
+        return pending.size();
+    }
+
+    /**
+     * Stop the worker threads. Pending items are returned instead of being passed to the drop
+     * handler, since they were not dropped by the overflow policy.
+     * @return Items that were still waiting
+     */
+    public List<T> shutdown() {
+        running = false;
+        List<T> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        return pending;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        if (overflowPolicy != null) {
+            this.overflowPolicy = overflowPolicy;
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+}
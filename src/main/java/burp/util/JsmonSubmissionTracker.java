@@ -0,0 +1,281 @@
+package burp.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-key submission state machine:
+ * QUEUED -> IN_FLIGHT -> SUCCEEDED | FAILED_RETRYABLE | FAILED_PERMANENT.
+ *
+ * Claims are atomic per key, so when several Burp threads discover the same file at once
+ * exactly one of them owns the upload and the rest coalesce onto its future. Succeeded keys
+ * move into the completed dedup index; retryable failures become eligible again at once and
+ * permanent failures after a cool-down, instead of being blacklisted forever.
+ *
+ * @param <R> Submission result type delivered to coalesced waiters
+ */
+public class JsmonSubmissionTracker<R> {
+
+    public enum State {
+        QUEUED, IN_FLIGHT, SUCCEEDED, FAILED_RETRYABLE, FAILED_PERMANENT
+    }
+
+    public static final long DEFAULT_PERMANENT_FAILURE_COOLDOWN_MS = 30 * 60 * 1000L;
+
+    /** Sweep expired permanent failures once the map grows past this size */
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final Map<String, Tracked<R>> active = new ConcurrentHashMap<>();
+    private final JsmonDedupIndex completed;
+    private final long permanentFailureCooldownMs;
+
+    private final AtomicLong claimedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong succeededCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * @param completed                  Index that receives keys once they succeed
+     * @param permanentFailureCooldownMs How long a permanently failed key stays ineligible
+     */
+    public JsmonSubmissionTracker(JsmonDedupIndex completed, long permanentFailureCooldownMs) {
+        this.completed = completed;
+        this.permanentFailureCooldownMs = permanentFailureCooldownMs;
+    }
+
+    /**
+     * Atomically claim a key for submission.
+     * The caller owns the submission only if {@link Claim#isOwner()} is true.
+     */
+    public Claim<R> claim(String key) {
+        return claim(key, false);
+    }
+
+    /**
+     * Atomically claim a key for submission.
+     * @param force Also claim keys that already succeeded or are cooling down after a permanent
+     *              failure (explicit re-scans); keys queued or in flight still coalesce
+     */
+    public Claim<R> claim(String key, boolean force) {
+        if (active.size() > SWEEP_THRESHOLD) {
+            sweepExpired();
+        }
+        AtomicReference<Claim<R>> result = new AtomicReference<>();
+        long now = System.currentTimeMillis();
+        active.compute(key, (k, existing) -> {
+            if (existing != null) {
+                State state = existing.state.get();
+                if (state == State.QUEUED || state == State.IN_FLIGHT) {
+                    result.set(new Claim<>(Claim.Kind.COALESCED, existing.future));
+                    return existing;
+                }
+                if (!force && state == State.FAILED_PERMANENT && now - existing.updatedAt < permanentFailureCooldownMs) {
+                    result.set(new Claim<>(Claim.Kind.REJECTED, existing.future));
+                    return existing;
+                }
+            } else if (!force && completed.contains(k)) {
+                result.set(new Claim<>(Claim.Kind.ALREADY_DONE, null));
+                return null;
+            }
+            Tracked<R> tracked = new Tracked<>(now);
+            result.set(new Claim<>(Claim.Kind.OWNER, tracked.future));
+            return tracked;
+        });
+
+        switch (result.get().getKind()) {
+            case OWNER:
+                claimedCount.incrementAndGet();
+                break;
+            case COALESCED:
+                coalescedCount.incrementAndGet();
+                break;
+            default:
+                break;
+        }
+        return result.get();
+    }
+
+    /**
+     * Move a claimed key from QUEUED to IN_FLIGHT
+     * @return false if the key is not queued (released or already completed)
+     */
+    public boolean markInFlight(String key) {
+        Tracked<R> tracked = active.get(key);
+        if (tracked == null) {
+            return false;
+        }
+        tracked.updatedAt = System.currentTimeMillis();
+        return tracked.state.compareAndSet(State.QUEUED, State.IN_FLIGHT);
+    }
+
+    /**
+     * Record a successful submission: the key joins the completed index and waiters are released
+     */
+    public void succeed(String key, R result) {
+        AtomicReference<Tracked<R>> finished = new AtomicReference<>();
+        active.computeIfPresent(key, (k, tracked) -> {
+            completed.add(k);
+            tracked.state.set(State.SUCCEEDED);
+            finished.set(tracked);
+            return null;
+        });
+        Tracked<R> done = finished.get();
+        if (done != null) {
+            succeededCount.incrementAndGet();
+            done.future.complete(result);
+        }
+    }
+
+    /**
+     * Record a failed submission. Retryable failures are eligible for a new claim right away,
+     * permanent failures once the cool-down has passed.
+     */
+    public void fail(String key, R result, boolean retryable) {
+        AtomicReference<Tracked<R>> finished = new AtomicReference<>();
+        active.computeIfPresent(key, (k, tracked) -> {
+            tracked.state.set(retryable ? State.FAILED_RETRYABLE : State.FAILED_PERMANENT);
+            tracked.updatedAt = System.currentTimeMillis();
+            finished.set(tracked);
+            return retryable ? null : tracked;
+        });
+        Tracked<R> done = finished.get();
+        if (done != null) {
+            failedCount.incrementAndGet();
+            done.future.complete(result);
+        }
+    }
+
+    /**
+     * Abandon a claim without a result (e.g. the submission was dropped from the queue)
+     */
+    public void release(String key) {
+        Tracked<R> tracked = active.remove(key);
+        if (tracked != null) {
+            tracked.future.complete(null);
+        }
+    }
+
+    /**
+     * Current state of a key, or null if it is neither active nor completed
+     */
+    public State getState(String key) {
+        Tracked<R> tracked = active.get(key);
+        if (tracked != null) {
+            return tracked.state.get();
+        }
+        return completed.contains(key) ? State.SUCCEEDED : null;
+    }
+
+    private void sweepExpired() {
+        long now = System.currentTimeMillis();
+        active.entrySet().removeIf(entry -> entry.getValue().state.get() == State.FAILED_PERMANENT
+                && now - entry.getValue().updatedAt >= permanentFailureCooldownMs);
+    }
+
+    /**
+     * Number of keys currently queued or in flight
+     */
+    public int getActiveCount() {
+        int count = 0;
+        for (Tracked<R> tracked : active.values()) {
+            State state = tracked.state.get();
+            if (state == State.QUEUED || state == State.IN_FLIGHT) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getClaimedCount() {
+        return claimedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getSucceededCount() {
+        return succeededCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    private static final class Tracked<R> {
+        final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        volatile long updatedAt;
+
+        Tracked(long now) {
+            this.updatedAt = now;
+        }
+    }
+
+    /**
+     * Outcome of a claim attempt
+     */
+    public static final class Claim<R> {
+        public enum Kind {
+            /** Caller owns the submission and must complete it */
+            OWNER,
+            /** Another submission of the same key is queued or in flight */
+            COALESCED,
+            /** Key was already submitted successfully */
+            ALREADY_DONE,
+            /** Key failed permanently and is still cooling down */
+            REJECTED
+        }
+
+        private final Kind kind;
+        private final CompletableFuture<R> future;
+
+        Claim(Kind kind, CompletableFuture<R> future) {
+            this.kind = kind;
+            this.future = future;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public boolean isOwner() {
+            return kind == Kind.OWNER;
+        }
+
+        /**
+         * Wait for the owning submission to finish
+         * @return Its result, or null if it was abandoned, there is nothing to wait for, or the wait timed out
+         */
+        public R await(long timeoutMs) {
+            if (future == null) {
+                return null;
+            }
+            try {
+                return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        /**
+         * Non-blocking form of {@link #await(long)}
+         * @return Future completing with the owning submission's result, or with null if it was
+         *         abandoned, there is nothing to wait for, or the timeout passed
+         */
+        public CompletableFuture<R> awaitAsync(long timeoutMs) {
+            if (future == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            // Copy so the timeout does not complete the shared future for other waiters
+            return future.copy().completeOnTimeout(null, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package burp.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Builds dedup keys from URLs so that cosmetic variants of the same file map to one key:
+ * scheme and host are lowercased, default ports and user info are dropped, the path is
+ * normalized (duplicate slashes, "." and ".." segments) and volatile query or path
+ * parameters (cache busters, session IDs) are stripped. Remaining query parameters are
+ * sorted and the fragment is dropped.
+ *
+ * The URL is parsed by hand (no java.net.URL) and canonical scheme+authority prefixes
+ * are cached because a crawl hits the same hosts over and over.
+ */
+public class JsmonUrlCanonicalizer {
+
+    /**
+     * Default volatile parameters. Plain entries match parameter names case-insensitively;
+     * entries prefixed with "re:" are regular expressions matched against the whole name.
+     */
+    public static final String DEFAULT_VOLATILE_PARAMS =
+            "v, ver, version, _, cb, cachebuster, cache_buster, nocache, bust, t, ts, timestamp, rnd, rand, random, " +
+            "jsessionid, phpsessid, aspsessionid, sid, sessionid, session_id, re:utm_.*";
+
+    private static final int MAX_CACHED_AUTHORITIES = 4096;
+
+    private final Map<String, String> authorityCache = new ConcurrentHashMap<>();
+    private volatile Set<String> volatileNames = Collections.emptySet();
+    private volatile List<Pattern> volatilePatterns = Collections.emptyList();
+
+    public JsmonUrlCanonicalizer(String volatileParams) {
+        setVolatileParams(volatileParams);
+    }
+
+    /**
+     * Replace the set of volatile parameters (comma, space or newline separated)
+     * @return Entries that could not be compiled as regular expressions
+     */
+    public List<String> setVolatileParams(String volatileParams) {
+        Set<String> names = new HashSet<>();
+        List<Pattern> patterns = new ArrayList<>();
+        List<String> invalid = new ArrayList<>();
+        if (volatileParams != null) {
+            for (String entry : volatileParams.split("[,\\n\\r\\s]+")) {
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                if (entry.startsWith("re:")) {
+                    try {
+                        patterns.add(Pattern.compile(entry.substring(3), Pattern.CASE_INSENSITIVE));
+                    } catch (PatternSyntaxException e) {
+                        invalid.add(entry);
+                    }
+                } else {
+                    names.add(entry.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        this.volatileNames = names;
+        this.volatilePatterns = patterns;
+        return invalid;
+    }
+
+    /**
+     * Build the dedup key for a URL. Non-absolute input is returned unchanged.
+     */
+    public String canonicalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0) {
+            return url;
+        }
+
+        int length = url.length();
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < length) {
+            char c = url.charAt(authorityEnd);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            authorityEnd++;
+        }
+
+        int end = url.indexOf('#', authorityEnd);
+        if (end < 0) {
+            end = length;
+        }
+        int queryStart = url.indexOf('?', authorityEnd);
+        if (queryStart >= end) {
+            queryStart = -1;
+        }
+        int pathEnd = queryStart >= 0 ? queryStart : end;
+
+        StringBuilder out = new StringBuilder(end + 8);
+        out.append(canonicalPrefix(url, schemeEnd, authorityStart, authorityEnd));
+        appendPath(out, url, authorityEnd, pathEnd);
+        if (queryStart >= 0) {
+            appendQuery(out, url, queryStart + 1, end);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Lowercased "scheme://host[:port]" with user info and default ports removed
+     */
+    private String canonicalPrefix(String url, int schemeEnd, int authorityStart, int authorityEnd) {
+        String raw = url.substring(0, authorityEnd);
+        String cached = authorityCache.get(raw);
+        if (cached != null) {
+            return cached;
+        }
+
+        String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        String authority = url.substring(authorityStart, authorityEnd);
+        int at = authority.lastIndexOf('@');
+        if (at >= 0) {
+            authority = authority.substring(at + 1);
+        }
+
+        String host = authority;
+        String port = null;
+        int portSeparator = authority.lastIndexOf(':');
+        // Ignore colons inside an IPv6 literal ("[::1]")
+        if (portSeparator > authority.lastIndexOf(']')) {
+            host = authority.substring(0, portSeparator);
+            port = authority.substring(portSeparator + 1);
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        while (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        if (port != null && (port.isEmpty()
+                || ("http".equals(scheme) && "80".equals(port))
+                || ("https".equals(scheme) && "443".equals(port)))) {
+            port = null;
+        }
+
+        String canonical = scheme + "://" + host + (port != null ? ":" + port : "");
+        if (authorityCache.size() >= MAX_CACHED_AUTHORITIES) {
+            authorityCache.clear();
+        }
+        authorityCache.put(raw, canonical);
+        return canonical;
+    }
+
+    /**
+     * Append the path with duplicate slashes collapsed, dot segments resolved and
+     * volatile ";name=value" path parameters removed
+     */
+    private void appendPath(StringBuilder out, String url, int start, int end) {
+        if (start >= end) {
+            out.append('/');
+            return;
+        }
+        if (!needsPathNormalization(url, start, end)) {
+            out.append(url, start, end);
+            return;
+        }
+
+        List<String> segments = new ArrayList<>();
+        int segmentStart = start + 1;
+        for (int i = segmentStart; i <= end; i++) {
+            if (i == end || url.charAt(i) == '/') {
+                String segment = stripPathParams(url.substring(segmentStart, i));
+                if (segment.equals("..")) {
+                    if (!segments.isEmpty()) {
+                        segments.remove(segments.size() - 1);
+                    }
+                } else if (!segment.isEmpty() && !segment.equals(".")) {
+                    segments.add(segment);
+                }
+                segmentStart = i + 1;
+            }
+        }
+
+        for (String segment : segments) {
+            out.append('/').append(segment);
+        }
+        // Keep a trailing slash (directory URLs) and never emit an empty path
+        char last = url.charAt(end - 1);
+        if (segments.isEmpty() || last == '/') {
+            out.append('/');
+        }
+    }
+
+    private boolean needsPathNormalization(String url, int start, int end) {
+        char previous = 0;
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == ';') {
+                return true;
+            }
+            if (c == '/' && previous == '/') {
+                return true;
+            }
+            if (c == '.' && previous == '/') {
+                return true;
+            }
+            previous = c;
+        }
+        return false;
+    }
+
+    private String stripPathParams(String segment) {
+        int semicolon = segment.indexOf(';');
+        if (semicolon < 0) {
+            return segment;
+        }
+        StringBuilder kept = new StringBuilder(segment.length());
+        kept.append(segment, 0, semicolon);
+        for (String param : segment.substring(semicolon + 1).split(";")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int equals = param.indexOf('=');
+            String name = equals >= 0 ? param.substring(0, equals) : param;
+            if (!isVolatile(name)) {
+                kept.append(';').append(param);
+            }
+        }
+        return kept.toString();
+    }
+
+    /**
+     * Append the query string without volatile parameters, sorted so order does not matter
+     */
+    private void appendQuery(StringBuilder out, String url, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        List<String> kept = new ArrayList<>();
+        int paramStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || url.charAt(i) == '&') {
+                if (i > paramStart) {
+                    int nameEnd = paramStart;
+                    while (nameEnd < i && url.charAt(nameEnd) != '=') {
+                        nameEnd++;
+                    }
+                    if (!isVolatile(url.substring(paramStart, nameEnd))) {
+                        kept.add(url.substring(paramStart, i));
+                    }
+                }
+                paramStart = i + 1;
+            }
+        }
+        if (kept.isEmpty()) {
+            return;
+        }
+        if (kept.size() > 1) {
+            Collections.sort(kept);
+        }
+        out.append('?');
+        for (int i = 0; i < kept.size(); i++) {
+            if (i > 0) {
+                out.append('&');
+            }
+            out.append(kept.get(i));
+        }
+    }
+
+    private boolean isVolatile(String name) {
+        if (volatileNames.contains(name.toLowerCase(Locale.ROOT))) {
+            return true;
+        }
+        for (Pattern pattern : volatilePatterns) {
+            if (pattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
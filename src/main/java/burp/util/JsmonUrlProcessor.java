@@ -1,66 +1,145 @@
 package burp.util;
 
-import burp.api.montoya.http.message.requests.HttpRequest;
-import burp.api.montoya.logging.Logging;
-
 public class JsmonUrlProcessor {
-    private final Logging logging;
     
-    public JsmonUrlProcessor(Logging logging) {
-        this.logging = logging;
+    /**
+     * Where scope decisions come from
+     */
+    public enum ScopeSource {
+        SCOPED_DOMAINS("Scoped domains"),
+        BURP_SCOPE("Burp target scope");
+        
+        private final String displayName;
+        
+        ScopeSource(String displayName) {
+            this.displayName = displayName;
+        }
+        
+        /**
+         * Parse a persisted source name, falling back to SCOPED_DOMAINS for unknown values
+         */
+        public static ScopeSource fromString(String value) {
+            if (value != null) {
+                for (ScopeSource source : values()) {
+                    if (source.name().equalsIgnoreCase(value) || source.displayName.equalsIgnoreCase(value)) {
+                        return source;
+                    }
+                }
+            }
+            return SCOPED_DOMAINS;
+        }
+        
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+    
+    private final JsmonDiagnostics diagnostics;
+    private final JsmonScopeCache scopeCache = new JsmonScopeCache(JsmonScopeCache.DEFAULT_MAX_ENTRIES);
+    private volatile JsmonScopeIndex scopeIndex = new JsmonScopeIndex(null);
+    private volatile ScopeSource scopeSource = ScopeSource.SCOPED_DOMAINS;
+    private volatile burp.api.montoya.scope.Scope burpScope;
+    
+    public JsmonUrlProcessor(JsmonDiagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+    
+    /**
+     * Compile the scoped domain setting; called whenever it changes
+     */
+    public void setScopedDomains(String domains) {
+        this.scopeIndex = new JsmonScopeIndex(domains);
+        scopeCache.invalidate();
+    }
+    
+    /**
+     * Choose where scope decisions come from
+     * @param burpScope Burp's project scope, used in BURP_SCOPE mode
+     */
+    public void setScopeSource(ScopeSource source, burp.api.montoya.scope.Scope burpScope) {
+        this.burpScope = burpScope;
+        this.scopeSource = source != null ? source : ScopeSource.SCOPED_DOMAINS;
+        scopeCache.invalidate();
+    }
+    
+    public ScopeSource getScopeSource() {
+        return scopeSource;
+    }
+    
+    /**
+     * Drop cached scope decisions (e.g. Burp's target scope was edited)
+     */
+    public void invalidateScopeCache() {
+        scopeCache.invalidate();
+    }
+    
+    public JsmonScopeCache.Stats getScopeCacheStats() {
+        return scopeCache.getStats();
     }
     
     /**
-     * Check if URL is in scope based on scoped domain(s)
+     * Check if URL is in scope, using cached decisions where possible
      */
-    public boolean isUrlInScope(String url, String domains) {
-        if (domains == null || domains.trim().isEmpty()) {
+    public boolean isUrlInScope(String url) {
+        // Taken before the scope is read, so a decision computed from a scope that changes
+        // meanwhile is not cached
+        long generation = scopeCache.generation();
+        burp.api.montoya.scope.Scope burp = burpScope;
+        if (scopeSource == ScopeSource.BURP_SCOPE && burp != null) {
+            return isUrlInBurpScope(url, burp, generation);
+        }
+        
+        JsmonScopeIndex index = scopeIndex;
+        if (index.isEmpty()) {
             return true; // No scope means all URLs are in scope
         }
         
-        try {
-            java.net.URL urlObj = new java.net.URL(url);
-            String host = urlObj.getHost().toLowerCase();
-            
-            // Split domains by comma, newline, or space
-            String[] domainList = domains.split("[,\\n\\r\\s]+");
-            
-            for (String domain : domainList) {
-                String domainLower = domain.toLowerCase().trim();
-                
-                // Skip empty domains
-                if (domainLower.isEmpty()) {
-                    continue;
-                }
-                
-                // Remove leading/trailing dots from domain
-                domainLower = domainLower.replaceAll("^\\.+|\\.+$", "");
-                
-                // Check if host exactly matches domain
-                if (host.equals(domainLower)) {
-                    return true;
-                }
-                
-                // Check if host is a subdomain of the domain
-                if (host.endsWith("." + domainLower)) {
-                    return true;
-                }
+        String host = JsmonScopeIndex.hostOf(url);
+        if (host == null) {
+            if (diagnostics != null) {
+                diagnostics.warn("JSMon: Error parsing URL: " + url + " - no host");
             }
-            
             return false;
+        }
+        Boolean cached = scopeCache.get(host);
+        if (cached != null) {
+            return cached;
+        }
+        boolean decision = index.isHostInScope(host);
+        scopeCache.put(host, decision, generation);
+        return decision;
+    }
+    
+    /**
+     * Burp's scope rules can match on protocol, port and path, so its decisions are cached
+     * per URL (without the fragment) rather than per host
+     */
+    private boolean isUrlInBurpScope(String url, burp.api.montoya.scope.Scope burp, long generation) {
+        int fragment = url.indexOf('#');
+        String key = fragment >= 0 ? url.substring(0, fragment) : url;
+        Boolean cached = scopeCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        boolean decision;
+        try {
+            decision = burp.isInScope(key);
         } catch (Exception e) {
-            if (logging != null) {
-                logging.logToError("Error parsing URL: " + url + " - " + e.getMessage());
+            if (diagnostics != null) {
+                diagnostics.warn("JSMon: Error checking Burp scope for " + url + " - " + e.getMessage());
             }
             return false;
         }
+        scopeCache.put(key, decision, generation);
+        return decision;
     }
     
     /**
      * Supported file extensions for scanning
      * Note: Longer extensions should come first to avoid false matches (e.g., .jsx before .js)
      */
-    private static final String[] SCANNABLE_EXTENSIONS = {
+    static final String[] SCANNABLE_EXTENSIONS = {
         ".jspa", ".tsx", ".jsx", ".xhtml", ".aspx", ".ashx", ".asmx",
         ".asp", ".cfm", ".svc", ".cgi", ".pl",
         ".html", ".htm", ".jsp", ".do", ".php", ".txt",
@@ -70,51 +149,22 @@ public class JsmonUrlProcessor {
     /**
      * Content-Type strings that indicate scannable content
      */
-    private static final String[] SCANNABLE_CONTENT_TYPES = {
+    static final String[] SCANNABLE_CONTENT_TYPES = {
         "javascript", "ecmascript", "html", "xhtml", "text", "plain", "json", "xml", "php", "jsp", "component"
     };
     
+    /**
+     * Extension and Content-Type lists compiled once into allocation-free lookups
+     */
+    private static final JsmonFileClassifier CLASSIFIER =
+            new JsmonFileClassifier(SCANNABLE_EXTENSIONS, SCANNABLE_CONTENT_TYPES);
+    
     /**
      * Check if URL matches any of the scannable file extensions
      * More precise matching: checks if extension is at end of path or before query/hash
      */
     private boolean hasScannableExtension(String url) {
-        if (url == null || url.isEmpty()) {
-            return false;
-        }
-        
-        url = url.toLowerCase();
-        
-        // Remove query string and hash for extension checking
-        String urlPath = url;
-        int queryIndex = url.indexOf('?');
-        int hashIndex = url.indexOf('#');
-        
-        if (queryIndex != -1) {
-            urlPath = url.substring(0, queryIndex);
-        } else if (hashIndex != -1) {
-            urlPath = url.substring(0, hashIndex);
-        }
-        
-        // Check each extension (longer ones first to avoid false matches)
-        for (String ext : SCANNABLE_EXTENSIONS) {
-            // Check if URL ends with the extension
-            if (urlPath.endsWith(ext)) {
-                return true;
-            }
-            // Also check if extension appears before query/hash in full URL
-            int extIndex = url.indexOf(ext);
-            if (extIndex != -1) {
-                int afterExt = extIndex + ext.length();
-                // Check if extension is followed by ? or # or end of string
-                if (afterExt >= url.length() || 
-                    url.charAt(afterExt) == '?' || 
-                    url.charAt(afterExt) == '#') {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return CLASSIFIER.hasScannableExtension(url);
     }
     
     /**
@@ -128,7 +178,7 @@ public class JsmonUrlProcessor {
         
         // Check Content-Type header for scannable content types (if response is available)
         if (response != null) {
-            String contentType = response.headerValue("Content-Type");
+            String contentType = JsmonMessageAccessor.contentType(response);
             return isScannableByContentType(contentType);
         }
         
@@ -142,8 +192,8 @@ public class JsmonUrlProcessor {
     public boolean isScannableFile(String url, String contentType) {
         // Check URL extension for all supported file types
         boolean hasExtension = hasScannableExtension(url);
-        if (logging != null) {
-            logging.logToOutput("JSMon: URL extension check for '" + url + "': " + hasExtension);
+        if (diagnostics != null) {
+            diagnostics.trace("JSMon: URL extension check for '{}': {}", url, hasExtension);
         }
         
         if (hasExtension) {
@@ -151,12 +201,9 @@ public class JsmonUrlProcessor {
         }
         
         // If no extension match, check Content-Type header for scannable content types
-        if (logging != null) {
-            logging.logToOutput("JSMon: No extension match, checking Content-Type: " + (contentType != null ? contentType : "null"));
-        }
         boolean contentTypeMatch = isScannableByContentType(contentType);
-        if (logging != null) {
-            logging.logToOutput("JSMon: Content-Type check result: " + contentTypeMatch);
+        if (diagnostics != null) {
+            diagnostics.trace("JSMon: Content-Type check for '{}' ({}): {}", url, contentType, contentTypeMatch);
         }
         return contentTypeMatch;
     }
@@ -165,29 +212,13 @@ public class JsmonUrlProcessor {
      * Check if Content-Type indicates scannable content
      */
     private boolean isScannableByContentType(String contentType) {
-        if (contentType != null && !contentType.isEmpty()) {
-            // Remove any parameters from Content-Type (e.g., "text/x-component; charset=utf-8" -> "text/x-component")
-            String contentTypeBase = contentType.split(";")[0].trim().toLowerCase();
-            String contentTypeLower = contentType.toLowerCase();
-            
-            for (String scannableType : SCANNABLE_CONTENT_TYPES) {
-                // Check both the full Content-Type and the base (without parameters)
-                if (contentTypeLower.contains(scannableType) || contentTypeBase.contains(scannableType)) {
-                    if (logging != null) {
-                        logging.logToOutput("JSMon: Content-Type match - '" + contentType + "' contains '" + scannableType + "'");
-                    }
-                    return true;
-                }
-            }
-            if (logging != null) {
-                logging.logToOutput("JSMon: Content-Type '" + contentType + "' (base: '" + contentTypeBase + "') did not match any scannable types");
-            }
-        } else {
-            if (logging != null) {
-                logging.logToOutput("JSMon: Content-Type is null or empty");
-            }
+        String scannableType = CLASSIFIER.matchContentType(contentType);
+        if (scannableType == null) {
+            return false;
         }
-        return false;
+        if (diagnostics != null) {
+            diagnostics.trace("JSMon: Content-Type match - '{}' contains '{}'", contentType, scannableType);
+        }
+        return true;
     }
 }
-
@@ -0,0 +1,138 @@
+package burp.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsmonCircuitBreakerTest {
+
+    private static final long COOL_DOWN_MS = 50;
+
+    private final List<JsmonCircuitBreaker.State> changes = new CopyOnWriteArrayList<>();
+    private final JsmonCircuitBreaker breaker = new JsmonCircuitBreaker(changes::add, COOL_DOWN_MS);
+
+    /**
+     * Send uploads through a closed breaker until it opens
+     */
+    private void open() {
+        for (int i = 0; i < 8; i++) {
+            breaker.onResult(breaker.tryAcquire(), true);
+        }
+        assertEquals(JsmonCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void waitForCoolDown() throws InterruptedException {
+        Thread.sleep(COOL_DOWN_MS + 20);
+    }
+
+    @Test
+    void staysClosedBelowTheMinimumNumberOfCalls() {
+        for (int i = 0; i < 7; i++) {
+            breaker.onResult(breaker.tryAcquire(), true);
+        }
+        assertEquals(JsmonCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void staysClosedBelowTheFailureRate() {
+        for (int i = 0; i < 20; i++) {
+            breaker.onResult(breaker.tryAcquire(), i % 3 == 0);
+        }
+        assertEquals(JsmonCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    void opensAtHalfFailuresAndRefusesDuringTheCoolDown() {
+        for (int i = 0; i < 8; i++) {
+            breaker.onResult(breaker.tryAcquire(), i % 2 == 0);
+        }
+        assertEquals(JsmonCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(JsmonCircuitBreaker.REFUSED, breaker.tryAcquire());
+        assertEquals(1, breaker.getRejectedCount());
+        assertTrue(breaker.getRemainingCoolDownMs() > 0);
+        assertEquals(List.of(JsmonCircuitBreaker.State.OPEN), changes);
+    }
+
+    @Test
+    void allowsOneProbeAfterTheCoolDownAndClosesOnSuccess() throws InterruptedException {
+        open();
+        waitForCoolDown();
+
+        long probe = breaker.tryAcquire();
+        assertNotEquals(JsmonCircuitBreaker.REFUSED, probe);
+        assertEquals(JsmonCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(JsmonCircuitBreaker.REFUSED, breaker.tryAcquire());
+
+        breaker.onResult(probe, false);
+        assertEquals(JsmonCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(List.of(JsmonCircuitBreaker.State.OPEN, JsmonCircuitBreaker.State.HALF_OPEN,
+                JsmonCircuitBreaker.State.CLOSED), changes);
+        assertEquals(JsmonCircuitBreaker.State.CLOSED, breaker.getTransitions().get(0).getState());
+    }
+
+    @Test
+    void failedProbeOpensAgain() throws InterruptedException {
+        open();
+        waitForCoolDown();
+        breaker.onResult(breaker.tryAcquire(), true);
+        assertEquals(JsmonCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(JsmonCircuitBreaker.REFUSED, breaker.tryAcquire());
+    }
+
+    @Test
+    void lateResultsDoNotSettleTheProbe() throws InterruptedException {
+        long inFlight = breaker.tryAcquire();
+        open();
+        waitForCoolDown();
+        long probe = breaker.tryAcquire();
+
+        // Sent before the breaker opened: neither closes nor reopens it
+        breaker.onResult(inFlight, false);
+        assertEquals(JsmonCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onResult(inFlight, true);
+        assertEquals(JsmonCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onResult(probe, false);
+        assertEquals(JsmonCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void resultsFromAnEarlierClosedPeriodDoNotCountInTheNewWindow() throws InterruptedException {
+        long[] stale = new long[8];
+        for (int i = 0; i < stale.length; i++) {
+            stale[i] = breaker.tryAcquire();
+        }
+        open();
+        waitForCoolDown();
+        breaker.onResult(breaker.tryAcquire(), false);
+        assertEquals(JsmonCircuitBreaker.State.CLOSED, breaker.getState());
+
+        for (long ticket : stale) {
+            breaker.onResult(ticket, true);
+        }
+        assertEquals(JsmonCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void releasingTheProbeLetsAnotherUploadProbe() throws InterruptedException {
+        open();
+        waitForCoolDown();
+        long probe = breaker.tryAcquire();
+        assertEquals(JsmonCircuitBreaker.REFUSED, breaker.tryAcquire());
+
+        breaker.release(probe);
+        long next = breaker.tryAcquire();
+        assertNotEquals(JsmonCircuitBreaker.REFUSED, next);
+        assertNotEquals(probe, next);
+
+        // The released probe's ticket no longer settles anything
+        breaker.onResult(probe, true);
+        assertEquals(JsmonCircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+}
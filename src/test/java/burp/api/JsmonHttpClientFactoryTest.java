@@ -0,0 +1,71 @@
+package burp.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsmonHttpClientFactoryTest {
+
+    private JsmonStandInServer server;
+    private JsmonHttpClientFactory factory;
+    private String baseUrl;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new JsmonStandInServer(0, 0, 0, 0, 0, 500, -1);
+        baseUrl = server.start(0, 4);
+        factory = new JsmonHttpClientFactory(Duration.ofMillis(500));
+    }
+
+    @AfterEach
+    void stop() {
+        factory.shutdown();
+        server.stop();
+    }
+
+    private HttpRequest secretsRequest(boolean compressed) {
+        URI uri = URI.create(baseUrl + "/keysAndSecrets?page=1");
+        HttpRequest.Builder builder = compressed ? factory.newCompressedRequest(uri) : factory.newRequest(uri);
+        return builder.header("X-Jsmon-Key", "test").GET().build();
+    }
+
+    @Test
+    void streamedBodyIsReadInFull() throws IOException, InterruptedException {
+        for (boolean compressed : new boolean[] {false, true}) {
+            HttpResponse<InputStream> response = factory.send(secretsRequest(compressed), factory.streamBody());
+            try (InputStream body = response.body()) {
+                String json = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                assertEquals(200, response.statusCode());
+                assertTrue(json.endsWith("\"total\":500}"), json);
+            }
+        }
+    }
+
+    @Test
+    void readBlockedOnAStalledBodyFailsAtTheDeadline() throws IOException, InterruptedException {
+        server.setStallMs(30_000);
+        for (boolean compressed : new boolean[] {false, true}) {
+            HttpResponse<InputStream> response = factory.send(secretsRequest(compressed), factory.streamBody());
+            long start = System.nanoTime();
+            try (InputStream body = response.body()) {
+                assertThrows(HttpTimeoutException.class, body::readAllBytes);
+            }
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMs < 5_000, "read returned after " + elapsedMs + " ms");
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package burp.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsmonRateLimiterTest {
+
+    private static long millisFor(JsmonRateLimiter limiter, int acquires) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < acquires; i++) {
+            limiter.acquire(1);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    void fullBucketIsSpentWithoutWaitingThenPaces() throws InterruptedException {
+        JsmonRateLimiter limiter = new JsmonRateLimiter(10, null);
+        assertTrue(millisFor(limiter, 10) < 50);
+        // The bucket is empty: the next upload waits for one token (100 ms at 10/s)
+        assertTrue(millisFor(limiter, 1) >= 50);
+    }
+
+    @Test
+    void bucketRefillsOverTime() throws InterruptedException {
+        JsmonRateLimiter limiter = new JsmonRateLimiter(20, null);
+        millisFor(limiter, 20);
+        Thread.sleep(300);
+        // About 6 tokens came back
+        assertTrue(millisFor(limiter, 4) < 50);
+    }
+
+    @Test
+    void zeroRateMeansNoLimit() throws InterruptedException {
+        JsmonRateLimiter limiter = new JsmonRateLimiter(0, null);
+        assertTrue(millisFor(limiter, 1000) < 200);
+    }
+
+    @Test
+    void uploadsReserveCreditsAndRefundsGiveThemBack() throws InterruptedException {
+        JsmonRateLimiter limiter = new JsmonRateLimiter(0, null);
+        limiter.setCredits(2);
+        limiter.acquire(1);
+        limiter.acquire(1);
+        assertEquals(0, limiter.getCredits());
+        assertTrue(limiter.isPaused());
+
+        limiter.refund(1);
+        assertEquals(1, limiter.getCredits());
+        assertFalse(limiter.isPaused());
+    }
+
+    @Test
+    void refundWakesAnUploadWaitingForCredits() throws InterruptedException {
+        // The refresher reports no new credits, so only the refund can release the waiter
+        AtomicInteger refreshes = new AtomicInteger();
+        JsmonRateLimiter[] holder = new JsmonRateLimiter[1];
+        JsmonRateLimiter limiter = new JsmonRateLimiter(0, () -> {
+            refreshes.incrementAndGet();
+            holder[0].setCredits(0);
+        });
+        holder[0] = limiter;
+        limiter.setCredits(0);
+
+        CountDownLatch sent = new CountDownLatch(1);
+        Thread uploader = new Thread(() -> {
+            try {
+                limiter.acquire(1);
+                sent.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        uploader.start();
+        assertFalse(sent.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, refreshes.get());
+
+        limiter.refund(1);
+        assertTrue(sent.await(2, TimeUnit.SECONDS));
+        assertEquals(0, limiter.getCredits());
+        uploader.join();
+    }
+
+    @Test
+    void exhaustedCreditsTriggerAProfileRefresh() throws InterruptedException {
+        JsmonRateLimiter[] holder = new JsmonRateLimiter[1];
+        JsmonRateLimiter limiter = new JsmonRateLimiter(0, () -> holder[0].setCredits(5));
+        holder[0] = limiter;
+        limiter.setCredits(0);
+
+        limiter.acquire(1);
+        assertEquals(4, limiter.getCredits());
+    }
+
+    @Test
+    void unknownCreditsAreNotTracked() throws InterruptedException {
+        JsmonRateLimiter limiter = new JsmonRateLimiter(0, null);
+        limiter.acquire(1);
+        limiter.refund(1);
+        assertEquals(JsmonRateLimiter.UNKNOWN_CREDITS, limiter.getCredits());
+        assertFalse(limiter.isPaused());
+    }
+
+    @Test
+    void interruptStopsAWaitingUpload() throws InterruptedException {
+        JsmonRateLimiter limiter = new JsmonRateLimiter(0, null);
+        limiter.setCredits(0);
+        AtomicInteger outcome = new AtomicInteger();
+        Thread uploader = new Thread(() -> {
+            try {
+                limiter.acquire(1);
+                outcome.set(1);
+            } catch (InterruptedException e) {
+                outcome.set(2);
+            }
+        });
+        uploader.start();
+        Thread.sleep(100);
+        uploader.interrupt();
+        uploader.join(2000);
+        assertEquals(2, outcome.get());
+    }
+
+    @Test
+    void cancelledTokenStopsAWaitingUploadWithoutReservingCredits() throws InterruptedException {
+        JsmonRateLimiter limiter = new JsmonRateLimiter(1, null);
+        limiter.setCredits(5);
+        limiter.acquire(1);
+        // The bucket is empty for the next second; the token is seen well before that
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicInteger outcome = new AtomicInteger();
+        Thread uploader = new Thread(() -> {
+            try {
+                outcome.set(limiter.acquire(1, cancelled::get) ? 1 : 2);
+            } catch (InterruptedException e) {
+                outcome.set(3);
+            }
+        });
+        uploader.start();
+        Thread.sleep(100);
+        long start = System.nanoTime();
+        cancelled.set(true);
+        uploader.join(2000);
+        assertEquals(2, outcome.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        assertEquals(4, limiter.getCredits());
+    }
+}
@@ -0,0 +1,422 @@
+package burp.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the JSMon API, for measuring the upload pipeline offline without spending
+ * real credits. Serves the endpoints the extension calls with synthetic data, and can inject
+ * latency, server errors, 429 bursts and responses that stall halfway through the body.
+ *
+ * Run it with for example
+ * <pre>
+ * java burp.api.JsmonStandInServer --port=8089 --latency-ms=80 --jitter-ms=40 --error-rate=0.02 \
+ *     --burst-every-s=60 --burst-length-s=5 --dataset=5000 --credits=100000
+ * </pre>
+ * and set the extension's API base URL to {@code http://127.0.0.1:8089/api/v2}. Counters are
+ * printed every 10 seconds.
+ */
+public class JsmonStandInServer {
+
+    private static final int PAGE_SIZE = 100;
+    private static final String[] INTELLIGENCE_FIELDS = {
+            "jsurls", "apipaths", "urls", "domains", "ipaddresses", "emails", "s3domains", "invalidnodemodules"
+    };
+
+    /** Fixed delay added to every response */
+    private final long latencyMs;
+    /** Random extra delay, 0..jitterMs */
+    private final long jitterMs;
+    /** Fraction of requests answered with a 500 (0..1) */
+    private final double errorRate;
+    /** Every burstEveryMs, all requests get 429 for burstLengthMs (0 disables bursts) */
+    private final long burstEveryMs;
+    private final long burstLengthMs;
+    /** Items per intelligence field and secrets (served 100 per page) */
+    private final int datasetSize;
+    /** JsScan credits reported by viewProfile and spent by uploads; negative for unlimited */
+    private final AtomicLong credits;
+    /** Pause after sending the first half of each response body (0 disables) */
+    private volatile long stallMs;
+    /** Answer batched uploads with one result per file instead of a single message */
+    private volatile boolean batchResults = true;
+
+    private final long startedAt = System.currentTimeMillis();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder uploads = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder uploadBytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public JsmonStandInServer(long latencyMs, long jitterMs, double errorRate, long burstEveryMs, long burstLengthMs,
+                              int datasetSize, long credits) {
+        this.latencyMs = Math.max(0, latencyMs);
+        this.jitterMs = Math.max(0, jitterMs);
+        this.errorRate = Math.min(1, Math.max(0, errorRate));
+        this.burstEveryMs = Math.max(0, burstEveryMs);
+        this.burstLengthMs = Math.max(0, burstLengthMs);
+        this.datasetSize = Math.max(0, datasetSize);
+        this.credits = new AtomicLong(credits);
+    }
+
+    /**
+     * Start listening on 127.0.0.1 (port 0 picks a free port)
+     * @return Base URL to configure in the extension
+     */
+    public String start(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "JSMon-StandIn");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v2";
+    }
+
+    /**
+     * Send the first half of every response body, then hold the connection this long before the rest
+     */
+    public void setStallMs(long stallMs) {
+        this.stallMs = Math.max(0, stallMs);
+    }
+
+    /**
+     * Whether batched uploads are answered per file; without it a batch gets the single-upload reply
+     */
+    public void setBatchResults(boolean batchResults) {
+        this.batchResults = batchResults;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String endpoint = path.substring(path.lastIndexOf('/') + 1);
+            Map<String, String> query = parseQuery(exchange.getRequestURI());
+            byte[] requestBody = readBody(exchange);
+
+            delay();
+            String apiKey = exchange.getRequestHeaders().getFirst("X-Jsmon-Key");
+            if (apiKey == null || apiKey.isEmpty()) {
+                respond(exchange, 401, "{\"message\":\"Unauthorized\"}");
+                return;
+            }
+            long burstRemaining = burstRemainingMs();
+            if (burstRemaining > 0) {
+                throttled.increment();
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf((burstRemaining + 999) / 1000));
+                respond(exchange, 429, "{\"message\":\"Too many requests\"}");
+                return;
+            }
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.increment();
+                respond(exchange, 500, "{\"message\":\"Injected error\"}");
+                return;
+            }
+
+            switch (endpoint) {
+                case "uploadUrl":
+                    handleUpload(exchange, requestBody);
+                    break;
+                case "getWorkspaces":
+                    respond(exchange, 200, "{\"data\":[{\"wkspId\":\"standin-workspace\",\"name\":\"Stand-in\"}]}");
+                    break;
+                case "createWorkspace":
+                    respond(exchange, 200, "{\"workspaceId\":\"standin-" + System.nanoTime() + "\"}");
+                    break;
+                case "viewProfile":
+                    respond(exchange, 200, "{\"data\":{\"name\":\"Load Test\",\"email\":\"loadtest@example.com\",\"type\":\"standin\","
+                            + "\"limits\":{\"JsScan\":" + (credits.get() < 0 ? Integer.MAX_VALUE : credits.get()) + "}}}");
+                    break;
+                case "totalCountAnalysis":
+                    respond(exchange, 200, counts());
+                    break;
+                case "keysAndSecrets":
+                    respond(exchange, 200, secretsPage(pageOf(query)));
+                    break;
+                case "intelligence":
+                    respond(exchange, 200, intelligencePage(query.getOrDefault("options", "jsurls"), pageOf(query)));
+                    break;
+                default:
+                    respond(exchange, 404, "{\"message\":\"Unknown endpoint " + endpoint + "\"}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleUpload(HttpExchange exchange, byte[] body) throws IOException {
+        String json = new String(body, StandardCharsets.UTF_8).trim();
+        if (!json.startsWith("{") && !json.startsWith("[")) {
+            respond(exchange, 400, "{\"message\":\"Expected JSON\"}");
+            return;
+        }
+        // One file per "url" member, so batches (JSON arrays) count every file
+        int count = 0;
+        for (int i = json.indexOf("\"url\""); i >= 0; i = json.indexOf("\"url\"", i + 5)) {
+            count++;
+        }
+        if (count == 0) {
+            respond(exchange, 400, "{\"message\":\"Missing url\"}");
+            return;
+        }
+        if (json.startsWith("[") && batchResults) {
+            handleBatch(exchange, json);
+            return;
+        }
+        if (!spendCredits(count)) {
+            respond(exchange, 403, "{\"message\":\"Insufficient JsScan credits\"}");
+            return;
+        }
+        uploads.increment();
+        files.add(count);
+        respond(exchange, 200, "{\"message\":\"Queued " + count + " file(s) for scanning\"}");
+    }
+
+    /**
+     * One result object per file, in request order; files beyond the remaining credits are refused
+     */
+    private void handleBatch(HttpExchange exchange, String json) throws IOException {
+        StringBuilder reply = new StringBuilder("[");
+        int queued = 0;
+        for (int i = json.indexOf("\"url\""); i >= 0; i = json.indexOf("\"url\"", i + 5)) {
+            // The URL as it appears in the request, still JSON-escaped
+            int start = json.indexOf('"', json.indexOf(':', i + 5)) + 1;
+            int end = start;
+            while (end < json.length() && json.charAt(end) != '"') {
+                end += json.charAt(end) == '\\' ? 2 : 1;
+            }
+            boolean accepted = spendCredits(1);
+            if (accepted) {
+                queued++;
+            }
+            reply.append(reply.length() > 1 ? "," : "").append("{\"url\":\"").append(json, start, Math.min(end, json.length()))
+                    .append(accepted ? "\",\"status\":200,\"message\":\"Queued for scanning\"}"
+                            : "\",\"status\":403,\"message\":\"Insufficient JsScan credits\"}");
+        }
+        uploads.increment();
+        files.add(queued);
+        respond(exchange, 200, reply.append(']').toString());
+    }
+
+    private boolean spendCredits(int count) {
+        while (true) {
+            long current = credits.get();
+            if (current < 0) {
+                return true;
+            }
+            if (current < count) {
+                return false;
+            }
+            if (credits.compareAndSet(current, current - count)) {
+                return true;
+            }
+        }
+    }
+
+    private String counts() {
+        StringBuilder json = new StringBuilder("{\"data\":{");
+        for (String field : INTELLIGENCE_FIELDS) {
+            json.append('"').append(field).append("\":").append(datasetSize).append(',');
+        }
+        return json.append("\"secrets\":").append(datasetSize).append("}}").toString();
+    }
+
+    private String secretsPage(int page) {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        int first = (page - 1) * PAGE_SIZE;
+        for (int i = first; i < Math.min(datasetSize, first + PAGE_SIZE); i++) {
+            if (i > first) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"secret-").append(i).append("\",\"type\":\"Generic API Key\",\"value\":\"sk_test_")
+                    .append(Long.toHexString(i * 0x9E3779B97F4A7C15L)).append("\",\"url\":\"https://app.example.com/static/chunk-")
+                    .append(i % 500).append(".js\",\"createdAt\":\"2024-01-01T00:00:00.000Z\"}");
+        }
+        return json.append("],\"total\":").append(datasetSize).append('}').toString();
+    }
+
+    private String intelligencePage(String field, int page) {
+        StringBuilder json = new StringBuilder("{\"data\":[");
+        int first = (page - 1) * PAGE_SIZE;
+        for (int i = first; i < Math.min(datasetSize, first + PAGE_SIZE); i++) {
+            if (i > first) {
+                json.append(',');
+            }
+            json.append("{\"value\":\"").append(syntheticValue(field, i)).append("\",\"createdAt\":\"2024-01-01T00:00:")
+                    .append(String.format("%02d", i % 60)).append(".000Z\"}");
+        }
+        return json.append("],\"total\":").append(datasetSize).append('}').toString();
+    }
+
+    private static String syntheticValue(String field, int i) {
+        switch (field) {
+            case "apipaths": return "/api/v1/resource" + i;
+            case "urls": return "https://app.example.com/page/" + i;
+            case "domains": return "host" + i + ".example.com";
+            case "ipaddresses": return "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff);
+            case "emails": return "user" + i + "@example.com";
+            case "s3domains": return "bucket-" + i + ".s3.amazonaws.com";
+            case "invalidnodemodules": return "internal-package-" + i;
+            default: return "https://app.example.com/static/chunk-" + i + ".js";
+        }
+    }
+
+    private long burstRemainingMs() {
+        if (burstEveryMs == 0 || burstLengthMs == 0) {
+            return 0;
+        }
+        long phase = (System.currentTimeMillis() - startedAt) % burstEveryMs;
+        // Bursts sit at the end of each period so the server starts out healthy
+        long burstStart = burstEveryMs - burstLengthMs;
+        return phase >= burstStart ? burstEveryMs - phase : 0;
+    }
+
+    private void delay() {
+        long ms = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (ms > 0) {
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        if (encoding != null && encoding.trim().equalsIgnoreCase("gzip")) {
+            in = new GZIPInputStream(in);
+        }
+        byte[] body = in.readAllBytes();
+        uploadBytes.add(body.length);
+        return body;
+    }
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept != null && accept.contains("gzip") && body.length >= 1024) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            long stall = stallMs;
+            if (stall > 0 && body.length > 1) {
+                out.write(body, 0, body.length / 2);
+                out.flush();
+                try {
+                    Thread.sleep(stall);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                out.write(body, body.length / 2, body.length - body.length / 2);
+            } else {
+                out.write(body);
+            }
+        }
+    }
+
+    private static Map<String, String> parseQuery(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(pair.substring(0, eq), java.net.URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static int pageOf(Map<String, String> query) {
+        try {
+            return Math.max(1, Integer.parseInt(query.getOrDefault("page", "1")));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * "N requests, N uploads (N files, N KB), N errors, N throttled, credits N" summary
+     */
+    public String getSummary() {
+        long remaining = credits.get();
+        return requests.sum() + " requests, " + uploads.sum() + " uploads (" + files.sum() + " files, "
+                + uploadBytes.sum() / 1024 + " KB), " + errors.sum() + " injected errors, " + throttled.sum()
+                + " throttled, credits " + (remaining < 0 ? "unlimited" : remaining);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Usage: JsmonStandInServer [--port=8089] [--threads=32] [--latency-ms=0] [--jitter-ms=0]"
+                        + " [--error-rate=0] [--burst-every-s=0] [--burst-length-s=0] [--dataset=1000] [--credits=-1]"
+                        + " [--stall-ms=0] [--batch-results=true]");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        JsmonStandInServer server = new JsmonStandInServer(
+                Long.parseLong(options.getOrDefault("latency-ms", "0")),
+                Long.parseLong(options.getOrDefault("jitter-ms", "0")),
+                Double.parseDouble(options.getOrDefault("error-rate", "0")),
+                TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("burst-every-s", "0"))),
+                TimeUnit.SECONDS.toMillis(Long.parseLong(options.getOrDefault("burst-length-s", "0"))),
+                Integer.parseInt(options.getOrDefault("dataset", "1000")),
+                Long.parseLong(options.getOrDefault("credits", "-1")));
+        server.setStallMs(Long.parseLong(options.getOrDefault("stall-ms", "0")));
+        server.setBatchResults(Boolean.parseBoolean(options.getOrDefault("batch-results", "true")));
+        String baseUrl = server.start(Integer.parseInt(options.getOrDefault("port", "8089")),
+                Integer.parseInt(options.getOrDefault("threads", "32")));
+        System.out.println("JSMon stand-in listening at " + baseUrl);
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.println(server.getSummary());
+        }
+    }
+}
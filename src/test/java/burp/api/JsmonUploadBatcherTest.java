@@ -0,0 +1,101 @@
+package burp.api;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsmonUploadBatcherTest {
+
+    private static final BooleanSupplier NOT_CANCELLED = () -> false;
+    /** Long enough that only a full batch is sent */
+    private static final long WINDOW_MS = 60_000;
+
+    private JsmonStandInServer server;
+    private JsmonHttpClientFactory http;
+    private JsmonUploadBatcher batcher;
+
+    private void start(long credits, int maxItems) throws IOException {
+        server = new JsmonStandInServer(0, 0, 0, 0, 0, 0, credits);
+        String baseUrl = server.start(0, 4);
+        http = new JsmonHttpClientFactory();
+        JsmonApiClient apiClient = new JsmonApiClient(null, http, 4, new JsmonRateLimiter(0, null),
+                new JsmonCircuitBreaker(state -> { }));
+        apiClient.setApiBaseUrl(baseUrl);
+        batcher = new JsmonUploadBatcher(apiClient, maxItems, WINDOW_MS, null);
+    }
+
+    @AfterEach
+    void stop() {
+        batcher.shutdown();
+        http.shutdown();
+        server.stop();
+    }
+
+    private List<JsmonApiClient.SendResult> upload(int files) throws Exception {
+        List<CompletableFuture<JsmonApiClient.SendResult>> futures = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            futures.add(batcher.submit("https://www.example.com/static/chunk-" + i + ".js", "ws", "key", null, NOT_CANCELLED));
+        }
+        List<JsmonApiClient.SendResult> results = new ArrayList<>();
+        for (CompletableFuture<JsmonApiClient.SendResult> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    @Test
+    void perFileResultsConfirmBatching() throws Exception {
+        start(-1, 3);
+        for (JsmonApiClient.SendResult result : upload(3)) {
+            assertTrue(result.isSuccess(), result.getErrorMessage());
+        }
+        assertEquals(JsmonUploadBatcher.BatchSupport.ACCEPTED, batcher.getSupport());
+        assertTrue(batcher.getSummary().contains("1 batches (3 files), 0 single"), batcher.getSummary());
+    }
+
+    @Test
+    void eachFileGetsItsOwnResult() throws Exception {
+        // Credits for two of the three files
+        start(2, 3);
+        List<JsmonApiClient.SendResult> results = upload(3);
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertEquals(403, results.get(2).getStatusCode());
+    }
+
+    @Test
+    void replyWithoutPerFileResultsFallsBackToSingleUploads() throws Exception {
+        start(-1, 3);
+        server.setBatchResults(false);
+        for (JsmonApiClient.SendResult result : upload(3)) {
+            assertTrue(result.isSuccess(), result.getErrorMessage());
+        }
+        assertEquals(JsmonUploadBatcher.BatchSupport.REFUSED, batcher.getSupport());
+        // The probe's files went again one by one, and later files are not batched
+        for (JsmonApiClient.SendResult result : upload(3)) {
+            assertTrue(result.isSuccess(), result.getErrorMessage());
+        }
+        assertTrue(batcher.getSummary().contains("(0 files), 6 single"), batcher.getSummary());
+    }
+
+    @Test
+    void shutdownCancelsFilesStillWaitingForABatch() throws Exception {
+        start(-1, 3);
+        CompletableFuture<JsmonApiClient.SendResult> waiting =
+                batcher.submit("https://www.example.com/app.js", "ws", "key", null, NOT_CANCELLED);
+        assertFalse(waiting.isDone());
+        batcher.shutdown();
+        assertTrue(waiting.get(1, TimeUnit.SECONDS).isCancelled());
+    }
+}
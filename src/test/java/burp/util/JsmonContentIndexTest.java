@@ -0,0 +1,187 @@
+package burp.util;
+
+import burp.api.montoya.core.ByteArray;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsmonContentIndexTest {
+
+    private static final JsmonContentIndex.ContentHash HASH = new JsmonContentIndex.ContentHash(1, 2);
+
+    @Test
+    void duplicateWaitsForTheFirstUploadToSucceed() {
+        JsmonContentIndex index = new JsmonContentIndex(10);
+        assertNull(index.claim("ws", HASH, "https://a.example.com/app.js", 100));
+        JsmonContentIndex.Entry earlier = index.claim("ws", HASH, "https://b.example.com/app.js", 100);
+        assertNotNull(earlier);
+        assertEquals("https://a.example.com/app.js", earlier.getFirstUrl());
+        assertFalse(earlier.getUpload().isDone());
+        assertEquals(0, index.getSkippedUploads());
+
+        index.succeed("ws", HASH);
+        assertTrue(earlier.getUpload().join());
+        // Later duplicates find the settled entry
+        assertTrue(index.claim("ws", HASH, "https://c.example.com/app.js", 100).getUpload().join());
+    }
+
+    @Test
+    void failedUploadReleasesItsWaitersToClaimAgain() {
+        JsmonContentIndex index = new JsmonContentIndex(10);
+        assertNull(index.claim("ws", HASH, "https://a.example.com/app.js", 100));
+        JsmonContentIndex.Entry earlier = index.claim("ws", HASH, "https://b.example.com/app.js", 100);
+
+        index.release("ws", HASH);
+        assertFalse(earlier.getUpload().join());
+        assertNull(index.claim("ws", HASH, "https://b.example.com/app.js", 100));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void workspacesAreIndependent() {
+        JsmonContentIndex index = new JsmonContentIndex(10);
+        assertNull(index.claim("ws1", HASH, "https://a.example.com/app.js", 100));
+        assertNull(index.claim("ws2", HASH, "https://a.example.com/app.js", 100));
+    }
+
+    @Test
+    void evictingAnInFlightClaimDoesNotStrandItsWaiters() {
+        JsmonContentIndex index = new JsmonContentIndex(1);
+        assertNull(index.claim("ws", HASH, "https://a.example.com/app.js", 100));
+        CompletableFuture<Boolean> upload = index.claim("ws", HASH, "https://b.example.com/app.js", 100).getUpload();
+        // A second body pushes the first out of the LRU order
+        assertNull(index.claim("ws", new JsmonContentIndex.ContentHash(3, 4), "https://a.example.com/other.js", 10));
+        assertSame(upload, index.claim("ws", HASH, "https://c.example.com/app.js", 100).getUpload());
+
+        index.succeed("ws", HASH);
+        assertTrue(upload.join());
+    }
+
+    @Test
+    void clearKeepsClaimsInFlight() {
+        JsmonContentIndex index = new JsmonContentIndex(10);
+        assertNull(index.claim("ws", HASH, "https://a.example.com/app.js", 100));
+        index.clear();
+        CompletableFuture<Boolean> upload = index.claim("ws", HASH, "https://b.example.com/app.js", 100).getUpload();
+        index.release("ws", HASH);
+        assertFalse(upload.join());
+    }
+
+    @Test
+    void recordDuplicateCountsSkippedBytes() {
+        JsmonContentIndex index = new JsmonContentIndex(10);
+        assertNull(index.claim("ws", HASH, "https://a.example.com/app.js", 100));
+        JsmonContentIndex.Entry earlier = index.claim("ws", HASH, "https://b.example.com/app.js", 100);
+        index.succeed("ws", HASH);
+        index.recordDuplicate(earlier, 100);
+        assertEquals(1, index.getSkippedUploads());
+        assertEquals(100, index.getBytesSaved());
+        assertEquals(1, index.getTopHits(5).get(0).getHits());
+    }
+
+    /**
+     * Burp's ByteArray over an array (the real one is only available inside Burp), counting the calls that read bytes
+     */
+    private static ByteArray byteArray(byte[] bytes, AtomicInteger reads) {
+        return (ByteArray) Proxy.newProxyInstance(ByteArray.class.getClassLoader(), new Class<?>[] {ByteArray.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "length":
+                            return bytes.length;
+                        case "getByte":
+                            reads.incrementAndGet();
+                            return bytes[(Integer) args[0]];
+                        case "getBytes":
+                            reads.incrementAndGet();
+                            return bytes.clone();
+                        case "subArray":
+                            return byteArray(Arrays.copyOfRange(bytes, (Integer) args[0], (Integer) args[1]), reads);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * MurmurHash3 x64 128 one byte at a time, straight from the reference implementation
+     */
+    private static String referenceHash(byte[] data) {
+        long c1 = 0x87c37b91114253d5L;
+        long c2 = 0x4cf5ad432745937fL;
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = data.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int b = 7; b >= 0; b--) {
+                k1 = (k1 << 8) | (data[i * 16 + b] & 0xffL);
+                k2 = (k2 << 8) | (data[i * 16 + 8 + b] & 0xffL);
+            }
+            h1 ^= Long.rotateLeft(k1 * c1, 31) * c2;
+            h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+            h2 ^= Long.rotateLeft(k2 * c2, 33) * c1;
+            h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = data.length - 1; i >= blocks * 16; i--) {
+            int index = i - blocks * 16;
+            if (index >= 8) {
+                k2 |= (data[i] & 0xffL) << ((index - 8) * 8);
+            } else {
+                k1 |= (data[i] & 0xffL) << (index * 8);
+            }
+        }
+        h2 ^= Long.rotateLeft(k2 * c2, 33) * c1;
+        h1 ^= Long.rotateLeft(k1 * c1, 31) * c2;
+        h1 ^= data.length;
+        h2 ^= data.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return String.format("%016x%016x", h1, h2);
+    }
+
+    private static long fmix(long k) {
+        k = (k ^ (k >>> 33)) * 0xff51afd7ed558ccdL;
+        k = (k ^ (k >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return k ^ (k >>> 33);
+    }
+
+    @Test
+    void hashMatchesTheMurmur3TestVector() {
+        byte[] fox = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+        assertEquals("e34bbc7bbc071b6c7a433ca9c49a9347", JsmonContentIndex.hash(byteArray(fox, new AtomicInteger())).toString());
+        assertEquals("00000000000000000000000000000000", JsmonContentIndex.hash(null).toString());
+    }
+
+    @Test
+    void hashAcrossChunkBoundariesMatchesTheReference() {
+        Random random = new Random(11);
+        int chunk = JsmonContentIndex.CHUNK_BYTES;
+        for (int length : new int[] {1, 15, 16, 17, 31, chunk - 1, chunk, chunk + 1, chunk + 17, 3 * chunk + 5}) {
+            byte[] body = new byte[length];
+            random.nextBytes(body);
+            AtomicInteger reads = new AtomicInteger();
+            assertEquals(referenceHash(body), JsmonContentIndex.hash(byteArray(body, reads)).toString(), "length " + length);
+            // One copy per chunk, never a call per byte
+            assertEquals((length + chunk - 1) / chunk, reads.get(), "reads for length " + length);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package burp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsmonDedupIndexTest {
+
+    /** Smallest table: 1024 slots, so home slots are the low 10 bits of the fingerprint */
+    private static final int SLOTS = 1024;
+
+    private static JsmonDedupIndex smallIndex() {
+        return new JsmonDedupIndex(0, JsmonDedupIndex.EvictionPolicy.LRU, 0);
+    }
+
+    private static int home(String key) {
+        return (int) JsmonDedupIndex.fingerprint(key) & (SLOTS - 1);
+    }
+
+    /**
+     * Keys whose home slot is the given one
+     */
+    private static List<String> keysWithHome(int slot, int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            String key = "https://example.com/" + i + ".js";
+            if (home(key) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void addIfAbsentReportsDuplicates() {
+        JsmonDedupIndex index = smallIndex();
+        assertTrue(index.addIfAbsent("https://example.com/app.js"));
+        assertFalse(index.addIfAbsent("https://example.com/app.js"));
+        assertTrue(index.contains("https://example.com/app.js"));
+        assertFalse(index.contains("https://example.com/other.js"));
+        assertEquals(1, index.getStats().getSize());
+    }
+
+    @Test
+    void removingTheHeadOfAProbeRunKeepsTheRestReachable() {
+        JsmonDedupIndex index = smallIndex();
+        List<String> run = keysWithHome(100, 4);
+        // Homed one slot later: sits inside the run and must not be shifted before its home
+        String neighbour = keysWithHome(101, 1).get(0);
+        for (String key : run) {
+            index.add(key);
+        }
+        index.add(neighbour);
+
+        assertTrue(index.remove(run.get(0)));
+        assertFalse(index.contains(run.get(0)));
+        for (String key : run.subList(1, run.size())) {
+            assertTrue(index.contains(key), key);
+        }
+        assertTrue(index.contains(neighbour));
+
+        assertTrue(index.remove(run.get(2)));
+        assertTrue(index.contains(run.get(1)));
+        assertTrue(index.contains(run.get(3)));
+        assertTrue(index.contains(neighbour));
+        assertEquals(3, index.getStats().getSize());
+    }
+
+    @Test
+    void backwardShiftWrapsAroundTheEndOfTheTable() {
+        JsmonDedupIndex index = smallIndex();
+        List<String> run = keysWithHome(SLOTS - 2, 4);
+        String wrapped = keysWithHome(0, 1).get(0);
+        for (String key : run) {
+            index.add(key);
+        }
+        index.add(wrapped);
+
+        assertTrue(index.remove(run.get(1)));
+        for (String key : new String[] {run.get(0), run.get(2), run.get(3), wrapped}) {
+            assertTrue(index.contains(key), key);
+        }
+        assertTrue(index.remove(run.get(0)));
+        assertTrue(index.remove(wrapped));
+        assertTrue(index.contains(run.get(2)));
+        assertTrue(index.contains(run.get(3)));
+    }
+
+    @Test
+    void entryAtItsHomeAfterTheWrapIsNotShifted() {
+        JsmonDedupIndex index = smallIndex();
+        String last = keysWithHome(SLOTS - 1, 1).get(0);
+        String first = keysWithHome(0, 1).get(0);
+        index.add(last);
+        index.add(first);
+
+        assertTrue(index.remove(last));
+        assertTrue(index.contains(first));
+    }
+
+    @Test
+    void randomAddsAndRemovesMatchAHashSet() {
+        JsmonDedupIndex index = smallIndex();
+        Set<String> expected = new HashSet<>();
+        Random random = new Random(42);
+        // Stay below the load limit so nothing is evicted
+        int maxEntries = index.getStats().getMaxEntries();
+        for (int i = 0; i < 20_000; i++) {
+            String key = "https://cdn.example.com/chunk-" + random.nextInt(2 * maxEntries) + ".js";
+            if (random.nextBoolean() && expected.size() < maxEntries) {
+                assertEquals(expected.add(key), index.addIfAbsent(key), key);
+            } else {
+                assertEquals(expected.remove(key), index.remove(key), key);
+            }
+        }
+        for (int i = 0; i < 2 * maxEntries; i++) {
+            String key = "https://cdn.example.com/chunk-" + i + ".js";
+            assertEquals(expected.contains(key), index.contains(key), key);
+        }
+        assertEquals(expected.size(), index.getStats().getSize());
+    }
+
+    @Test
+    void fullTableEvictsInsteadOfGrowing() {
+        JsmonDedupIndex index = smallIndex();
+        int maxEntries = index.getStats().getMaxEntries();
+        for (int i = 0; i < maxEntries * 3; i++) {
+            index.add("https://example.com/" + i + ".js");
+        }
+        assertEquals(maxEntries, index.getStats().getSize());
+        assertEquals(maxEntries * 2, index.getStats().getEvictions());
+    }
+
+    @Test
+    void ttlEntriesExpire() throws InterruptedException {
+        JsmonDedupIndex index = new JsmonDedupIndex(0, JsmonDedupIndex.EvictionPolicy.TTL, 20);
+        index.add("https://example.com/app.js");
+        assertTrue(index.contains("https://example.com/app.js"));
+        Thread.sleep(50);
+        assertFalse(index.contains("https://example.com/app.js"));
+        assertEquals(1, index.getStats().getExpirations());
+        assertEquals(0, index.getStats().getSize());
+    }
+}
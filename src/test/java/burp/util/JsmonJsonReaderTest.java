@@ -0,0 +1,136 @@
+package burp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static burp.util.JsmonJsonReader.Token.BEGIN_ARRAY;
+import static burp.util.JsmonJsonReader.Token.BEGIN_OBJECT;
+import static burp.util.JsmonJsonReader.Token.END_ARRAY;
+import static burp.util.JsmonJsonReader.Token.END_DOCUMENT;
+import static burp.util.JsmonJsonReader.Token.END_OBJECT;
+import static burp.util.JsmonJsonReader.Token.LITERAL;
+import static burp.util.JsmonJsonReader.Token.NAME;
+import static burp.util.JsmonJsonReader.Token.NUMBER;
+import static burp.util.JsmonJsonReader.Token.STRING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsmonJsonReaderTest {
+
+    /**
+     * Every token as "TYPE" or "TYPE:text"
+     */
+    private static List<String> tokens(Reader json) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        try (JsmonJsonReader reader = new JsmonJsonReader(json)) {
+            JsmonJsonReader.Token token;
+            do {
+                token = reader.next();
+                boolean hasText = token == NAME || token == STRING || token == NUMBER || token == LITERAL;
+                tokens.add(hasText ? token + ":" + reader.getText() : token.toString());
+            } while (token != END_DOCUMENT);
+        }
+        return tokens;
+    }
+
+    private static List<String> tokens(String json) throws IOException {
+        return tokens(new StringReader(json));
+    }
+
+    /**
+     * Hands out one character per read, so every token crosses a buffer refill
+     */
+    private static Reader trickle(String json) {
+        return new Reader() {
+            private int position;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (position == json.length()) {
+                    return -1;
+                }
+                buffer[offset] = json.charAt(position++);
+                return 1;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Test
+    void readsEveryTokenType() throws IOException {
+        String json = "{\"a\": [1, \"x\", true, null], \"b\": {\"c\": -2.5e3}, \"d\": []}";
+        assertEquals(List.of("BEGIN_OBJECT", "NAME:a", "BEGIN_ARRAY", "NUMBER:1", "STRING:x", "LITERAL:true",
+                "LITERAL:null", "END_ARRAY", "NAME:b", "BEGIN_OBJECT", "NAME:c", "NUMBER:-2.5e3", "END_OBJECT",
+                "NAME:d", "BEGIN_ARRAY", "END_ARRAY", "END_OBJECT", "END_DOCUMENT"), tokens(json));
+    }
+
+    @Test
+    void tellsNamesFromValuesInArraysOfObjects() throws IOException {
+        assertEquals(List.of("BEGIN_ARRAY", "BEGIN_OBJECT", "NAME:k", "STRING:v", "NAME:n", "STRING:w", "END_OBJECT",
+                "STRING:s", "BEGIN_OBJECT", "NAME:k", "STRING:x", "END_OBJECT", "END_ARRAY", "END_DOCUMENT"),
+                tokens("[{\"k\":\"v\",\"n\":\"w\"},\"s\",{\"k\":\"x\"}]"));
+    }
+
+    @Test
+    void unescapesStrings() throws IOException {
+        assertEquals(List.of("STRING:q\" b\\ s/ n\n t\t é \uD83D\uDE00", "END_DOCUMENT"),
+                tokens("\"q\\\" b\\\\ s\\/ n\\n t\\t \\u00e9 \\ud83d\\ude00\""));
+    }
+
+    @Test
+    void tokensSplitAcrossReadsAreReassembled() throws IOException {
+        String json = "{\"name\": \"v\\u00e9\", \"count\": 12345, \"ok\": false}";
+        assertEquals(tokens(json), tokens(trickle(json)));
+
+        StringBuilder longString = new StringBuilder("[\"");
+        for (int i = 0; i < 20_000; i++) {
+            longString.append((char) ('a' + i % 26));
+        }
+        longString.append("\", 7]");
+        List<String> longTokens = tokens(longString.toString());
+        assertEquals(20_000 + "STRING:".length(), longTokens.get(1).length());
+        assertEquals("NUMBER:7", longTokens.get(2));
+    }
+
+    @Test
+    void skipValueSkipsANestedContainer() throws IOException {
+        JsmonJsonReader reader = new JsmonJsonReader(new StringReader("{\"skip\": {\"a\": [1, {\"b\": 2}]}, \"keep\": 3}"));
+        assertEquals(BEGIN_OBJECT, reader.next());
+        assertEquals(NAME, reader.next());
+        reader.skipValue(reader.next());
+        assertEquals(NAME, reader.next());
+        assertEquals("keep", reader.getText());
+        assertEquals(NUMBER, reader.next());
+        assertEquals("3", reader.getText());
+        assertEquals(END_OBJECT, reader.next());
+        assertEquals(0, reader.getDepth());
+    }
+
+    @Test
+    void readRawCopiesAContainerVerbatim() throws IOException {
+        JsmonJsonReader reader = new JsmonJsonReader(trickle("[{\"a\": [1, 2] , \"b\":\"}\"}, {\"c\": 3}]"));
+        assertEquals(BEGIN_ARRAY, reader.next());
+        assertEquals("{\"a\": [1, 2] , \"b\":\"}\"}", reader.readRaw(reader.next()));
+        assertEquals("{\"c\": 3}", reader.readRaw(reader.next()));
+        assertEquals(END_ARRAY, reader.next());
+        assertEquals(END_DOCUMENT, reader.next());
+    }
+
+    @Test
+    void rejectsMalformedJson() {
+        assertThrows(IOException.class, () -> tokens("{\"a\": \"unterminated"));
+        assertThrows(IOException.class, () -> tokens("[1, 2}"));
+        assertThrows(IOException.class, () -> tokens("]"));
+        assertThrows(IOException.class, () -> tokens("{\"a\": [1, 2]"));
+        assertThrows(IOException.class, () -> tokens("\"bad \\u12G4\""));
+        assertThrows(IOException.class, () -> tokens("[".repeat(257)));
+    }
+}
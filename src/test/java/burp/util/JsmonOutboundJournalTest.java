@@ -0,0 +1,218 @@
+package burp.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsmonOutboundJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<JsmonOutboundJournal> open = new ArrayList<>();
+
+    @AfterEach
+    void closeJournals() {
+        for (JsmonOutboundJournal journal : open) {
+            journal.close();
+        }
+    }
+
+    private JsmonOutboundJournal open() throws IOException {
+        JsmonOutboundJournal journal = new JsmonOutboundJournal(directory);
+        open.add(journal);
+        return journal;
+    }
+
+    private JsmonOutboundJournal reopen(JsmonOutboundJournal journal) throws IOException {
+        journal.close();
+        open.remove(journal);
+        return open();
+    }
+
+    private static List<String> keys(JsmonOutboundJournal journal) {
+        List<String> keys = new ArrayList<>();
+        for (JsmonOutboundJournal.Entry entry : journal.getPending()) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Offset of the first occurrence of some text in a journal file
+     */
+    private static int offsetOf(Path file, String text) throws IOException {
+        String contents = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        int offset = contents.indexOf(text);
+        assertTrue(offset > 0, text);
+        return offset;
+    }
+
+    private static void overwrite(Path file, int offset, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), offset);
+        }
+    }
+
+    @Test
+    void pendingEntriesSurviveAReopen() throws IOException {
+        JsmonOutboundJournal journal = open();
+        journal.append("k1", "https://example.com/1.js", "ws", "User-Agent: ua\n");
+        journal.append("k2", "https://example.com/2.js", "ws", "");
+        journal.append("k3", "https://example.com/3.js", "ws", "");
+        journal.attempt("k2");
+        journal.attempt("k2");
+        journal.complete("k3");
+
+        journal = reopen(journal);
+        assertEquals(List.of("k1", "k2"), keys(journal));
+        JsmonOutboundJournal.Entry first = journal.getPending().get(0);
+        assertEquals("https://example.com/1.js", first.getUrl());
+        assertEquals("ws", first.getWorkspaceId());
+        assertEquals("User-Agent: ua\n", first.getHeaders());
+        assertEquals(0, first.getAttempts());
+        assertEquals(2, journal.getPending().get(1).getAttempts());
+    }
+
+    @Test
+    void appendingAPendingKeyAgainIsANoOp() throws IOException {
+        JsmonOutboundJournal journal = open();
+        journal.append("k1", "https://example.com/1.js", "ws", "");
+        journal.append("k1", "https://example.com/other.js", "ws", "");
+        assertEquals(1, journal.getPendingCount());
+        assertEquals("https://example.com/1.js", journal.getPending().get(0).getUrl());
+    }
+
+    @Test
+    void onlyReplayHeadersAreKept() throws IOException {
+        JsmonOutboundJournal journal = open();
+        journal.append("k1", "https://example.com/1.js", "ws",
+                "Host: example.com\nUser-Agent: ua\nCookie: session=secret\nAuthorization: Bearer secret\n"
+                        + "referer: https://example.com/\nX-Api-Key: secret\n");
+        assertEquals("User-Agent: ua\nreferer: https://example.com/\n", journal.getPending().get(0).getHeaders());
+        journal.flush();
+        for (String name : new String[] {"outbound-a.journal", "outbound-b.journal"}) {
+            Path file = directory.resolve(name);
+            if (Files.exists(file)) {
+                assertFalse(new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1).contains("secret"));
+            }
+        }
+    }
+
+    @Test
+    void replayStopsAtACorruptRecord() throws IOException {
+        JsmonOutboundJournal journal = open();
+        journal.append("k1", "https://example.com/1.js", "ws", "");
+        journal.append("k2", "https://example.com/2.js", "ws", "");
+        journal.append("k3", "https://example.com/3.js", "ws", "");
+        journal.close();
+        open.remove(journal);
+
+        // A bit flip in the second record fails its checksum; it and everything after it are dropped
+        Path file = directory.resolve("outbound-a.journal");
+        overwrite(file, offsetOf(file, "https://example.com/2.js"), "X".getBytes(StandardCharsets.ISO_8859_1));
+
+        journal = open();
+        assertEquals(List.of("k1"), keys(journal));
+
+        // New records go where the corrupt ones were and are replayed normally
+        journal.append("k4", "https://example.com/4.js", "ws", "");
+        journal = reopen(journal);
+        assertEquals(List.of("k1", "k4"), keys(journal));
+    }
+
+    @Test
+    void replayIgnoresATornTail() throws IOException {
+        JsmonOutboundJournal journal = open();
+        journal.append("k1", "https://example.com/1.js", "ws", "");
+        journal.append("k2", "https://example.com/2.js", "ws", "");
+        journal.close();
+        open.remove(journal);
+
+        // A length written without the rest of the record, as after a crash mid-write
+        Path file = directory.resolve("outbound-a.journal");
+        String record = "https://example.com/2.js";
+        // After the URL: workspace "ws" (2 + 2), empty headers (2), attempts (4), checksum (4)
+        int end = offsetOf(file, record) + record.length() + 4 + 2 + 4 + 4;
+        overwrite(file, end, new byte[] {0, 0, 0, 40, 1, 0, 2, 'k'});
+
+        journal = open();
+        assertEquals(List.of("k1", "k2"), keys(journal));
+        journal.append("k3", "https://example.com/3.js", "ws", "");
+        journal = reopen(journal);
+        assertEquals(List.of("k1", "k2", "k3"), keys(journal));
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveEntries() throws IOException {
+        JsmonOutboundJournal journal = open();
+        journal.append("live", "https://example.com/live.js", "ws", "");
+        journal.attempt("live");
+        String padding = "https://example.com/" + "x".repeat(1000) + ".js";
+        int written = 0;
+        while (!journal.getSummary().contains(" 1 compactions")) {
+            journal.append("done-" + written, padding, "ws", "");
+            journal.complete("done-" + written);
+            written++;
+            assertTrue(written < 10_000, "no compaction after " + written + " files");
+        }
+        assertEquals(List.of("live"), keys(journal));
+
+        // The compacted file is current on the next open, attempts included
+        journal = reopen(journal);
+        assertEquals(List.of("live"), keys(journal));
+        assertEquals(1, journal.getPending().get(0).getAttempts());
+        assertTrue(journal.getSummary().startsWith("1 pending, 0/"), journal.getSummary());
+    }
+
+    @Test
+    void openingCompactsAwayFinishedRecords() throws IOException {
+        JsmonOutboundJournal journal = open();
+        for (int i = 0; i < 100; i++) {
+            journal.append("k" + i, "https://example.com/" + i + ".js", "ws", "");
+            if (i != 42) {
+                journal.complete("k" + i);
+            }
+        }
+        journal = reopen(journal);
+        assertEquals(List.of("k42"), keys(journal));
+        assertTrue(journal.getSummary().endsWith("1 compactions"), journal.getSummary());
+    }
+
+    @Test
+    void secondJournalOnTheSameDirectoryIsRefused() throws IOException {
+        JsmonOutboundJournal journal = open();
+        assertThrows(IOException.class, () -> new JsmonOutboundJournal(directory));
+        journal.close();
+        open.remove(journal);
+        open();
+    }
+
+    @Test
+    void filesAreReadableByTheOwnerOnly() throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        open();
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(directory));
+        assertEquals(PosixFilePermissions.fromString("rw-------"),
+                Files.getPosixFilePermissions(directory.resolve("outbound-a.journal")));
+    }
+}
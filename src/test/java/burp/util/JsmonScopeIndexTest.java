@@ -0,0 +1,86 @@
+package burp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsmonScopeIndexTest {
+
+    @Test
+    void emptyListPutsEveryHostInScope() {
+        JsmonScopeIndex index = new JsmonScopeIndex("  ");
+        assertTrue(index.isEmpty());
+        assertTrue(index.isHostInScope("anything.test"));
+        assertTrue(new JsmonScopeIndex(null).isHostInScope("anything.test"));
+    }
+
+    @Test
+    void plainDomainIncludesItselfAndSubdomains() {
+        JsmonScopeIndex index = new JsmonScopeIndex("example.com");
+        assertTrue(index.isHostInScope("example.com"));
+        assertTrue(index.isHostInScope("a.b.example.com"));
+        assertFalse(index.isHostInScope("badexample.com"));
+        assertFalse(index.isHostInScope("example.org"));
+        assertFalse(index.isHostInScope("com"));
+    }
+
+    @Test
+    void wildcardIncludesSubdomainsOnly() {
+        JsmonScopeIndex index = new JsmonScopeIndex("*.example.com");
+        assertFalse(index.isHostInScope("example.com"));
+        assertTrue(index.isHostInScope("cdn.example.com"));
+    }
+
+    @Test
+    void mostSpecificRuleWins() {
+        JsmonScopeIndex index = new JsmonScopeIndex("example.com, !ads.example.com\nstatic.ads.example.com");
+        assertEquals(3, index.getRuleCount());
+        assertTrue(index.isHostInScope("www.example.com"));
+        assertFalse(index.isHostInScope("ads.example.com"));
+        assertFalse(index.isHostInScope("tracker.ads.example.com"));
+        assertTrue(index.isHostInScope("static.ads.example.com"));
+        assertTrue(index.isHostInScope("img.static.ads.example.com"));
+    }
+
+    @Test
+    void wildcardExclusionKeepsTheDomainItself() {
+        JsmonScopeIndex index = new JsmonScopeIndex("example.com !*.internal.example.com");
+        assertTrue(index.isHostInScope("internal.example.com"));
+        assertFalse(index.isHostInScope("db.internal.example.com"));
+    }
+
+    @Test
+    void exclusionBeatsInclusionOnTheSameDomain() {
+        JsmonScopeIndex index = new JsmonScopeIndex("example.com !example.com");
+        assertFalse(index.isHostInScope("example.com"));
+        assertFalse(index.isHostInScope("www.example.com"));
+    }
+
+    @Test
+    void onlyExclusionsPutEverythingElseInScope() {
+        JsmonScopeIndex index = new JsmonScopeIndex("!google-analytics.com");
+        assertTrue(index.isHostInScope("example.com"));
+        assertFalse(index.isHostInScope("www.google-analytics.com"));
+    }
+
+    @Test
+    void entriesAreNormalized() {
+        JsmonScopeIndex index = new JsmonScopeIndex(" .Example.COM. ");
+        assertTrue(index.isHostInScope("example.com"));
+        assertFalse(index.isHostInScope(null));
+    }
+
+    @Test
+    void hostOfHandlesPortsUserInfoAndIpv6() {
+        assertEquals("example.com", JsmonScopeIndex.hostOf("https://user:pw@Example.com:8443/app.js?x=1"));
+        assertEquals("example.com", JsmonScopeIndex.hostOf("https://example.com.#frag"));
+        assertEquals("[::1]", JsmonScopeIndex.hostOf("http://[::1]:8080/"));
+        assertEquals("[::1]", JsmonScopeIndex.hostOf("http://[::1]/"));
+        assertNull(JsmonScopeIndex.hostOf("/relative/path"));
+        assertNull(JsmonScopeIndex.hostOf("https:///path"));
+        assertNull(JsmonScopeIndex.hostOf(null));
+    }
+}
@@ -0,0 +1,75 @@
+package burp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class JsmonUrlCanonicalizerTest {
+
+    private final JsmonUrlCanonicalizer canonicalizer =
+            new JsmonUrlCanonicalizer(JsmonUrlCanonicalizer.DEFAULT_VOLATILE_PARAMS);
+
+    @Test
+    void lowercasesSchemeAndHostAndDropsDefaultPortsAndUserInfo() {
+        assertEquals("https://example.com/App.js", canonicalizer.canonicalize("HTTPS://user:pw@Example.COM:443/App.js"));
+        assertEquals("http://example.com/app.js", canonicalizer.canonicalize("http://example.com:80/app.js"));
+        assertEquals("http://example.com:8080/app.js", canonicalizer.canonicalize("http://example.com:8080/app.js"));
+        assertEquals("https://example.com/app.js", canonicalizer.canonicalize("https://example.com./app.js"));
+    }
+
+    @Test
+    void keepsColonsInsideIpv6Literals() {
+        assertEquals("http://[::1]/app.js", canonicalizer.canonicalize("http://[::1]/app.js"));
+        assertEquals("http://[::1]:8080/app.js", canonicalizer.canonicalize("http://[::1]:8080/app.js"));
+    }
+
+    @Test
+    void normalizesThePath() {
+        assertEquals("https://example.com/js/app.js", canonicalizer.canonicalize("https://example.com//js/./lib/../app.js"));
+        assertEquals("https://example.com/app.js", canonicalizer.canonicalize("https://example.com/../../app.js"));
+        assertEquals("https://example.com/static/", canonicalizer.canonicalize("https://example.com/static//"));
+        assertEquals("https://example.com/", canonicalizer.canonicalize("https://example.com"));
+        assertEquals("https://example.com/?a=1", canonicalizer.canonicalize("https://example.com?a=1"));
+    }
+
+    @Test
+    void stripsVolatileQueryParametersAndSortsTheRest() {
+        assertEquals("https://example.com/app.js?a=1&b=2",
+                canonicalizer.canonicalize("https://example.com/app.js?b=2&v=123&a=1&_=99&utm_source=x#top"));
+        assertEquals("https://example.com/app.js", canonicalizer.canonicalize("https://example.com/app.js?V=1&TS=2"));
+        assertEquals("https://example.com/app.js", canonicalizer.canonicalize("https://example.com/app.js?"));
+    }
+
+    @Test
+    void stripsVolatilePathParameters() {
+        assertEquals("https://example.com/app.js",
+                canonicalizer.canonicalize("https://example.com/app.js;jsessionid=ABC"));
+        assertEquals("https://example.com/app.js;lang=en",
+                canonicalizer.canonicalize("https://example.com/app.js;jsessionid=ABC;lang=en"));
+    }
+
+    @Test
+    void variantsOfOneFileShareAKey() {
+        String key = canonicalizer.canonicalize("https://cdn.example.com/main.js?v=1");
+        assertEquals(key, canonicalizer.canonicalize("https://CDN.example.com:443/main.js?v=2"));
+        assertEquals(key, canonicalizer.canonicalize("https://cdn.example.com//main.js?cb=3#x"));
+    }
+
+    @Test
+    void leavesNonAbsoluteInputAlone() {
+        assertEquals("/relative/app.js?v=1", canonicalizer.canonicalize("/relative/app.js?v=1"));
+        assertNull(canonicalizer.canonicalize(null));
+    }
+
+    @Test
+    void customParametersReplaceTheDefaults() {
+        JsmonUrlCanonicalizer custom = new JsmonUrlCanonicalizer("build re:x-.*");
+        assertEquals("https://example.com/app.js?v=1",
+                custom.canonicalize("https://example.com/app.js?build=7&v=1&X-Trace=abc"));
+        assertEquals(Collections.singletonList("re:("), custom.setVolatileParams("re:( token"));
+        assertEquals("https://example.com/app.js?v=1", custom.canonicalize("https://example.com/app.js?token=1&v=1"));
+    }
+}